@@ -0,0 +1,46 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Abstract {@link DataProvider} that bridges between the two read methods.
+ * Subclasses have to implement at least one of them and should implement
+ * {@link #get(ByteBuffer, long)} if they are able to read into a buffer
+ * without going through an intermediate array.
+ */
+public abstract class AbstractDataProvider implements DataProvider {
+
+	/**
+	 * Reads data by wrapping {@code data} in a {@link ByteBuffer} and passing
+	 * it to {@link #get(ByteBuffer, long)}.
+	 */
+	@Override
+	public int get(byte[] data, long offset) {
+		return get(ByteBuffer.wrap(data), offset);
+	}
+
+	/**
+	 * Reads data through {@link #get(byte[], long)}. If {@code dst} is backed
+	 * by an array that it covers completely, data is read into that array
+	 * directly. Otherwise a temporary array is used.
+	 */
+	@Override
+	public int get(ByteBuffer dst, long offset) {
+		int read;
+		if (dst.hasArray() && dst.arrayOffset() == 0 && dst.position() == 0
+				&& dst.remaining() == dst.array().length) {
+			read = get(dst.array(), offset);
+			if (read > 0) {
+				dst.position(read);
+			}
+		} else {
+			byte[] temp = new byte[dst.remaining()];
+			read = get(temp, offset);
+			if (read > 0) {
+				dst.put(temp, 0, read);
+			}
+		}
+		return read;
+	}
+
+}
@@ -1,29 +1,99 @@
 package com.github.musikk.hex;
 
-import java.util.ArrayList;
+import java.awt.Rectangle;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Abstract {@link Marker} that implements listener support.
+ * Abstract {@link Marker} that implements listener support. Changes can be
+ * grouped with {@link #beginUpdate()} and {@link #endUpdate()} so listeners
+ * are notified only once.
  *
  * @author Werner Hahn
  *
  */
 public abstract class AbstractMarker implements Marker {
 
-	private final List<MarkerUpdatedListener> listeners = new ArrayList<>();
+	/**
+	 * Listeners are notified without holding the lock of this marker, so a
+	 * slow listener cannot block threads that change the marker.
+	 */
+	private final List<MarkerUpdatedListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The number of {@link #beginUpdate()} calls without matching
+	 * {@link #endUpdate()}.
+	 */
+	private int updateDepth;
+	/**
+	 * Whether an event was suppressed during an update.
+	 */
+	private boolean updatePending;
 
 	@Override
-	public synchronized void addListener(MarkerUpdatedListener l) {
+	public void addListener(MarkerUpdatedListener l) {
 		listeners.add(l);
 	}
 	@Override
-	public synchronized void removeListener(MarkerUpdatedListener l) {
+	public void removeListener(MarkerUpdatedListener l) {
 		listeners.remove(l);
 	}
-	protected synchronized void fireEvent() {
+	/**
+	 * Returns {@code null} because the area is unknown. Subclasses should
+	 * override this if they are able to tell which area they cover.
+	 */
+	@Override
+	public Rectangle getChangedArea(HexPanel.Metrics metrics) {
+		return null;
+	}
+
+	/**
+	 * Starts an update. Until the matching {@link #endUpdate()}, listeners are
+	 * not notified of changes. Updates may be nested.
+	 */
+	public synchronized void beginUpdate() {
+		updateDepth++;
+	}
+
+	/**
+	 * Ends an update. If this ends the outermost update and the marker changed
+	 * in the meantime, listeners are notified once.
+	 *
+	 * @throws IllegalStateException
+	 *             if there is no update in progress
+	 */
+	public void endUpdate() {
+		synchronized (this) {
+			if (updateDepth == 0) {
+				throw new IllegalStateException("No update in progress.");
+			}
+			if (--updateDepth > 0 || !updatePending) {
+				return;
+			}
+			updatePending = false;
+		}
+		fireEvent();
+	}
+
+	/**
+	 * Notifies the listeners of a change unless an update is in progress.
+	 */
+	protected void fireEvent() {
+		synchronized (this) {
+			if (updateDepth > 0) {
+				updatePending = true;
+				return;
+			}
+		}
 		for (MarkerUpdatedListener l : listeners) {
 			l.markerUpdated(this);
 		}
+		eventFired();
+	}
+
+	/**
+	 * Called after the listeners have been notified. Does nothing by default.
+	 */
+	protected void eventFired() {
 	}
 }
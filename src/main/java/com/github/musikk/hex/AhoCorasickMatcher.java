@@ -0,0 +1,340 @@
+package com.github.musikk.hex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * {@link ByteMatcher} that finds any number of exact patterns in a single pass
+ * with an Aho-Corasick automaton. The time per byte of data does not depend on
+ * the number of patterns.
+ * <p>
+ * Automata of up to {@link #MAX_DENSE_STATES} states are turned into a full
+ * transition table so every byte of data costs one array lookup. Larger
+ * automata store a transition for every byte value only for the root state;
+ * all other states store their transitions sparsely and fall back on failure
+ * links. The patterns that end in a state, including those of the states its
+ * failure links lead to, are merged into one array per state.
+ */
+public class AhoCorasickMatcher implements ByteMatcher {
+
+	private static final int ROOT = 0;
+
+	/**
+	 * The maximum number of states for which a full transition table is
+	 * built. The table takes 512 bytes per state.
+	 */
+	static final int MAX_DENSE_STATES = 32 * 1024;
+	/**
+	 * Set in entries of the full transition table that lead to a state in
+	 * which patterns end.
+	 */
+	private static final int OUTPUT_FLAG = 0x8000;
+
+	/**
+	 * The full transition table: the state that follows state {@code s} for
+	 * byte {@code b} is at index {@code s << 8 | b}, combined with
+	 * {@link #OUTPUT_FLAG}. {@code null} if the automaton has too many states.
+	 */
+	private final char[] dense;
+
+	/**
+	 * The state the root moves to for every byte value.
+	 */
+	private final int[] rootTransitions = new int[256];
+	/**
+	 * The transitions of state {@code s} are at the indices from
+	 * {@code transitionStart[s]} to {@code transitionStart[s + 1]} of
+	 * {@link #transitionBytes} and {@link #transitionTargets}, sorted by byte.
+	 */
+	private final int[] transitionStart;
+	private final byte[] transitionBytes;
+	private final int[] transitionTargets;
+	private final int[] failure;
+	/**
+	 * The indices of the patterns that end in each state or {@code null}.
+	 */
+	private final int[][] outputs;
+
+	private final int[] patternLengths;
+	private final int maxLength;
+
+	/**
+	 * Builds the automaton for the specified patterns. Matches report the
+	 * index of the pattern in {@code patterns}.
+	 *
+	 * @param patterns
+	 *            the patterns to look for
+	 * @throws IllegalArgumentException
+	 *             if there are no patterns or one of them is empty
+	 */
+	public AhoCorasickMatcher(List<byte[]> patterns) {
+		if (patterns.isEmpty()) {
+			throw new IllegalArgumentException("No patterns.");
+		}
+		patternLengths = new int[patterns.size()];
+		int longest = 0;
+
+		// build the trie
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(new Node());
+		for (int p = 0; p < patterns.size(); p++) {
+			byte[] pattern = patterns.get(p);
+			if (pattern.length == 0) {
+				throw new IllegalArgumentException("Pattern " + p + " is empty.");
+			}
+			patternLengths[p] = pattern.length;
+			longest = Math.max(longest, pattern.length);
+			int state = ROOT;
+			for (byte b : pattern) {
+				int next = nodes.get(state).get(b);
+				if (next == -1) {
+					next = nodes.size();
+					nodes.add(new Node());
+					nodes.get(state).put(b, next);
+				}
+				state = next;
+			}
+			nodes.get(state).addOutput(p);
+		}
+		maxLength = longest;
+
+		// compute failure links breadth first; merge outputs along them
+		int count = nodes.size();
+		failure = new int[count];
+		Deque<Integer> queue = new ArrayDeque<>();
+		int[] order = new int[count];
+		int ordered = 0;
+		Node root = nodes.get(ROOT);
+		for (int i = 0; i < root.size; i++) {
+			failure[root.targets[i]] = ROOT;
+			queue.add(root.targets[i]);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			order[ordered++] = state;
+			Node node = nodes.get(state);
+			for (int i = 0; i < node.size; i++) {
+				byte b = node.bytes[i];
+				int target = node.targets[i];
+				int f = failure[state];
+				int next;
+				while ((next = nodes.get(f).get(b)) == -1 && f != ROOT) {
+					f = failure[f];
+				}
+				failure[target] = next == -1 ? ROOT : next;
+				nodes.get(target).addOutputs(nodes.get(failure[target]));
+				queue.add(target);
+			}
+		}
+
+		// flatten
+		for (int i = 0; i < root.size; i++) {
+			rootTransitions[root.bytes[i] & 0xFF] = root.targets[i];
+		}
+		transitionStart = new int[count + 1];
+		int transitions = 0;
+		for (int s = 0; s < count; s++) {
+			transitionStart[s] = transitions;
+			transitions += nodes.get(s).size;
+		}
+		transitionStart[count] = transitions;
+		transitionBytes = new byte[transitions];
+		transitionTargets = new int[transitions];
+		outputs = new int[count][];
+		for (int s = 0; s < count; s++) {
+			Node node = nodes.get(s);
+			node.sort();
+			System.arraycopy(node.bytes, 0, transitionBytes, transitionStart[s], node.size);
+			System.arraycopy(node.targets, 0, transitionTargets, transitionStart[s], node.size);
+			if (node.outputCount > 0) {
+				outputs[s] = Arrays.copyOf(node.outputs, node.outputCount);
+			}
+		}
+
+		if (count <= MAX_DENSE_STATES) {
+			dense = new char[count << 8];
+			for (int b = 0; b < 256; b++) {
+				int target = rootTransitions[b];
+				dense[b] = (char) (outputs[target] == null ? target : target | OUTPUT_FLAG);
+			}
+			// failure links lead to shallower states which come first
+			for (int i = 0; i < ordered; i++) {
+				int state = order[i];
+				int base = state << 8;
+				int failureBase = failure[state] << 8;
+				for (int b = 0; b < 256; b++) {
+					dense[base | b] = dense[failureBase | b];
+				}
+				for (int t = transitionStart[state]; t < transitionStart[state + 1]; t++) {
+					int target = transitionTargets[t];
+					dense[base | transitionBytes[t] & 0xFF] = (char) (outputs[target] == null
+							? target : target | OUTPUT_FLAG);
+				}
+			}
+		} else {
+			dense = null;
+		}
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Returns the number of states of the automaton.
+	 *
+	 * @return the state count
+	 */
+	public int getStateCount() {
+		return failure.length;
+	}
+
+	@Override
+	public void find(byte[] buffer, int length, int limit, long offset, MatchListener listener) {
+		int end = (int) Math.min(length, (long) limit + maxLength - 1);
+		if (dense != null) {
+			findDense(buffer, end, limit, offset, listener);
+			return;
+		}
+		int state = ROOT;
+		for (int i = 0; i < end; i++) {
+			byte b = buffer[i];
+			while (true) {
+				if (state == ROOT) {
+					state = rootTransitions[b & 0xFF];
+					break;
+				}
+				int next = transition(state, b);
+				if (next != -1) {
+					state = next;
+					break;
+				}
+				state = failure[state];
+			}
+			if (outputs[state] != null && !report(state, i, limit, offset, listener)) {
+				return;
+			}
+		}
+	}
+
+	private void findDense(byte[] buffer, int end, int limit, long offset, MatchListener listener) {
+		char[] dense = this.dense;
+		int state = ROOT;
+		for (int i = 0; i < end; i++) {
+			int next = dense[state << 8 | buffer[i] & 0xFF];
+			state = next & ~OUTPUT_FLAG;
+			if (next >= OUTPUT_FLAG && !report(state, i, limit, offset, listener)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reports the patterns that end in {@code state} at index {@code i}.
+	 *
+	 * @return whether the search should go on
+	 */
+	private boolean report(int state, int i, int limit, long offset, MatchListener listener) {
+		for (int p : outputs[state]) {
+			int start = i - patternLengths[p] + 1;
+			if (start < limit && !listener.matchFound(p, offset + start, patternLengths[p])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int transition(int state, byte b) {
+		int from = transitionStart[state];
+		int to = transitionStart[state + 1];
+		if (to - from <= 8) {
+			for (int i = from; i < to; i++) {
+				if (transitionBytes[i] == b) {
+					return transitionTargets[i];
+				}
+			}
+			return -1;
+		}
+		int low = from;
+		int high = to - 1;
+		int key = b & 0xFF;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = transitionBytes[middle] & 0xFF;
+			if (value < key) {
+				low = middle + 1;
+			} else if (value > key) {
+				high = middle - 1;
+			} else {
+				return transitionTargets[middle];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A state of the trie while the automaton is built.
+	 */
+	private static class Node {
+		byte[] bytes = new byte[2];
+		int[] targets = new int[2];
+		int size;
+		int[] outputs = new int[0];
+		int outputCount;
+
+		int get(byte b) {
+			for (int i = 0; i < size; i++) {
+				if (bytes[i] == b) {
+					return targets[i];
+				}
+			}
+			return -1;
+		}
+
+		void put(byte b, int target) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * size);
+				targets = Arrays.copyOf(targets, 2 * size);
+			}
+			bytes[size] = b;
+			targets[size] = target;
+			size++;
+		}
+
+		void addOutput(int pattern) {
+			if (outputCount == outputs.length) {
+				outputs = Arrays.copyOf(outputs, Math.max(2, 2 * outputCount));
+			}
+			outputs[outputCount++] = pattern;
+		}
+
+		void addOutputs(Node other) {
+			for (int i = 0; i < other.outputCount; i++) {
+				addOutput(other.outputs[i]);
+			}
+		}
+
+		/**
+		 * Sorts the transitions by unsigned byte value.
+		 */
+		void sort() {
+			for (int i = 1; i < size; i++) {
+				byte b = bytes[i];
+				int target = targets[i];
+				int j = i - 1;
+				while (j >= 0 && (bytes[j] & 0xFF) > (b & 0xFF)) {
+					bytes[j + 1] = bytes[j];
+					targets[j + 1] = targets[j];
+					j--;
+				}
+				bytes[j + 1] = b;
+				targets[j + 1] = target;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.github.musikk.hex;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link HexSelectionListener} that passes events on to another listener on an
+ * {@link Executor}. This keeps slow listeners from stalling the thread that
+ * fires the events, usually the event dispatch thread.
+ * <p>
+ * Events are delivered one at a time and in order. Hover events and drag
+ * events of an ongoing drag operation are coalesced: if such an event has not
+ * been delivered yet when the next one of the same kind arrives, only the
+ * newer one is delivered. Clicks and the final event of a drag operation are
+ * always delivered.
+ * <p>
+ * Since the delegate is not called on the event dispatch thread, it has to
+ * pass any changes of Swing components back to that thread. An exception
+ * thrown by the delegate is passed on to the executor; the events after it
+ * are still delivered.
+ */
+public class AsyncHexSelectionListener implements HexSelectionListener {
+
+	private enum Type {
+		HOVER, CLICK, DRAG
+	}
+
+	private final HexSelectionListener delegate;
+	private final Executor executor;
+
+	/**
+	 * Events that have not been delivered yet. Guarded by itself.
+	 */
+	private final Deque<PendingEvent> queue = new ArrayDeque<>();
+	/**
+	 * Whether a task that delivers the queued events is submitted. Guarded by
+	 * {@link #queue}.
+	 */
+	private boolean draining;
+
+	/**
+	 * Creates an {@code AsyncHexSelectionListener}.
+	 *
+	 * @param delegate
+	 *            the listener that receives the events
+	 * @param executor
+	 *            the executor that calls the delegate
+	 */
+	public AsyncHexSelectionListener(HexSelectionListener delegate, Executor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+	}
+
+	@Override
+	public void onHover(HexSelectionEvent e) {
+		enqueue(Type.HOVER, e, true);
+	}
+
+	@Override
+	public void onClick(HexSelectionEvent e) {
+		enqueue(Type.CLICK, e, false);
+	}
+
+	@Override
+	public void onDrag(HexSelectionEvent e) {
+		enqueue(Type.DRAG, e, e.stillDragging);
+	}
+
+	private void enqueue(Type type, HexSelectionEvent e, boolean coalesce) {
+		synchronized (queue) {
+			PendingEvent last = queue.peekLast();
+			if (coalesce && last != null && last.type == type && last.coalescable) {
+				queue.pollLast();
+			}
+			queue.addLast(new PendingEvent(type, e, coalesce));
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		submitDrain();
+	}
+
+	private void submitDrain() {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		});
+	}
+
+	private void drain() {
+		boolean failed = true;
+		try {
+			while (true) {
+				PendingEvent pending;
+				synchronized (queue) {
+					pending = queue.pollFirst();
+					if (pending == null) {
+						draining = false;
+						failed = false;
+						return;
+					}
+				}
+				switch (pending.type) {
+				case HOVER:
+					delegate.onHover(pending.event);
+					break;
+				case CLICK:
+					delegate.onClick(pending.event);
+					break;
+				case DRAG:
+					delegate.onDrag(pending.event);
+					break;
+				}
+			}
+		} finally {
+			if (failed) {
+				// the delegate threw; let the exception reach the executor but
+				// keep delivering the remaining events
+				boolean resubmit;
+				synchronized (queue) {
+					resubmit = !queue.isEmpty();
+					draining = resubmit;
+				}
+				if (resubmit) {
+					submitDrain();
+				}
+			}
+		}
+	}
+
+	private static class PendingEvent {
+		final Type type;
+		final HexSelectionEvent event;
+		/**
+		 * Whether the event may be replaced by a newer one of the same type.
+		 */
+		final boolean coalescable;
+		PendingEvent(Type type, HexSelectionEvent event, boolean coalescable) {
+			this.type = type;
+			this.event = event;
+			this.coalescable = coalescable;
+		}
+	}
+
+}
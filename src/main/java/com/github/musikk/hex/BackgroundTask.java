@@ -0,0 +1,97 @@
+package com.github.musikk.hex;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle of work that runs in the background, like a search. It reports the
+ * progress of the work and allows to cancel it.
+ */
+public class BackgroundTask {
+
+	/**
+	 * Runs the chunks of all background work. Its threads are daemon threads.
+	 */
+	static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private final long total;
+	private final AtomicLong done = new AtomicLong();
+
+	private volatile boolean cancelled;
+	private volatile RuntimeException error;
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	/**
+	 * Creates a {@code BackgroundTask}.
+	 *
+	 * @param total
+	 *            the amount of work, usually the number of bytes to process
+	 */
+	BackgroundTask(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * Asks the work to stop. Work that is in progress is finished, no new work
+	 * is started.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns whether the work has stopped, either because it is complete,
+	 * because it was cancelled or because it failed.
+	 *
+	 * @return whether the work has stopped
+	 */
+	public boolean isDone() {
+		return finished.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the work has stopped.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		finished.await();
+	}
+
+	/**
+	 * Returns the fraction of the work that is done.
+	 *
+	 * @return the progress between 0 and 1
+	 */
+	public double getProgress() {
+		return total == 0 ? 1 : Math.min(1, (double) done.get() / total);
+	}
+
+	/**
+	 * Returns the exception that made the work fail.
+	 *
+	 * @return the exception or {@code null} if the work did not fail
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+
+	void addProgress(long amount) {
+		done.addAndGet(amount);
+	}
+
+	void fail(RuntimeException error) {
+		this.error = error;
+	}
+
+	void finish() {
+		finished.countDown();
+	}
+
+}
@@ -0,0 +1,260 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the ranges in which two {@link DataProvider}s differ. If one is
+ * longer than the other, its excess bytes form the last range.
+ * <p>
+ * The common part is split into chunks that are compared in parallel on
+ * {@link BackgroundTask#POOL}, one round of one chunk per thread at a time.
+ * Each chunk is compared eight bytes at a time; only words that differ are
+ * looked at byte by byte. The ranges of a round are added to the
+ * {@link DiffRanges} in order, joining ranges that cross the border of two
+ * chunks, so the result never takes more than two longs per range.
+ */
+public class BinaryDiff extends BackgroundTask {
+
+	/**
+	 * The number of bytes of each provider that are compared by a single task.
+	 */
+	static final int CHUNK_SIZE = 4 * 1024 * 1024;
+	/**
+	 * The number of ranges after which the comparison stops. The ranges take
+	 * 16 bytes each.
+	 */
+	static final int MAX_RANGES = 4 * 1024 * 1024;
+
+	private final DataProvider left;
+	private final DataProvider right;
+	private final long commonLength;
+	private final DiffRanges ranges = new DiffRanges();
+	/**
+	 * The chunk buffers of both providers that are not in use by a task.
+	 * Direct buffers in native order, so reading a word is cheap. They are
+	 * created as needed, at most one pair per thread, and dropped when the
+	 * comparison stops.
+	 */
+	private final Queue<ByteBuffer[]> buffers = new ConcurrentLinkedQueue<>();
+
+	private volatile boolean truncated;
+
+	private BinaryDiff(DataProvider left, DataProvider right) {
+		super(Math.min(left.getLength(), right.getLength()));
+		this.left = left;
+		this.right = right;
+		this.commonLength = Math.min(left.getLength(), right.getLength());
+	}
+
+	/**
+	 * Starts to compare two providers.
+	 *
+	 * @param left
+	 *            one provider
+	 * @param right
+	 *            the other provider
+	 * @param whenFinished
+	 *            run on a background thread when the comparison has stopped
+	 * @return the running comparison
+	 */
+	public static BinaryDiff compare(DataProvider left, DataProvider right, final Runnable whenFinished) {
+		final BinaryDiff diff = new BinaryDiff(left, right);
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					diff.run();
+				} catch (RuntimeException e) {
+					diff.fail(e);
+				} finally {
+					diff.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return diff;
+	}
+
+	/**
+	 * Returns the ranges found so far.
+	 *
+	 * @return the ranges in which the providers differ
+	 */
+	public DiffRanges getRanges() {
+		return ranges;
+	}
+
+	/**
+	 * Returns whether the comparison stopped because it found
+	 * {@link #MAX_RANGES} ranges.
+	 *
+	 * @return whether there may be more ranges
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	private void run() {
+		try {
+			compareAll();
+		} finally {
+			buffers.clear();
+		}
+	}
+
+	private void compareAll() {
+		int parallelism = BackgroundTask.POOL.getParallelism();
+		for (long start = 0; start < commonLength && !isCancelled(); start += (long) parallelism * CHUNK_SIZE) {
+			List<ChunkTask> tasks = new ArrayList<>(parallelism);
+			for (int i = 0; i < parallelism; i++) {
+				long chunkStart = start + (long) i * CHUNK_SIZE;
+				if (chunkStart >= commonLength) {
+					break;
+				}
+				tasks.add(new ChunkTask(chunkStart, (int) Math.min(CHUNK_SIZE, commonLength - chunkStart)));
+			}
+			RecursiveAction.invokeAll(tasks);
+			for (ChunkTask task : tasks) {
+				if (isCancelled()) {
+					return;
+				}
+				if (!addAll(task)) {
+					return;
+				}
+			}
+		}
+		long maxLength = Math.max(left.getLength(), right.getLength());
+		if (!isCancelled() && commonLength < maxLength) {
+			ranges.add(commonLength, maxLength);
+		}
+	}
+
+	/**
+	 * Adds the ranges of a chunk.
+	 *
+	 * @return whether the comparison may go on
+	 */
+	private boolean addAll(ChunkTask task) {
+		for (int i = 0; i < task.size; i += 2) {
+			if (ranges.size() >= MAX_RANGES) {
+				truncated = true;
+				cancel();
+				return false;
+			}
+			ranges.add(task.start + task.found[i], task.start + task.found[i + 1]);
+		}
+		return true;
+	}
+
+	/**
+	 * Compares a chunk of both providers.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private final long start;
+		private final int length;
+		/**
+		 * The starts and ends of the ranges relative to {@link #start}.
+		 */
+		int[] found = new int[16];
+		int size;
+
+		ChunkTask(long start, int length) {
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		protected void compute() {
+			if (isCancelled()) {
+				return;
+			}
+			ByteBuffer[] pair = buffers.poll();
+			if (pair == null) {
+				pair = new ByteBuffer[] {
+						ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder()),
+						ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder()) };
+			}
+			try {
+				compareChunk(pair[0], pair[1]);
+			} finally {
+				buffers.add(pair);
+			}
+			addProgress(length);
+		}
+
+		private void compareChunk(ByteBuffer bufferA, ByteBuffer bufferB) {
+			ByteBuffer a = read(left, bufferA);
+			ByteBuffer b = read(right, bufferB);
+			LongBuffer wordsA = a.asLongBuffer();
+			LongBuffer wordsB = b.asLongBuffer();
+
+			int words = length / 8;
+			int open = -1;
+			for (int w = 0; w < words; w++) {
+				if (wordsA.get(w) == wordsB.get(w)) {
+					if (open != -1) {
+						addRange(open, 8 * w);
+						open = -1;
+					}
+					continue;
+				}
+				for (int i = 8 * w; i < 8 * w + 8; i++) {
+					open = compare(a, b, i, open);
+				}
+			}
+			for (int i = 8 * words; i < length; i++) {
+				open = compare(a, b, i, open);
+			}
+			if (open != -1) {
+				addRange(open, length);
+			}
+		}
+
+		/**
+		 * Compares a single byte.
+		 *
+		 * @param open
+		 *            the start of the range that includes the previous byte
+		 *            or -1 if the previous bytes are equal
+		 * @return the start of the range that includes this byte or -1 if the
+		 *         bytes are equal
+		 */
+		private int compare(ByteBuffer a, ByteBuffer b, int i, int open) {
+			if (a.get(i) != b.get(i)) {
+				return open == -1 ? i : open;
+			}
+			if (open != -1) {
+				addRange(open, i);
+			}
+			return -1;
+		}
+
+		private ByteBuffer read(DataProvider data, ByteBuffer buffer) {
+			buffer.clear().limit(length);
+			while (buffer.hasRemaining()) {
+				if (data.get(buffer, start + buffer.position()) <= 0) {
+					throw new IllegalStateException(String.format("Cannot read %d bytes at %d.", length, start));
+				}
+			}
+			buffer.flip();
+			return buffer;
+		}
+
+		private void addRange(int rangeStart, int rangeEnd) {
+			if (size == found.length) {
+				found = Arrays.copyOf(found, 2 * found.length);
+			}
+			found[size++] = rangeStart;
+			found[size++] = rangeEnd;
+		}
+	}
+
+}
@@ -1,6 +1,8 @@
 package com.github.musikk.hex;
 
-public class ByteArrayDataProvider implements DataProvider {
+import java.nio.ByteBuffer;
+
+public class ByteArrayDataProvider extends AbstractDataProvider {
 
 	private final byte[] data;
 
@@ -23,4 +25,14 @@ public class ByteArrayDataProvider implements DataProvider {
 		return bytesToCopy;
 	}
 
+	@Override
+	public int get(ByteBuffer dst, long offset) {
+		if (offset > data.length) {
+			return -1;
+		}
+		int bytesToCopy = (int) Math.min(dst.remaining(), data.length - offset);
+		dst.put(data, (int) offset, bytesToCopy);
+		return bytesToCopy;
+	}
+
 }
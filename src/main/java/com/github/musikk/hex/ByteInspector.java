@@ -17,6 +17,7 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 
 /**
@@ -151,20 +152,33 @@ class ByteInspector extends JPanel {
 	}
 
 	/**
-	 * Updates the data that is displayed by this {@code ByteInspector}.
+	 * Updates the data that is displayed by this {@code ByteInspector}. The
+	 * data is read on the calling thread, the fields are updated on the event
+	 * dispatch thread.
 	 * @param data
 	 * @param index
 	 */
 	void setData(DataProvider data, long index) {
-		Arrays.fill(bytes, (byte) 0);
-		int read = data.get(bytes, index);
-		if (read < bytes.length) {
-			byte[] temp = new byte[bytes.length];
-			System.arraycopy(bytes, 0, temp, bytes.length - read, read);
-			System.arraycopy(temp, 0, bytes, 0, bytes.length);
-		}
-		byteIndex = bytes.length - read;
-		fillLabels(getSelectedRadix());
+		final byte[] read = new byte[bytes.length];
+		int r = Math.max(0, data.get(read, index));
+		final int readIndex = read.length - r;
+		if (r < read.length) {
+			System.arraycopy(read, 0, read, readIndex, r);
+			Arrays.fill(read, 0, readIndex, (byte) 0);
+		}
+		Runnable apply = new Runnable() {
+			@Override
+			public void run() {
+				System.arraycopy(read, 0, bytes, 0, bytes.length);
+				byteIndex = readIndex;
+				fillLabels(getSelectedRadix());
+			}
+		};
+		if (SwingUtilities.isEventDispatchThread()) {
+			apply.run();
+		} else {
+			SwingUtilities.invokeLater(apply);
+		}
 	}
 
 	private ByteInspector.Radix getSelectedRadix() {
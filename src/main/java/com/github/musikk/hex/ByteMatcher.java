@@ -0,0 +1,63 @@
+package com.github.musikk.hex;
+
+/**
+ * Finds occurrences of one or more byte patterns in a buffer. A
+ * {@link SearchEngine} feeds the data of a {@link DataProvider} to a
+ * {@code ByteMatcher} chunk by chunk.
+ * <p>
+ * Implementations must be thread-safe since different chunks are searched
+ * concurrently.
+ */
+public interface ByteMatcher {
+
+	/**
+	 * Returns the length of the longest possible match. Consecutive chunks
+	 * overlap by one byte less than this so matches that cross a chunk
+	 * boundary are found.
+	 *
+	 * @return the maximum match length
+	 */
+	int getMaxLength();
+
+	/**
+	 * Reports all matches that start before {@code limit} in {@code buffer}.
+	 * Matches must lie entirely within the first {@code length} bytes of the
+	 * buffer.
+	 *
+	 * @param buffer
+	 *            the data to search
+	 * @param length
+	 *            the number of valid bytes in {@code buffer}
+	 * @param limit
+	 *            the index of the first byte in {@code buffer} where no match
+	 *            may start
+	 * @param offset
+	 *            the position of {@code buffer[0]} in the data; added to the
+	 *            positions that are reported
+	 * @param listener
+	 *            receives the matches in ascending order of their last byte
+	 */
+	void find(byte[] buffer, int length, int limit, long offset, MatchListener listener);
+
+	/**
+	 * Receives the matches found by a {@link ByteMatcher}.
+	 */
+	public interface MatchListener {
+
+		/**
+		 * Called for every match.
+		 *
+		 * @param pattern
+		 *            the index of the pattern that matched; always 0 for
+		 *            matchers that look for a single pattern
+		 * @param offset
+		 *            the position of the match in the data
+		 * @param length
+		 *            the length of the match
+		 * @return whether the search should go on
+		 */
+		boolean matchFound(int pattern, long offset, int length);
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.github.musikk.hex;
+
+import java.util.Arrays;
+
+/**
+ * {@link ByteMatcher} for an exact sequence of bytes. Uses the
+ * Boyer-Moore-Horspool algorithm which skips ahead by up to the length of the
+ * pattern after every mismatch.
+ */
+public class BytePattern implements ByteMatcher {
+
+	private final byte[] pattern;
+	/**
+	 * How far the search may advance if the byte aligned with the end of the
+	 * pattern has a certain value.
+	 */
+	private final int[] shift = new int[256];
+
+	/**
+	 * Creates a {@code BytePattern}.
+	 *
+	 * @param pattern
+	 *            the bytes to look for
+	 * @throws IllegalArgumentException
+	 *             if {@code pattern} is empty
+	 */
+	public BytePattern(byte[] pattern) {
+		if (pattern.length == 0) {
+			throw new IllegalArgumentException("Pattern must not be empty.");
+		}
+		this.pattern = pattern.clone();
+		Arrays.fill(shift, pattern.length);
+		for (int i = 0; i < pattern.length - 1; i++) {
+			shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+		}
+	}
+
+	/**
+	 * Parses a pattern of hex digits like {@code 4D 5A 90}. Whitespace is
+	 * ignored.
+	 *
+	 * @param hex
+	 *            the pattern
+	 * @return the parsed {@code BytePattern}
+	 * @throws IllegalArgumentException
+	 *             if {@code hex} contains characters other than hex digits and
+	 *             whitespace, an odd number of digits or no digits at all
+	 */
+	public static BytePattern parse(String hex) {
+		String digits = hex.replaceAll("\\s+", "");
+		if (digits.length() % 2 != 0) {
+			throw new IllegalArgumentException("Odd number of hex digits: " + hex);
+		}
+		byte[] bytes = new byte[digits.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(digits.charAt(2 * i), 16);
+			int low = Character.digit(digits.charAt(2 * i + 1), 16);
+			if (high == -1 || low == -1) {
+				throw new IllegalArgumentException("Not a hex byte: " + digits.substring(2 * i, 2 * i + 2));
+			}
+			bytes[i] = (byte) (high << 4 | low);
+		}
+		return new BytePattern(bytes);
+	}
+
+	public byte[] getBytes() {
+		return pattern.clone();
+	}
+
+	@Override
+	public int getMaxLength() {
+		return pattern.length;
+	}
+
+	@Override
+	public void find(byte[] buffer, int length, int limit, long offset, MatchListener listener) {
+		int last = pattern.length - 1;
+		byte lastByte = pattern[last];
+		int end = Math.min(limit, length - last);
+		int i = 0;
+		while (i < end) {
+			byte b = buffer[i + last];
+			if (b == lastByte && matchesAt(buffer, i)) {
+				if (!listener.matchFound(0, offset + i, pattern.length)) {
+					return;
+				}
+			}
+			i += shift[b & 0xFF];
+		}
+	}
+
+	private boolean matchesAt(byte[] buffer, int start) {
+		for (int i = pattern.length - 2; i >= 0; i--) {
+			if (buffer[start + i] != pattern[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : pattern) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(String.format("%02X", b & 0xFF));
+		}
+		return sb.toString();
+	}
+
+}
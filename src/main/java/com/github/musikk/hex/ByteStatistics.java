@@ -0,0 +1,151 @@
+package com.github.musikk.hex;
+
+/**
+ * Statistics of the byte values of a range of data, derived from its
+ * histogram.
+ */
+public class ByteStatistics {
+
+	private final long[] histogram;
+	private final long count;
+
+	/**
+	 * Creates the statistics for a histogram.
+	 *
+	 * @param histogram
+	 *            the number of occurrences of each of the 256 byte values; is
+	 *            copied
+	 */
+	public ByteStatistics(long[] histogram) {
+		if (histogram.length != 256) {
+			throw new IllegalArgumentException("Histogram needs 256 values but has " + histogram.length + ".");
+		}
+		this.histogram = histogram.clone();
+		long count = 0;
+		for (long c : histogram) {
+			count += c;
+		}
+		this.count = count;
+	}
+
+	/**
+	 * Adds the bytes of {@code buffer} to a histogram.
+	 *
+	 * @param histogram
+	 *            the histogram
+	 * @param buffer
+	 *            the bytes
+	 * @param length
+	 *            the number of bytes to add
+	 */
+	static void count(long[] histogram, byte[] buffer, int length) {
+		// ints are faster to increment and cannot overflow for a single buffer
+		int[] counts = new int[256];
+		for (int i = 0; i < length; i++) {
+			counts[buffer[i] & 0xFF]++;
+		}
+		for (int b = 0; b < 256; b++) {
+			histogram[b] += counts[b];
+		}
+	}
+
+	/**
+	 * Returns the number of bytes.
+	 *
+	 * @return the number of bytes
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns how often a byte value occurs.
+	 *
+	 * @param value
+	 *            the byte value between 0 and 255
+	 * @return the number of occurrences
+	 */
+	public long getCount(int value) {
+		return histogram[value];
+	}
+
+	public long getZeroCount() {
+		return histogram[0];
+	}
+
+	/**
+	 * Returns the smallest byte value.
+	 *
+	 * @return the smallest value as unsigned byte or -1 if there are no bytes
+	 */
+	public int getMin() {
+		for (int b = 0; b < 256; b++) {
+			if (histogram[b] != 0) {
+				return b;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the largest byte value.
+	 *
+	 * @return the largest value as unsigned byte or -1 if there are no bytes
+	 */
+	public int getMax() {
+		for (int b = 255; b >= 0; b--) {
+			if (histogram[b] != 0) {
+				return b;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the mean of the unsigned byte values.
+	 *
+	 * @return the mean or 0 if there are no bytes
+	 */
+	public double getMean() {
+		if (count == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for (int b = 0; b < 256; b++) {
+			sum += (double) b * histogram[b];
+		}
+		return sum / count;
+	}
+
+	/**
+	 * Returns the number of different byte values.
+	 *
+	 * @return the number of values that occur at least once
+	 */
+	public int getDistinctValues() {
+		int distinct = 0;
+		for (long c : histogram) {
+			if (c != 0) {
+				distinct++;
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * Returns the Shannon entropy of the byte values.
+	 *
+	 * @return the entropy in bits per byte, between 0 and 8
+	 */
+	public double getEntropy() {
+		double entropy = 0;
+		for (long c : histogram) {
+			if (c != 0) {
+				double p = (double) c / count;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+
+}
@@ -0,0 +1,235 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link DataProvider} that caches the data of another {@code DataProvider} in
+ * pages of a fixed size. Pages are aligned to multiples of the page size. If
+ * the configured memory budget is exhausted, the least recently used page is
+ * evicted.
+ * <p>
+ * The number of hits, misses and evictions is recorded and can be used to
+ * find a suitable budget.
+ * <p>
+ * Like any {@code DataProvider}, instances may be read from multiple threads
+ * at once.
+ */
+public class CachingDataProvider extends AbstractDataProvider {
+
+	public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+	public static final long DEFAULT_BUDGET = 32 * 1024 * 1024;
+
+	/**
+	 * Reads of at least this many bytes bypass the cache. Such reads come from
+	 * scans over large parts of the data, like searches, and would otherwise
+	 * evict the pages that are actually reused.
+	 */
+	public static final int BYPASS_SIZE = 1024 * 1024;
+
+	private final DataProvider data;
+	private final int pageSize;
+	private final int maxPages;
+
+	/**
+	 * The cached pages by page number in access order. The eldest entry is the
+	 * least recently used page.
+	 */
+	private final LinkedHashMap<Long, byte[]> pages;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a {@code CachingDataProvider} with {@link #DEFAULT_PAGE_SIZE}
+	 * and {@link #DEFAULT_BUDGET}.
+	 *
+	 * @param data
+	 *            the {@code DataProvider} whose data is cached
+	 */
+	public CachingDataProvider(DataProvider data) {
+		this(data, DEFAULT_PAGE_SIZE, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Creates a {@code CachingDataProvider}.
+	 *
+	 * @param data
+	 *            the {@code DataProvider} whose data is cached
+	 * @param pageSize
+	 *            the size of a single page in bytes
+	 * @param budget
+	 *            the maximum number of bytes that are kept in memory; at least
+	 *            one page is always cached
+	 * @throws IllegalArgumentException
+	 *             if {@code pageSize} is not positive
+	 */
+	public CachingDataProvider(DataProvider data, int pageSize, long budget) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("page size must be positive but is " + pageSize);
+		}
+		this.data = data;
+		this.pageSize = pageSize;
+		this.maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / pageSize));
+		this.pages = new LinkedHashMap<Long, byte[]>(16, .75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+				if (size() > maxPages) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public long getLength() {
+		return data.getLength();
+	}
+
+	/**
+	 * Reads from the cached pages. Pages that are not cached are read from the
+	 * underlying {@code DataProvider} without holding the lock of this
+	 * instance, so concurrent reads of different pages do not wait for each
+	 * other. Reads of {@link #BYPASS_SIZE} or more bytes go to the underlying
+	 * {@code DataProvider} directly.
+	 */
+	@Override
+	public int get(ByteBuffer dst, long offset) {
+		if (dst.remaining() >= BYPASS_SIZE) {
+			return data.get(dst, offset);
+		}
+		long length = data.getLength();
+		if (offset > length) {
+			return -1;
+		}
+		int toRead = (int) Math.min(dst.remaining(), length - offset);
+		int read = 0;
+		while (read < toRead) {
+			long position = offset + read;
+			byte[] page = getPage(position / pageSize);
+			int pageOffset = (int) (position % pageSize);
+
+			int r = Math.min(toRead - read, page.length - pageOffset);
+			if (r <= 0) {
+				// underlying data is shorter than it claims
+				break;
+			}
+			dst.put(page, pageOffset, r);
+			read += r;
+		}
+		return read;
+	}
+
+	/**
+	 * Makes sure the page that contains {@code offset} is cached. Unlike
+	 * {@link #get(ByteBuffer, long)} this neither affects the statistics nor the
+	 * eviction order of pages that are already cached.
+	 *
+	 * @param offset
+	 *            an offset within the page to load
+	 */
+	void prefetch(long offset) {
+		long pageNumber = offset / pageSize;
+		if (offset < 0 || offset >= data.getLength()) {
+			return;
+		}
+		synchronized (this) {
+			if (pages.containsKey(pageNumber)) {
+				return;
+			}
+		}
+		putPage(pageNumber, loadPage(pageNumber));
+	}
+
+	private byte[] getPage(long pageNumber) {
+		synchronized (this) {
+			byte[] page = pages.get(pageNumber);
+			if (page != null) {
+				hits++;
+				return page;
+			}
+			misses++;
+		}
+		return putPage(pageNumber, loadPage(pageNumber));
+	}
+
+	/**
+	 * Adds a page to the cache unless another thread has loaded the same page
+	 * in the meantime.
+	 *
+	 * @return the page that is cached
+	 */
+	private synchronized byte[] putPage(long pageNumber, byte[] page) {
+		byte[] existing = pages.get(pageNumber);
+		if (existing != null) {
+			return existing;
+		}
+		pages.put(pageNumber, page);
+		return page;
+	}
+
+	private byte[] loadPage(long pageNumber) {
+		long pageStart = pageNumber * pageSize;
+		byte[] page = new byte[(int) Math.min(pageSize, data.getLength() - pageStart)];
+		int read = data.get(page, pageStart);
+		if (read < page.length) {
+			byte[] truncated = new byte[Math.max(0, read)];
+			System.arraycopy(page, 0, truncated, 0, truncated.length);
+			page = truncated;
+		}
+		return page;
+	}
+
+	/**
+	 * Drops all cached pages. The statistics are left untouched.
+	 */
+	public synchronized void clear() {
+		pages.clear();
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Returns the number of pages that are kept at most.
+	 *
+	 * @return the maximum page count
+	 */
+	public int getMaxPages() {
+		return maxPages;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the fraction of page lookups that could be served from the cache.
+	 *
+	 * @return the hit rate between 0 and 1 or 0 if there were no lookups yet
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("CachingDataProvider: %d/%d pages of %d bytes [hits: %d, misses: %d, evictions: %d]",
+				pages.size(), maxPages, pageSize, hits, misses, evictions);
+	}
+
+}
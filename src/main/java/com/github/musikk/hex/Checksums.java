@@ -0,0 +1,337 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Computes CRC32, Adler32, MD5, SHA-1 and SHA-256 of a range of data in the
+ * background, reading the data only once.
+ * <p>
+ * The range is processed in rounds of one chunk per thread of
+ * {@link BackgroundTask#POOL}. The chunks of a round are read in parallel and
+ * their CRC32 and Adler32 are computed right away; the checksums of the chunks
+ * are combined afterwards. The digests have to see the data in order, so each
+ * digest runs on a thread of its own over the chunks of a round while the
+ * next round is read.
+ */
+public class Checksums extends BackgroundTask {
+
+	/**
+	 * The number of bytes that are read by a single task.
+	 */
+	static final int CHUNK_SIZE = 1024 * 1024;
+
+	private static final String[] DIGESTS = { "MD5", "SHA-1", "SHA-256" };
+
+	private static final int ADLER_BASE = 65521;
+
+	private final DataProvider data;
+	private final long from;
+	private final long to;
+
+	private final MessageDigest[] digests = new MessageDigest[DIGESTS.length];
+	private long crc32;
+	private long adler32 = 1;
+
+	private volatile Map<String, String> results;
+
+	private Checksums(DataProvider data, long from, long to) {
+		super(to - from);
+		this.data = data;
+		this.from = from;
+		this.to = to;
+		for (int i = 0; i < DIGESTS.length; i++) {
+			try {
+				digests[i] = MessageDigest.getInstance(DIGESTS[i]);
+			} catch (NoSuchAlgorithmException e) {
+				// every Java platform has to support them
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Starts to compute the checksums of the range from {@code from}
+	 * (inclusive) to {@code to} (exclusive).
+	 *
+	 * @param data
+	 *            the data
+	 * @param from
+	 *            the start of the range
+	 * @param to
+	 *            the end of the range
+	 * @param whenFinished
+	 *            run on a background thread when the computation has stopped
+	 * @return the running computation
+	 * @throws IllegalArgumentException
+	 *             if the range is not within the data
+	 */
+	public static Checksums compute(DataProvider data, long from, long to, final Runnable whenFinished) {
+		if (from < 0 || from > to || to > data.getLength()) {
+			throw new IllegalArgumentException(String.format("Invalid range %d-%d for data of length %d.",
+					from, to, data.getLength()));
+		}
+		final Checksums checksums = new Checksums(data, from, to);
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					checksums.run();
+				} catch (RuntimeException e) {
+					checksums.fail(e);
+				} finally {
+					checksums.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return checksums;
+	}
+
+	/**
+	 * Returns the checksums once they have been computed.
+	 *
+	 * @return the checksums in hex by name of the algorithm or {@code null} if
+	 *         the computation is not complete, was cancelled or has failed
+	 */
+	public Map<String, String> getResults() {
+		return results;
+	}
+
+	public long getFrom() {
+		return from;
+	}
+
+	public long getTo() {
+		return to;
+	}
+
+	private void run() {
+		int parallelism = BackgroundTask.POOL.getParallelism();
+		Chunk[][] rounds = new Chunk[2][parallelism];
+		for (Chunk[] round : rounds) {
+			for (int i = 0; i < parallelism; i++) {
+				round[i] = new Chunk();
+			}
+		}
+
+		int current = 0;
+		List<ForkJoinTask<?>> firstRound = new ArrayList<>();
+		int count = read(rounds[current], from, firstRound);
+		ForkJoinTask.invokeAll(firstRound);
+		for (long position = from; count > 0 && !isCancelled(); current ^= 1) {
+			Chunk[] chunks = rounds[current];
+			long next = position + (long) count * CHUNK_SIZE;
+
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (MessageDigest digest : digests) {
+				tasks.add(new DigestTask(digest, chunks, count));
+			}
+			int nextCount = read(rounds[current ^ 1], next, tasks);
+			ForkJoinTask.invokeAll(tasks);
+
+			for (int i = 0; i < count; i++) {
+				crc32 = combineCrc32(crc32, chunks[i].crc32, chunks[i].length);
+				adler32 = combineAdler32(adler32, chunks[i].adler32, chunks[i].length);
+				addProgress(chunks[i].length);
+			}
+			position = next;
+			count = nextCount;
+		}
+		if (isCancelled()) {
+			return;
+		}
+
+		Map<String, String> results = new LinkedHashMap<>();
+		results.put("CRC32", String.format("%08x", crc32));
+		results.put("Adler32", String.format("%08x", adler32));
+		for (int i = 0; i < DIGESTS.length; i++) {
+			results.put(DIGESTS[i], toHex(digests[i].digest()));
+		}
+		this.results = results;
+	}
+
+	/**
+	 * Adds the tasks that read the chunks of a round starting at
+	 * {@code start} to {@code tasks}.
+	 *
+	 * @return the number of chunks in the round
+	 */
+	private int read(Chunk[] chunks, long start, List<ForkJoinTask<?>> tasks) {
+		int count = 0;
+		for (long offset = start; offset < to && count < chunks.length; offset += CHUNK_SIZE) {
+			Chunk chunk = chunks[count++];
+			chunk.offset = offset;
+			chunk.length = (int) Math.min(CHUNK_SIZE, to - offset);
+			tasks.add(new ReadTask(chunk));
+		}
+		return count;
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the CRC32 of two consecutive pieces of data from their CRC32s
+	 * and the length of the second piece, like {@code crc32_combine} of zlib.
+	 * The CRC of the first piece is multiplied with the matrix that appends
+	 * {@code length2} zero bytes, which is computed by repeated squaring.
+	 */
+	static long combineCrc32(long crc1, long crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+		int[] even = new int[32];
+		int[] odd = new int[32];
+
+		// the operator for a single zero bit
+		odd[0] = 0xEDB88320;
+		int row = 1;
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+		// two zero bits, then four
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+
+		int crc = (int) crc1;
+		do {
+			// the first square yields the operator for a zero byte
+			gf2MatrixSquare(even, odd);
+			if ((length2 & 1) != 0) {
+				crc = gf2MatrixTimes(even, crc);
+			}
+			length2 >>= 1;
+			if (length2 == 0) {
+				break;
+			}
+			gf2MatrixSquare(odd, even);
+			if ((length2 & 1) != 0) {
+				crc = gf2MatrixTimes(odd, crc);
+			}
+			length2 >>= 1;
+		} while (length2 != 0);
+		return (crc ^ crc2) & 0xFFFFFFFFL;
+	}
+
+	private static int gf2MatrixTimes(int[] matrix, int vector) {
+		int sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(int[] square, int[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * Returns the Adler32 of two consecutive pieces of data from their
+	 * Adler32s and the length of the second piece, like
+	 * {@code adler32_combine} of zlib.
+	 */
+	static long combineAdler32(long adler1, long adler2, long length2) {
+		long remainder = length2 % ADLER_BASE;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = remainder * sum1 % ADLER_BASE;
+		sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+		sum2 += (adler1 >> 16 & 0xFFFF) + (adler2 >> 16 & 0xFFFF) + ADLER_BASE - remainder;
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum2 >= 2 * ADLER_BASE) {
+			sum2 -= 2 * ADLER_BASE;
+		}
+		if (sum2 >= ADLER_BASE) {
+			sum2 -= ADLER_BASE;
+		}
+		return sum1 | sum2 << 16;
+	}
+
+	/**
+	 * A piece of the range and its buffer. The buffers are reused for every
+	 * other round.
+	 */
+	private static class Chunk {
+		final byte[] buffer = new byte[CHUNK_SIZE];
+		long offset;
+		int length;
+		long crc32;
+		long adler32;
+	}
+
+	/**
+	 * Reads a chunk and computes its CRC32 and Adler32.
+	 */
+	private class ReadTask extends RecursiveAction {
+		private final Chunk chunk;
+
+		ReadTask(Chunk chunk) {
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (isCancelled()) {
+				return;
+			}
+			int read = data.get(ByteBuffer.wrap(chunk.buffer, 0, chunk.length), chunk.offset);
+			if (read != chunk.length) {
+				throw new IllegalStateException(String.format("Cannot read %d bytes at %d.",
+						chunk.length, chunk.offset));
+			}
+			CRC32 crc = new CRC32();
+			crc.update(chunk.buffer, 0, chunk.length);
+			chunk.crc32 = crc.getValue();
+			Adler32 adler = new Adler32();
+			adler.update(chunk.buffer, 0, chunk.length);
+			chunk.adler32 = adler.getValue();
+		}
+	}
+
+	/**
+	 * Updates a digest with the chunks of a round in order.
+	 */
+	private static class DigestTask extends RecursiveAction {
+		private final MessageDigest digest;
+		private final Chunk[] chunks;
+		private final int count;
+
+		DigestTask(MessageDigest digest, Chunk[] chunks, int count) {
+			this.digest = digest;
+			this.chunks = chunks;
+			this.count = count;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i = 0; i < count; i++) {
+				digest.update(chunks[i].buffer, 0, chunks[i].length);
+			}
+		}
+	}
+
+}
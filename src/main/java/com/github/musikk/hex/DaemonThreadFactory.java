@@ -0,0 +1,47 @@
+package com.github.musikk.hex;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} for background work. The threads are daemon threads so
+ * they do not keep the application alive.
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+	private final String name;
+	private final int priority;
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * Creates a {@code DaemonThreadFactory} for threads with normal priority.
+	 *
+	 * @param name
+	 *            the prefix of the thread names
+	 */
+	DaemonThreadFactory(String name) {
+		this(name, Thread.NORM_PRIORITY);
+	}
+
+	/**
+	 * Creates a {@code DaemonThreadFactory}.
+	 *
+	 * @param name
+	 *            the prefix of the thread names
+	 * @param priority
+	 *            the priority of the threads
+	 */
+	DaemonThreadFactory(String name, int priority) {
+		this.name = name;
+		this.priority = priority;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+		t.setDaemon(true);
+		t.setPriority(priority);
+		return t;
+	}
+
+}
@@ -1,8 +1,34 @@
 package com.github.musikk.hex;
 
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the data that is shown in a {@link HexPanel}.
+ * <p>
+ * Implementations must support concurrent reads from multiple threads. A read
+ * must never influence the result of another read that happens at the same
+ * time, so data can be searched or read ahead in the background while the
+ * panel is painted.
+ */
 public interface DataProvider {
 
 	long getLength();
 	int get(byte[] data, long offset);
 
+	/**
+	 * Reads data starting at {@code offset} into {@code dst}. At most
+	 * {@code dst.remaining()} bytes are read; they are stored starting at the
+	 * current position of {@code dst} which is advanced by the number of bytes
+	 * read.
+	 *
+	 * @param dst
+	 *            the buffer to fill
+	 * @param offset
+	 *            the position in the data to start reading from
+	 * @return the number of bytes read or -1 if {@code offset} is beyond the
+	 *         end of the data
+	 * @see AbstractDataProvider
+	 */
+	int get(ByteBuffer dst, long offset);
+
 }
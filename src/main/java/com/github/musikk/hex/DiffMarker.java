@@ -0,0 +1,62 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import com.github.musikk.hex.HexPanel.Metrics;
+
+/**
+ * {@link Marker} that fills the background of all ranges of a
+ * {@link DiffRanges}. A single marker stands for any number of ranges; only
+ * the visible ones are looked up and painted.
+ */
+public class DiffMarker extends AbstractMarker {
+
+	private final DiffRanges ranges;
+	private final Color color;
+	private final long length;
+
+	/**
+	 * Creates a {@code DiffMarker}.
+	 *
+	 * @param ranges
+	 *            the ranges to mark; may grow later, see {@link #update()}
+	 * @param color
+	 *            the fill color
+	 * @param length
+	 *            the length of the data of the panel; the parts of the ranges
+	 *            beyond it are not painted
+	 */
+	public DiffMarker(DiffRanges ranges, Color color, long length) {
+		this.ranges = ranges;
+		this.color = color;
+		this.length = length;
+	}
+
+	public DiffRanges getRanges() {
+		return ranges;
+	}
+
+	/**
+	 * Notifies the listeners that ranges have been added.
+	 */
+	public void update() {
+		fireEvent();
+	}
+
+	@Override
+	public void paint(Graphics2D g2, Metrics metrics) {
+		long first = metrics.getOffset();
+		long last = Math.min(length, first + (long) metrics.getLines() * metrics.getLineLength());
+		g2.setColor(color);
+		int size = ranges.size();
+		for (int i = ranges.ceiling(first); i < size; i++) {
+			long start = ranges.getStart(i);
+			if (start >= last) {
+				break;
+			}
+			HighlightMarker.fill(g2, metrics, start, Math.min(ranges.getEnd(i), length) - 1);
+		}
+	}
+
+}
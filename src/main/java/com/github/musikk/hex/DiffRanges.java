@@ -0,0 +1,159 @@
+package com.github.musikk.hex;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of disjoint byte ranges, as found by a {@link BinaryDiff}. The
+ * ranges are stored as pairs of longs in a single array, so a list of
+ * millions of ranges takes little more than 16 bytes per range.
+ * <p>
+ * Ranges are appended by a single thread in ascending order; adjacent ranges
+ * are joined. Any thread may read the ranges that have been appended.
+ */
+public class DiffRanges {
+
+	/**
+	 * The start (inclusive) of range {@code i} at index {@code 2 * i} and its
+	 * end (exclusive) at index {@code 2 * i + 1}.
+	 */
+	private long[] bounds = new long[32];
+	private int size;
+	private long byteCount;
+
+	/**
+	 * Appends a range. Joins it with the last range if they touch.
+	 *
+	 * @param start
+	 *            the start of the range (inclusive)
+	 * @param end
+	 *            the end of the range (exclusive)
+	 * @throws IllegalArgumentException
+	 *             if the range is empty or does not start after the last
+	 *             range
+	 */
+	synchronized void add(long start, long end) {
+		if (start >= end) {
+			throw new IllegalArgumentException(String.format("Empty range %d-%d.", start, end));
+		}
+		if (size > 0) {
+			long lastEnd = bounds[2 * size - 1];
+			if (start < lastEnd) {
+				throw new IllegalArgumentException(String.format(
+						"Range %d-%d does not start after the last range ending at %d.", start, end, lastEnd));
+			}
+			if (start == lastEnd) {
+				bounds[2 * size - 1] = end;
+				byteCount += end - start;
+				return;
+			}
+		}
+		if (2 * size == bounds.length) {
+			bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+		}
+		bounds[2 * size] = start;
+		bounds[2 * size + 1] = end;
+		size++;
+		byteCount += end - start;
+	}
+
+	/**
+	 * Returns the number of ranges.
+	 *
+	 * @return the number of ranges
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes in all ranges.
+	 *
+	 * @return the number of bytes
+	 */
+	public synchronized long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Returns the start of a range.
+	 *
+	 * @param index
+	 *            the index of the range
+	 * @return the first byte of the range
+	 */
+	public synchronized long getStart(int index) {
+		checkIndex(index);
+		return bounds[2 * index];
+	}
+
+	/**
+	 * Returns the end of a range.
+	 *
+	 * @param index
+	 *            the index of the range
+	 * @return the position after the last byte of the range
+	 */
+	public synchronized long getEnd(int index) {
+		checkIndex(index);
+		return bounds[2 * index + 1];
+	}
+
+	/**
+	 * Finds the first range that ends after {@code offset}, that is, the range
+	 * that contains {@code offset} or the first one after it.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return the index of the range or {@link #size()} if there is none
+	 */
+	public synchronized int ceiling(long offset) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (bounds[2 * middle + 1] <= offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the first range that starts after {@code offset}.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return the index of the range or -1 if there is none
+	 */
+	public synchronized int next(long offset) {
+		int index = ceiling(offset);
+		if (index < size && bounds[2 * index] <= offset) {
+			index++;
+		}
+		return index < size ? index : -1;
+	}
+
+	/**
+	 * Finds the last range that starts before {@code offset}.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @return the index of the range or -1 if there is none
+	 */
+	public synchronized int previous(long offset) {
+		int index = ceiling(offset);
+		if (index < size && bounds[2 * index] < offset) {
+			return index;
+		}
+		return index - 1;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+	}
+
+}
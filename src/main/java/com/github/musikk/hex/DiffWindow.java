@@ -0,0 +1,314 @@
+package com.github.musikk.hex;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Event;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+
+import javax.swing.AbstractAction;
+import javax.swing.ActionMap;
+import javax.swing.InputMap;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSplitPane;
+import javax.swing.JToolBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Shows two files side by side with the bytes in which they differ
+ * highlighted. Both panels scroll together, and the differences can be
+ * visited one after another.
+ */
+class DiffWindow extends JFrame {
+
+	private static final Color DIFF_COLOR = new Color(255, 0, 0, 64);
+	private static final int REFRESH_INTERVAL = 250;
+
+	private final CachingDataProvider leftData;
+	private final CachingDataProvider rightData;
+	private final ScrollableHexPanel leftPanel;
+	private final ScrollableHexPanel rightPanel;
+	private final JLabel summaryLabel = new JLabel(" ");
+
+	private final PreviousDifferenceAction previousAction = new PreviousDifferenceAction();
+	private final NextDifferenceAction nextAction = new NextDifferenceAction();
+
+	private BinaryDiff diff;
+	private DiffMarker leftMarker;
+	private DiffMarker rightMarker;
+
+	/**
+	 * Whether one panel is being scrolled to follow the other.
+	 */
+	private boolean syncing;
+
+	/**
+	 * Shows the differences found so far while the comparison is running.
+	 */
+	private final Timer refreshTimer = new Timer(REFRESH_INTERVAL, new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			refresh();
+		}
+	});
+
+	/**
+	 * Creates a window that compares two files. The comparison starts with
+	 * {@link #compare()}.
+	 *
+	 * @param left
+	 *            the file on the left
+	 * @param right
+	 *            the file on the right
+	 * @param memoryMapped
+	 *            whether the files are read through
+	 *            {@link MappedFileDataProvider}s
+	 * @throws IOException
+	 *             if a file cannot be opened
+	 */
+	public DiffWindow(File left, File right, boolean memoryMapped) throws IOException {
+		super("hex - " + left.getName() + " / " + right.getName());
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		setSize(new Dimension(1024, 768));
+
+		DataProvider leftFile = open(left, memoryMapped);
+		DataProvider rightFile = open(right, memoryMapped);
+		leftData = new CachingDataProvider(leftFile);
+		rightData = new CachingDataProvider(rightFile);
+		leftPanel = createPanel(leftData, leftFile);
+		rightPanel = createPanel(rightData, rightFile);
+		leftPanel.addScrollListener(new ScrollSync(leftPanel, rightPanel));
+		rightPanel.addScrollListener(new ScrollSync(rightPanel, leftPanel));
+
+		JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+				withTitle(leftPanel, left), withTitle(rightPanel, right));
+		splitPane.setResizeWeight(0.5);
+
+		JToolBar toolbar = new JToolBar(JToolBar.HORIZONTAL);
+		toolbar.setFloatable(false);
+		toolbar.add(new JButton(previousAction));
+		toolbar.add(new JButton(nextAction));
+		toolbar.addSeparator();
+		toolbar.add(summaryLabel);
+
+		setLayout(new BorderLayout());
+		add(toolbar, BorderLayout.NORTH);
+		add(splitPane, BorderLayout.CENTER);
+
+		InputMap rootInputMap = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+		ActionMap rootActionMap = getRootPane().getActionMap();
+		rootInputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F8, 0), "NEXT_DIFFERENCE");
+		rootActionMap.put("NEXT_DIFFERENCE", nextAction);
+		rootInputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F8, Event.SHIFT_MASK), "PREVIOUS_DIFFERENCE");
+		rootActionMap.put("PREVIOUS_DIFFERENCE", previousAction);
+
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				refreshTimer.stop();
+				if (diff != null) {
+					diff.cancel();
+				}
+				leftPanel.setReadAhead(null);
+				rightPanel.setReadAhead(null);
+			}
+		});
+		updateActions();
+	}
+
+	private static DataProvider open(File file, boolean memoryMapped) throws IOException {
+		return memoryMapped ? new MappedFileDataProvider(file) : new FileDataProvider(file);
+	}
+
+	private static ScrollableHexPanel createPanel(CachingDataProvider data, DataProvider uncachedData) {
+		ScrollableHexPanel panel = new ScrollableHexPanel(data, uncachedData);
+		panel.setHoverMarker(new SimpleBorderMarker(Color.BLACK));
+		panel.setSelectionMarker(new SimpleBorderMarker(Color.BLUE));
+		panel.setReadAhead(new ReadAhead(data));
+		return panel;
+	}
+
+	private static JPanel withTitle(ScrollableHexPanel panel, File file) {
+		JPanel titled = new JPanel(new BorderLayout());
+		titled.add(new JLabel(file.getAbsolutePath()), BorderLayout.NORTH);
+		titled.add(panel, BorderLayout.CENTER);
+		return titled;
+	}
+
+	/**
+	 * Starts to compare the files. Must be called on the event dispatch
+	 * thread.
+	 */
+	public void compare() {
+		diff = BinaryDiff.compare(leftData, rightData, new Runnable() {
+			@Override
+			public void run() {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						refresh();
+					}
+				});
+			}
+		});
+		leftMarker = new DiffMarker(diff.getRanges(), DIFF_COLOR, leftData.getLength());
+		rightMarker = new DiffMarker(diff.getRanges(), DIFF_COLOR, rightData.getLength());
+		leftPanel.getHexPanel().addMarker(leftMarker);
+		rightPanel.getHexPanel().addMarker(rightMarker);
+		summaryLabel.setText("Comparing...");
+		refreshTimer.start();
+		TaskMonitor.monitor(this, "Comparing " + leftData.getLength() + " and " + rightData.getLength()
+				+ " bytes", diff);
+	}
+
+	private void refresh() {
+		if (diff == null) {
+			return;
+		}
+		leftMarker.update();
+		rightMarker.update();
+		updateActions();
+		DiffRanges ranges = diff.getRanges();
+		String found = String.format("%d differences, %d bytes", ranges.size(), ranges.getByteCount());
+		if (!diff.isDone()) {
+			summaryLabel.setText(String.format("%s, %.0f%%", found, 100 * diff.getProgress()));
+			return;
+		}
+		refreshTimer.stop();
+		if (diff.getError() != null) {
+			summaryLabel.setText("Comparison failed: " + diff.getError().getMessage());
+		} else if (diff.isTruncated()) {
+			summaryLabel.setText(found + " (stopped, too many differences)");
+		} else if (diff.isCancelled()) {
+			summaryLabel.setText(found + " (cancelled)");
+		} else if (ranges.size() == 0) {
+			summaryLabel.setText("The files are equal");
+		} else {
+			summaryLabel.setText(found);
+		}
+	}
+
+	private void updateActions() {
+		boolean found = diff != null && diff.getRanges().size() > 0;
+		previousAction.setEnabled(found);
+		nextAction.setEnabled(found);
+	}
+
+	/**
+	 * Returns the position from which the next or previous difference is
+	 * searched: the start of the selection or, without one, the first visible
+	 * byte.
+	 */
+	private long currentPosition(boolean forward) {
+		// only the longer file has a selection in its excess bytes
+		for (ScrollableHexPanel panel : new ScrollableHexPanel[] { leftPanel, rightPanel }) {
+			RangeMarker selection = panel.getSelectionMarker();
+			if (selection != null && !selection.isInvalid()) {
+				return Math.min(selection.getByteStart(), selection.getByteEnd());
+			}
+		}
+		long offset = leftPanel.getHexPanel().getMetrics().getOffset();
+		// a difference at the very top counts as the next one
+		return forward ? offset - 1 : offset;
+	}
+
+	private void showDifference(int index) {
+		if (index == -1) {
+			return;
+		}
+		DiffRanges ranges = diff.getRanges();
+		long start = ranges.getStart(index);
+		long end = ranges.getEnd(index);
+		select(leftPanel, leftData, start, end);
+		select(rightPanel, rightData, start, end);
+		syncing = true;
+		try {
+			leftPanel.showIndex(start);
+			rightPanel.scrollToOffset(leftPanel.getHexPanel().getMetrics().getOffset());
+		} finally {
+			syncing = false;
+		}
+		summaryLabel.setText(String.format("Difference %d of %d: 0x%x-0x%x (%d bytes)", index + 1,
+				ranges.size(), start, end, end - start));
+	}
+
+	private static void select(ScrollableHexPanel panel, DataProvider data, long start, long end) {
+		RangeMarker selection = panel.getSelectionMarker();
+		if (selection == null) {
+			return;
+		}
+		if (start >= data.getLength()) {
+			// the excess bytes of the other file
+			selection.invalidate();
+		} else {
+			selection.setByteStartEnd(start, Math.min(end, data.getLength()) - 1);
+		}
+	}
+
+	/**
+	 * Scrolls a panel to the offset of another one.
+	 */
+	private class ScrollSync implements ChangeListener {
+		private final ScrollableHexPanel source;
+		private final ScrollableHexPanel target;
+
+		ScrollSync(ScrollableHexPanel source, ScrollableHexPanel target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		@Override
+		public void stateChanged(ChangeEvent e) {
+			if (syncing) {
+				return;
+			}
+			syncing = true;
+			try {
+				target.scrollToOffset(source.getHexPanel().getMetrics().getOffset());
+			} finally {
+				syncing = false;
+			}
+		}
+	}
+
+	private class NextDifferenceAction extends AbstractAction {
+		public NextDifferenceAction() {
+			putValue(NAME, "Next Difference");
+			putValue(SHORT_DESCRIPTION, "Next Difference (F8)");
+		}
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (diff != null) {
+				showDifference(diff.getRanges().next(currentPosition(true)));
+			}
+		}
+	}
+
+	private class PreviousDifferenceAction extends AbstractAction {
+		public PreviousDifferenceAction() {
+			putValue(NAME, "Previous Difference");
+			putValue(SHORT_DESCRIPTION, "Previous Difference (Shift+F8)");
+		}
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (diff != null) {
+				showDifference(diff.getRanges().previous(currentPosition(false)));
+			}
+		}
+	}
+
+}
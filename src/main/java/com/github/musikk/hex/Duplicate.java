@@ -0,0 +1,34 @@
+package com.github.musikk.hex;
+
+/**
+ * A region of some data that occurs twice, as found by a
+ * {@link DuplicateFinder}. The two occurrences may overlap if the region
+ * repeats a pattern.
+ */
+public class Duplicate {
+
+	/**
+	 * The position of the first occurrence.
+	 */
+	public final long original;
+	/**
+	 * The position of the second occurrence, greater than {@link #original}.
+	 */
+	public final long copy;
+	/**
+	 * The number of bytes of each occurrence.
+	 */
+	public final long length;
+
+	public Duplicate(long original, long copy, long length) {
+		this.original = original;
+		this.copy = copy;
+		this.length = length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("0x%x = 0x%x (%d bytes)", original, copy, length);
+	}
+
+}
@@ -0,0 +1,582 @@
+package com.github.musikk.hex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds regions that occur more than once in some data, like duplicated
+ * sectors or copied sections of a firmware image.
+ * <p>
+ * The search works in two passes. The first pass rolls a buzhash over every
+ * window of {@link #WINDOW} bytes, in parallel chunks on
+ * {@link BackgroundTask#POOL}. A window is an anchor if the low bits of its
+ * hash are zero, so anchors depend only on the content and two copies of a
+ * region have the same anchors. The more data there is, the more bits have to
+ * be zero, so there are at most about {@link #MAX_ANCHORS} anchors; short
+ * regions in large data may be missed. The hash and the offset of each anchor
+ * are spilled to one of several partition files, chosen by the hash.
+ * <p>
+ * The second pass handles the partitions in parallel. Each one is read in
+ * offset order into a hash table that lives in a direct buffer and maps a
+ * hash to the last offset it was seen at. When a hash is seen again, the two
+ * windows are compared and, if they are equal, the match is extended in both
+ * directions byte by byte. Matches of at least the minimum length are
+ * reported unless an earlier match at the same distance covers them already.
+ */
+public class DuplicateFinder extends BackgroundTask {
+
+	/**
+	 * The number of bytes the rolling hash covers. A multiple of 32, so the
+	 * byte that leaves the window has been rotated back into place.
+	 */
+	static final int WINDOW = 64;
+	/**
+	 * The number of anchors the spacing of the anchors is chosen for.
+	 */
+	static final long MAX_ANCHORS = 64L * 1024 * 1024;
+	/**
+	 * The number of duplicates after which the search stops.
+	 */
+	static final int MAX_DUPLICATES = 10000;
+
+	private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final int PIECE_SIZE = 64 * 1024;
+	/**
+	 * The number of anchors each partition should hold.
+	 */
+	private static final long PARTITION_ANCHORS = 1024 * 1024;
+	private static final int MAX_PARTITIONS = 256;
+	/**
+	 * Each hash table has {@code 2^TABLE_BITS} slots of {@link #SLOT_SIZE}
+	 * bytes. If it gets too full, it forgets all entries.
+	 */
+	private static final int TABLE_BITS = 21;
+	private static final int SLOT_SIZE = 16;
+
+	/**
+	 * The random value of each byte for the buzhash.
+	 */
+	private static final int[] BYTE_HASHES = new int[256];
+
+	static {
+		Random random = new Random(42);
+		for (int i = 0; i < BYTE_HASHES.length; i++) {
+			BYTE_HASHES[i] = random.nextInt();
+		}
+	}
+
+	private static final Comparator<Duplicate> BY_ORIGINAL = new Comparator<Duplicate>() {
+		@Override
+		public int compare(Duplicate d1, Duplicate d2) {
+			int c = Long.compare(d1.original, d2.original);
+			return c != 0 ? c : Long.compare(d1.copy, d2.copy);
+		}
+	};
+
+	private final DataProvider data;
+	private final int minLength;
+	/**
+	 * A window is an anchor if its hash has none of these bits set.
+	 */
+	private final int anchorMask;
+	private final int partitionBits;
+	private final File[] partitions;
+	private final long[] partitionAnchors;
+
+	/**
+	 * The chunk buffers for the first pass that are not in use by a task. Like
+	 * the tables and pieces, they are created as needed, at most one per
+	 * thread, and dropped when the search stops.
+	 */
+	private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+	/**
+	 * The hash tables for the second pass.
+	 */
+	private final Queue<HashTable> tables = new ConcurrentLinkedQueue<>();
+	/**
+	 * The pairs of buffers for comparing regions in the second pass.
+	 */
+	private final Queue<byte[][]> pieces = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The duplicates found so far. Guarded by {@code this}.
+	 */
+	private final List<Duplicate> found = new ArrayList<>();
+	/**
+	 * The copies of the duplicates found so far, by the distance to their
+	 * original and then by start, mapped to their end. Guarded by
+	 * {@code this}.
+	 */
+	private final Map<Long, TreeMap<Long, Long>> covered = new HashMap<>();
+
+	private volatile boolean truncated;
+	private volatile List<Duplicate> duplicates;
+
+	private DuplicateFinder(DataProvider data, int minLength) {
+		super(2 * data.getLength());
+		this.data = data;
+		this.minLength = minLength;
+
+		// several anchors in each region of the minimum length, but not too many in all
+		long spacing = Long.highestOneBit(Math.max(1, (minLength - WINDOW) / 4));
+		while (data.getLength() / spacing > MAX_ANCHORS) {
+			spacing *= 2;
+		}
+		this.anchorMask = (int) (spacing - 1);
+
+		long expected = data.getLength() / spacing / PARTITION_ANCHORS;
+		int bits = 0;
+		while ((1L << bits) < expected && (1 << bits) < MAX_PARTITIONS) {
+			bits++;
+		}
+		this.partitionBits = bits;
+		this.partitions = new File[1 << bits];
+		this.partitionAnchors = new long[1 << bits];
+	}
+
+	/**
+	 * Starts to search for duplicates in some data.
+	 *
+	 * @param data
+	 *            the data
+	 * @param minLength
+	 *            the minimum length of a duplicate, more than {@link #WINDOW}
+	 * @param whenFinished
+	 *            run on a background thread when the search has stopped
+	 * @return the running search
+	 */
+	public static DuplicateFinder find(DataProvider data, int minLength, final Runnable whenFinished) {
+		if (minLength <= WINDOW) {
+			throw new IllegalArgumentException("Minimum length must be greater than " + WINDOW + " but is "
+					+ minLength + ".");
+		}
+		final DuplicateFinder finder = new DuplicateFinder(data, minLength);
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					finder.run();
+				} catch (IOException e) {
+					finder.fail(new RuntimeException("Cannot store anchors: " + e.getMessage(), e));
+				} catch (RuntimeException e) {
+					finder.fail(e);
+				} finally {
+					finder.deletePartitions();
+					finder.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return finder;
+	}
+
+	/**
+	 * Returns the duplicates sorted by their original.
+	 *
+	 * @return the duplicates or {@code null} if the search has not stopped
+	 */
+	public List<Duplicate> getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * Returns whether the search stopped because it found
+	 * {@link #MAX_DUPLICATES} duplicates.
+	 *
+	 * @return whether there may be more duplicates
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	private void run() throws IOException {
+		try {
+			findAnchors();
+			List<PartitionTask> tasks = new ArrayList<>(partitions.length);
+			for (int p = 0; p < partitions.length; p++) {
+				tasks.add(new PartitionTask(p));
+			}
+			if (!isCancelled()) {
+				RecursiveAction.invokeAll(tasks);
+			}
+			for (PartitionTask task : tasks) {
+				if (task.error != null) {
+					throw task.error;
+				}
+			}
+		} finally {
+			chunks.clear();
+			tables.clear();
+			pieces.clear();
+			synchronized (this) {
+				List<Duplicate> result = new ArrayList<>(found);
+				Collections.sort(result, BY_ORIGINAL);
+				duplicates = Collections.unmodifiableList(result);
+			}
+		}
+	}
+
+	/**
+	 * The first pass: finds the anchors and writes them to the partitions.
+	 */
+	private void findAnchors() throws IOException {
+		DataOutputStream[] outs = new DataOutputStream[partitions.length];
+		try {
+			for (int p = 0; p < partitions.length; p++) {
+				partitions[p] = File.createTempFile("hex-duplicates", ".tmp");
+				partitions[p].deleteOnExit();
+				outs[p] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitions[p])));
+			}
+
+			int parallelism = BackgroundTask.POOL.getParallelism();
+			long length = data.getLength();
+			for (long start = 0; start < length && !isCancelled(); start += (long) parallelism * CHUNK_SIZE) {
+				List<AnchorTask> tasks = new ArrayList<>(parallelism);
+				for (int i = 0; i < parallelism; i++) {
+					long chunkStart = start + (long) i * CHUNK_SIZE;
+					if (chunkStart >= length) {
+						break;
+					}
+					tasks.add(new AnchorTask(chunkStart, Math.min(length, chunkStart + CHUNK_SIZE)));
+				}
+				RecursiveAction.invokeAll(tasks);
+				// in order, so each partition is sorted by offset
+				for (AnchorTask task : tasks) {
+					for (int i = 0; i < task.size; i++) {
+						int p = partitionBits == 0 ? 0 : task.hashes[i] >>> (32 - partitionBits);
+						outs[p].writeLong(task.offsets[i]);
+						outs[p].writeInt(task.hashes[i]);
+						partitionAnchors[p]++;
+					}
+				}
+			}
+		} finally {
+			for (DataOutputStream out : outs) {
+				if (out != null) {
+					out.close();
+				}
+			}
+		}
+	}
+
+	private void deletePartitions() {
+		for (File partition : partitions) {
+			if (partition != null) {
+				partition.delete();
+			}
+		}
+	}
+
+	/**
+	 * Compares the regions around two equal windows.
+	 *
+	 * @param a
+	 *            the offset of the earlier window
+	 * @param b
+	 *            the offset of the later window
+	 * @param pair
+	 *            two buffers of {@link #PIECE_SIZE} bytes
+	 */
+	private void match(long a, long b, byte[][] pair) {
+		if (isCovered(a, b)) {
+			return;
+		}
+		long length = data.getLength();
+		byte[] pa = pair[0];
+		byte[] pb = pair[1];
+
+		// also rules out windows that only share their hash
+		long end = 0;
+		while (b + end < length && !isCancelled()) {
+			int n = (int) Math.min(PIECE_SIZE, length - b - end);
+			read(pa, n, a + end);
+			read(pb, n, b + end);
+			int i = 0;
+			while (i < n && pa[i] == pb[i]) {
+				i++;
+			}
+			end += i;
+			if (i < n) {
+				break;
+			}
+		}
+		if (end < WINDOW) {
+			return;
+		}
+
+		long begin = 0;
+		while (a - begin > 0 && !isCancelled()) {
+			int n = (int) Math.min(PIECE_SIZE, a - begin);
+			read(pa, n, a - begin - n);
+			read(pb, n, b - begin - n);
+			int i = n;
+			while (i > 0 && pa[i - 1] == pb[i - 1]) {
+				i--;
+			}
+			begin += n - i;
+			if (i > 0) {
+				break;
+			}
+		}
+		if (begin + end >= minLength) {
+			add(new Duplicate(a - begin, b - begin, begin + end));
+		}
+	}
+
+	private synchronized boolean isCovered(long a, long b) {
+		TreeMap<Long, Long> copies = covered.get(b - a);
+		if (copies == null) {
+			return false;
+		}
+		Map.Entry<Long, Long> copy = copies.floorEntry(b);
+		return copy != null && copy.getValue() >= b + WINDOW;
+	}
+
+	private synchronized void add(Duplicate duplicate) {
+		if (isCovered(duplicate.original, duplicate.copy)) {
+			// found in another partition at the same time
+			return;
+		}
+		if (found.size() >= MAX_DUPLICATES) {
+			truncated = true;
+			cancel();
+			return;
+		}
+		found.add(duplicate);
+		long distance = duplicate.copy - duplicate.original;
+		TreeMap<Long, Long> copies = covered.get(distance);
+		if (copies == null) {
+			copies = new TreeMap<>();
+			covered.put(distance, copies);
+		}
+		copies.put(duplicate.copy, duplicate.copy + duplicate.length);
+	}
+
+	private void read(byte[] buffer, int length, long offset) {
+		ByteBuffer dst = ByteBuffer.wrap(buffer, 0, length);
+		while (dst.hasRemaining()) {
+			if (data.get(dst, offset + dst.position()) <= 0) {
+				throw new IllegalStateException(String.format("Cannot read %d bytes at %d.", length, offset));
+			}
+		}
+	}
+
+	/**
+	 * Finds the anchors of the windows that start in a chunk.
+	 */
+	private class AnchorTask extends RecursiveAction {
+		private final long start;
+		private final long end;
+
+		long[] offsets = new long[64];
+		int[] hashes = new int[64];
+		int size;
+
+		AnchorTask(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (isCancelled()) {
+				return;
+			}
+			long readEnd = Math.min(data.getLength(), end + WINDOW - 1);
+			int length = (int) (readEnd - start);
+			if (length < WINDOW) {
+				addProgress(end - start);
+				return;
+			}
+			byte[] buffer = chunks.poll();
+			if (buffer == null) {
+				buffer = new byte[CHUNK_SIZE + WINDOW - 1];
+			}
+			try {
+				findAnchors(buffer, length);
+			} finally {
+				chunks.add(buffer);
+			}
+			addProgress(end - start);
+		}
+
+		private void findAnchors(byte[] buffer, int length) {
+			read(buffer, length, start);
+
+			/*
+			 * Repeating patterns would make anchors of most windows. An anchor
+			 * is skipped if the same hash was an anchor less than a window
+			 * ago; the last anchors are kept in a ring.
+			 */
+			int[] recentHashes = new int[WINDOW];
+			int[] recentPositions = new int[WINDOW];
+			Arrays.fill(recentPositions, -WINDOW);
+			int recent = 0;
+
+			int hash = 0;
+			for (int i = 0; i < WINDOW; i++) {
+				hash = Integer.rotateLeft(hash, 1) ^ BYTE_HASHES[buffer[i] & 0xff];
+			}
+			int last = length - WINDOW;
+			for (int i = 0;; i++) {
+				if ((hash & anchorMask) == 0 && !isRecent(hash, i, recentHashes, recentPositions)) {
+					recentHashes[recent] = hash;
+					recentPositions[recent] = i;
+					recent = (recent + 1) % WINDOW;
+					add(start + i, hash);
+				}
+				if (i == last) {
+					break;
+				}
+				// WINDOW is a multiple of 32, the leaving byte needs no rotation
+				hash = Integer.rotateLeft(hash, 1) ^ BYTE_HASHES[buffer[i] & 0xff]
+						^ BYTE_HASHES[buffer[i + WINDOW] & 0xff];
+			}
+		}
+
+		private boolean isRecent(int hash, int position, int[] recentHashes, int[] recentPositions) {
+			for (int i = 0; i < WINDOW; i++) {
+				if (recentHashes[i] == hash && position - recentPositions[i] < WINDOW) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void add(long offset, int hash) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * size);
+				hashes = Arrays.copyOf(hashes, 2 * size);
+			}
+			offsets[size] = offset;
+			hashes[size] = hash;
+			size++;
+		}
+	}
+
+	/**
+	 * Finds the equal windows among the anchors of a partition.
+	 */
+	private class PartitionTask extends RecursiveAction {
+		private final int partition;
+		IOException error;
+
+		PartitionTask(int partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				matchAnchors();
+			} catch (IOException e) {
+				error = e;
+			}
+			long total = 0;
+			for (long anchors : partitionAnchors) {
+				total += anchors;
+			}
+			addProgress(total == 0 ? data.getLength() / partitions.length
+					: (long) ((double) data.getLength() * partitionAnchors[partition] / total));
+		}
+
+		private void matchAnchors() throws IOException {
+			HashTable table = tables.poll();
+			if (table == null) {
+				table = new HashTable();
+			}
+			byte[][] pair = pieces.poll();
+			if (pair == null) {
+				pair = new byte[][] { new byte[PIECE_SIZE], new byte[PIECE_SIZE] };
+			}
+			table.clear();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(partitions[partition])))) {
+				for (long i = 0; i < partitionAnchors[partition] && !isCancelled(); i++) {
+					long offset = in.readLong();
+					int hash = in.readInt();
+					long previous = table.put(hash, offset);
+					if (previous != -1) {
+						match(previous, offset, pair);
+					}
+				}
+			} catch (EOFException e) {
+				throw new IOException("Partition is incomplete.", e);
+			} finally {
+				tables.add(table);
+				pieces.add(pair);
+			}
+		}
+	}
+
+	/**
+	 * Open addressing hash table from a hash to an offset in a direct buffer.
+	 * Each slot holds the offset, the hash and the generation of the table it
+	 * was written in; slots of older generations are empty, so clearing the
+	 * table is cheap.
+	 */
+	private static class HashTable {
+		private static final int SLOTS = 1 << TABLE_BITS;
+		private static final int MAX_USED = SLOTS / 4 * 3;
+
+		private final ByteBuffer slots = ByteBuffer.allocateDirect(SLOTS * SLOT_SIZE);
+		private int generation;
+		private int used;
+
+		void clear() {
+			generation++;
+			used = 0;
+		}
+
+		/**
+		 * Maps a hash to an offset.
+		 *
+		 * @return the offset the hash was mapped to before or -1
+		 */
+		long put(int hash, long offset) {
+			int slot = (hash * 0x9E3779B1) >>> (32 - TABLE_BITS);
+			while (true) {
+				int position = slot * SLOT_SIZE;
+				if (slots.getInt(position + 12) != generation) {
+					if (used == MAX_USED) {
+						// forget the older anchors rather than grow
+						clear();
+						return put(hash, offset);
+					}
+					slots.putLong(position, offset);
+					slots.putInt(position + 8, hash);
+					slots.putInt(position + 12, generation);
+					used++;
+					return -1;
+				}
+				if (slots.getInt(position + 8) == hash) {
+					long previous = slots.getLong(position);
+					slots.putLong(position, offset);
+					return previous;
+				}
+				slot = (slot + 1) & (SLOTS - 1);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,248 @@
+package com.github.musikk.hex;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.event.InputEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.JToolBar;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows the regions a {@link DuplicateFinder} found more than once. Both
+ * occurrences of each duplicate are highlighted with {@link LinkedMarker}s;
+ * Ctrl-clicking one occurrence in the {@link ScrollableHexPanel} selects the
+ * other and scrolls to it. All methods must be called on the event dispatch
+ * thread.
+ */
+class DuplicatesPanel extends JPanel {
+
+	private static final Color ORIGINAL_COLOR = new Color(0, 160, 0, 64);
+	private static final Color COPY_COLOR = new Color(255, 128, 0, 64);
+
+	private final DuplicateTableModel model = new DuplicateTableModel();
+	private final JTable table = new JTable(model);
+	private final JSpinner minLengthSpinner = new JSpinner(new SpinnerNumberModel(512,
+			DuplicateFinder.WINDOW + 1, Integer.MAX_VALUE, 64));
+	private final JLabel summaryLabel = new JLabel(" ");
+
+	private ScrollableHexPanel target;
+	private DuplicateFinder finder;
+	/**
+	 * The markers of the duplicates in {@code target}, originals first.
+	 */
+	private final List<LinkedMarker> markers = new ArrayList<>();
+
+	/**
+	 * Jumps from one occurrence of a duplicate to the other on Ctrl-click.
+	 * Plain clicks are left to the other listeners.
+	 */
+	private final HexSelectionListener linkListener = new HexSelectionAdapter() {
+		@Override
+		public void onClick(HexSelectionEvent e) {
+			if ((e.modifiers & InputEvent.CTRL_DOWN_MASK) == 0) {
+				return;
+			}
+			for (LinkedMarker marker : markers) {
+				if (marker.contains(e.position.index)) {
+					show(marker.getPartner());
+					return;
+				}
+			}
+		}
+	};
+
+	public DuplicatesPanel() {
+		setLayout(new BorderLayout());
+
+		JToolBar toolbar = new JToolBar(JToolBar.HORIZONTAL);
+		toolbar.setFloatable(false);
+		toolbar.add(new JLabel("Minimum Length "));
+		toolbar.add(minLengthSpinner);
+
+		table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		table.setToolTipText("Ctrl-click a highlighted region to jump to its other occurrence");
+		table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				if (!e.getValueIsAdjusting()) {
+					showSelectedDuplicate();
+				}
+			}
+		});
+
+		JPanel north = new JPanel(new BorderLayout());
+		north.add(toolbar, BorderLayout.NORTH);
+		north.add(summaryLabel, BorderLayout.SOUTH);
+		add(north, BorderLayout.NORTH);
+		add(new JScrollPane(table), BorderLayout.CENTER);
+	}
+
+	/**
+	 * Discards the previous duplicates and starts to search for the
+	 * duplicates of some data with the minimum length that is set in this
+	 * panel.
+	 *
+	 * @param target
+	 *            the panel that displays {@code data}
+	 * @param data
+	 *            the data to search
+	 * @return the running search
+	 */
+	DuplicateFinder start(ScrollableHexPanel target, DataProvider data) {
+		discard();
+		this.target = target;
+		target.getHexPanel().addHexSelectionListener(linkListener);
+		final DuplicateFinder[] finder = new DuplicateFinder[1];
+		finder[0] = DuplicateFinder.find(data, (Integer) minLengthSpinner.getValue(), new Runnable() {
+			@Override
+			public void run() {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						finish(finder[0]);
+					}
+				});
+			}
+		});
+		this.finder = finder[0];
+		summaryLabel.setText("Searching...");
+		return finder[0];
+	}
+
+	/**
+	 * Removes the duplicates if they belong to {@code panel}.
+	 *
+	 * @param panel
+	 *            the panel that is going away
+	 */
+	void clear(ScrollableHexPanel panel) {
+		if (target == panel) {
+			discard();
+			summaryLabel.setText(" ");
+		}
+	}
+
+	private void discard() {
+		if (finder != null) {
+			finder.cancel();
+			finder = null;
+		}
+		if (target != null) {
+			target.getHexPanel().removeHexSelectionListener(linkListener);
+			target.getHexPanel().removeMarkers(markers);
+			target = null;
+		}
+		markers.clear();
+		model.setDuplicates(Collections.<Duplicate> emptyList());
+	}
+
+	private void finish(DuplicateFinder finder) {
+		if (finder != this.finder) {
+			// discarded
+			return;
+		}
+		if (finder.getError() != null) {
+			summaryLabel.setText("Search failed: " + finder.getError().getMessage());
+			return;
+		}
+		List<Duplicate> duplicates = finder.getDuplicates();
+		List<LinkedMarker> copies = new ArrayList<>(duplicates.size());
+		for (Duplicate duplicate : duplicates) {
+			LinkedMarker original = new LinkedMarker(ORIGINAL_COLOR, duplicate.original,
+					duplicate.original + duplicate.length - 1);
+			LinkedMarker copy = new LinkedMarker(COPY_COLOR, duplicate.copy, duplicate.copy + duplicate.length - 1);
+			LinkedMarker.link(original, copy);
+			markers.add(original);
+			copies.add(copy);
+		}
+		markers.addAll(copies);
+		target.getHexPanel().addMarkers(markers);
+		model.setDuplicates(duplicates);
+
+		String count = duplicates.size() + " duplicates";
+		if (finder.isTruncated()) {
+			summaryLabel.setText(count + " (stopped, too many duplicates)");
+		} else if (finder.isCancelled()) {
+			summaryLabel.setText(count + " (cancelled)");
+		} else {
+			summaryLabel.setText(count);
+		}
+	}
+
+	private void showSelectedDuplicate() {
+		int row = table.getSelectedRow();
+		if (row == -1 || target == null) {
+			return;
+		}
+		show(markers.get(table.convertRowIndexToModel(row)));
+	}
+
+	/**
+	 * Selects the range of a marker and scrolls to it.
+	 */
+	private void show(LinkedMarker marker) {
+		RangeMarker selection = target.getSelectionMarker();
+		if (selection != null) {
+			selection.setByteStartEnd(marker.getByteStart(), marker.getByteEnd());
+		}
+		target.showIndex(marker.getByteStart());
+	}
+
+	private static class DuplicateTableModel extends AbstractTableModel {
+		private List<Duplicate> duplicates = Collections.emptyList();
+
+		void setDuplicates(List<Duplicate> duplicates) {
+			this.duplicates = duplicates;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount() {
+			return duplicates.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 3;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			switch (column) {
+			case 0:
+				return "Original";
+			case 1:
+				return "Copy";
+			default:
+				return "Length";
+			}
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			Duplicate duplicate = duplicates.get(row);
+			switch (column) {
+			case 0:
+				return String.format("0x%x", duplicate.original);
+			case 1:
+				return String.format("0x%x", duplicate.copy);
+			default:
+				return duplicate.length;
+			}
+		}
+	}
+
+}
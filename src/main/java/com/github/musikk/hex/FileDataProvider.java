@@ -3,40 +3,86 @@ package com.github.musikk.hex;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 
-public class FileDataProvider implements DataProvider {
+/**
+ * {@link DataProvider} that reads from a file using positional reads on a
+ * {@link FileChannel}. Positional reads do not modify the channel's position,
+ * so any number of threads may read at the same time without locking.
+ */
+public class FileDataProvider extends AbstractDataProvider {
 
-	private final RandomAccessFile file;
+	private final File file;
+	private volatile FileChannel channel;
 	private final long fileLength;
 
 	public FileDataProvider(File file) throws IOException {
-		this.file = new RandomAccessFile(file, "r");
+		this.file = file;
+		this.channel = open(file);
 		this.fileLength = file.length();
 	}
 
+	private static FileChannel open(File file) throws IOException {
+		return new RandomAccessFile(file, "r").getChannel();
+	}
+
+	/**
+	 * Reopens the channel if it has been closed. A {@code FileChannel} is
+	 * closed if a thread is interrupted while reading from it, which must not
+	 * affect other readers.
+	 *
+	 * @param closed
+	 *            the channel that has been found to be closed
+	 * @return the channel to use from now on
+	 */
+	private synchronized FileChannel reopen(FileChannel closed) throws IOException {
+		if (channel == closed) {
+			channel = open(file);
+		}
+		return channel;
+	}
+
 	@Override
 	public long getLength() {
 		return fileLength;
 	}
 
 	@Override
-	public int get(byte[] data, long offset) {
+	public int get(ByteBuffer dst, long offset) {
+		if (offset > fileLength) {
+			return -1;
+		}
+		int toRead = (int) Math.min(dst.remaining(), fileLength - offset);
+		int limit = dst.limit();
+		dst.limit(dst.position() + toRead);
 		try {
-			file.seek(offset);
-
+			FileChannel c = channel;
 			int read = 0;
-			while (read < data.length) {
-				byte[] buf = new byte[Math.min(2048, data.length - read)];
-				int r = file.read(buf);
+			while (read < toRead) {
+				int r;
+				try {
+					r = c.read(dst, offset + read);
+				} catch (ClosedByInterruptException e) {
+					// this thread was interrupted and is expected to stop
+					throw e;
+				} catch (ClosedChannelException e) {
+					// closed because another thread was interrupted
+					c = reopen(c);
+					continue;
+				}
 				if (r < 0) {
-					return read;
+					break;
 				}
-				System.arraycopy(buf, 0, data, read, r);
 				read += r;
 			}
 			return read;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			dst.limit(limit);
 		}
 	}
 
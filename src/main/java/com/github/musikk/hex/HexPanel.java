@@ -1,21 +1,27 @@
 package com.github.musikk.hex;
 
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.MouseInfo;
-import java.awt.Point;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Stroke;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.image.VolatileImage;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.JPanel;
-
-import org.apache.commons.lang3.StringUtils;
+import javax.swing.SwingUtilities;
 
 import com.github.musikk.hex.HexSelectionListener.HexSelectionEvent;
 
@@ -27,8 +33,12 @@ import com.github.musikk.hex.HexSelectionListener.HexSelectionEvent;
  *
  */
 public class HexPanel extends JPanel {
-	private final Collection<MetricsUpdatedListener> metricsUpdatedListeners = new ArrayList<>();
-	private final Collection<HexSelectionListener> hexSelectionListeners = new ArrayList<>();
+	/*
+	 * Listeners are called without holding a lock. Copy on write lists allow
+	 * listeners to be added and removed while events are dispatched.
+	 */
+	private final Collection<MetricsUpdatedListener> metricsUpdatedListeners = new CopyOnWriteArrayList<>();
+	private final Collection<HexSelectionListener> hexSelectionListeners = new CopyOnWriteArrayList<>();
 
 	private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 24);
 
@@ -38,7 +48,11 @@ public class HexPanel extends JPanel {
 	 */
 	private final Metrics metrics;
 
-	private final Collection<Marker> markers = new ArrayList<>();
+	private final MarkerIndex markers = new MarkerIndex();
+	/**
+	 * Reused to collect the markers that are to be painted.
+	 */
+	private final List<Marker> visibleMarkers = new ArrayList<>();
 
 	/**
 	 * The data that can be shown in this {@code HexPanel}.
@@ -49,7 +63,7 @@ public class HexPanel extends JPanel {
 	 * depends on the {@link #offset}, the size of the panel and
 	 * {@linkplain DataProvider#getLength() the length of the available data}.
 	 */
-	private byte[] bytes;
+	private final ViewportBuffer bytes;
 	/**
 	 * The starting position of the data.
 	 */
@@ -118,6 +132,17 @@ public class HexPanel extends JPanel {
 	 */
 	private int hexWidth/*, hexHeight*/;
 
+	/**
+	 * The x-coordinate of the first hex character of each column.
+	 */
+	private int[] columnX = new int[0];
+	/**
+	 * The column that is hit at each x-coordinate of the hex column, relative
+	 * to {@link #hexX}. Coordinates in the gap after a two-byte block hit the
+	 * first byte of the next block.
+	 */
+	private int[] columnAtX = new int[0];
+
 	/**
 	 * The gap between the hex column and the ASCII column in pixels.
 	 */
@@ -139,11 +164,74 @@ public class HexPanel extends JPanel {
 
 	private final MarkerUpdatedListener markerUpdatedListener;
 
+	private final HexSelectionUpdaterListener selectionUpdater;
+
 	/**
-	 * The last position that has been hovered. Used to avoid firing hover
-	 * events for the same spot over and over again.
+	 * The number of {@link #beginBatch()} calls without matching
+	 * {@link #endBatch()}.
 	 */
-	private HexPosition lastHoveredPosition = null;
+	private int batchDepth;
+	/**
+	 * The area affected by marker changes during the current batch.
+	 */
+	private Rectangle batchArea;
+	/**
+	 * Whether a marker changed during the current batch that cannot tell
+	 * which area it affects.
+	 */
+	private boolean batchRepaintAll;
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	private static final char[] ADDRESS_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The character that is displayed for each byte value in the ASCII column.
+	 */
+	private static final char[] DISPLAY_CHARS = new char[256];
+
+	static {
+		Charset ascii = Charset.forName("ASCII");
+		for (int i = 0; i < 256; i++) {
+			DISPLAY_CHARS[i] = new String(new byte[] { (byte) i }, ascii).charAt(0);
+		}
+	}
+
+	/**
+	 * Reused to format the characters of a row before they are drawn. Large
+	 * enough for the address and for the hex and ASCII characters of a row.
+	 */
+	private char[] rowChars = new char[0];
+
+	/**
+	 * Whether painting goes through {@link #backBuffer}.
+	 */
+	private boolean backBuffered = true;
+	/**
+	 * Holds the rendered panel between paints. Scrolling moves its pixels
+	 * instead of rendering all rows again.
+	 */
+	private VolatileImage backBuffer;
+	/**
+	 * Whether the content of {@link #backBuffer} can be reused. If not, the
+	 * next paint renders everything.
+	 */
+	private boolean backBufferValid;
+	/**
+	 * The offset at which {@link #backBuffer} was rendered.
+	 */
+	private long renderedOffset = -1;
+	/**
+	 * The area of {@link #backBuffer} that has to be rendered again or
+	 * {@code null} if there is none. Its coordinates refer to the current
+	 * offset.
+	 */
+	private Rectangle dirtyArea;
+
+	/**
+	 * The index of the last byte that has been hovered or -1. Used to avoid
+	 * firing hover events for the same spot over and over again.
+	 */
+	private long lastHoveredIndex = -1;
 
 	/**
 	 * Creates a new {@code HexPanel} that displays the specified {@code data}.
@@ -154,19 +242,37 @@ public class HexPanel extends JPanel {
 	 */
 	public HexPanel(DataProvider data) {
 		this.data = data;
+		this.bytes = new ViewportBuffer(data);
 
 		this.metrics = new Metrics();
 
 		markerUpdatedListener = new MarkerUpdatedListener() {
 			@Override
-			public void markerUpdated(Marker marker) {
-				HexPanel.this.repaint();
+			public void markerUpdated(final Marker marker) {
+				if (!SwingUtilities.isEventDispatchThread()) {
+					/*
+					 * Markers may be changed by background tasks. By the time
+					 * the event dispatch thread gets to the change, the marker
+					 * no longer knows where it was before, so all of the panel
+					 * is repainted.
+					 */
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							markers.update(marker);
+							areaChanged(null);
+						}
+					});
+					return;
+				}
+				markers.update(marker);
+				markerChanged(marker);
 			}
 		};
 
-		HexSelectionUpdaterListener hsul = new HexSelectionUpdaterListener();
-		addMouseMotionListener(hsul);
-		addMouseListener(hsul);
+		selectionUpdater = new HexSelectionUpdaterListener();
+		addMouseMotionListener(selectionUpdater);
+		addMouseListener(selectionUpdater);
 	}
 
 	@Override
@@ -176,88 +282,302 @@ public class HexPanel extends JPanel {
 		Graphics2D g2 = (Graphics2D) g.create();
 		g2.setFont(font);
 
-		g2.setColor(Color.WHITE);
-		g2.fillRect(0, 0, getWidth(), getHeight());
-		g2.setColor(Color.BLACK);
-
 		calculateMetrics(g2);
 
 		/*
-		 * The hover event has to be fired before the markers are drawn.
-		 * Otherwise if a marker depends on the hover position, it is drawn in
-		 * the wrong place initially and then corrected through the event.
-		 * Regardless, this creates one repaint more than theoretically
-		 * necessary.
+		 * Pending hover and drag events have to be fired before the markers are
+		 * drawn. Otherwise if a marker depends on the hover position, it is
+		 * drawn in the wrong place initially and then corrected through the
+		 * event.
 		 */
-		fireHoverAtMousePosition();
-		drawMarkers(g2);
-		drawHexLetters(g2);
-	}
-
-	private void fireHoverAtMousePosition() {
-		Point mousePos = MouseInfo.getPointerInfo().getLocation();
-		Point panelPos = getLocationOnScreen();
-		HexPosition currentlyHoveredPosition = getMetrics().positionFromCoordinates(
-				mousePos.x - panelPos.x, mousePos.y - panelPos.y);
-		if (currentlyHoveredPosition == null) {
-			lastHoveredPosition = null;
+		selectionUpdater.update();
+
+		if (backBuffered) {
+			paintBackBuffer(g2);
+		} else {
+			Rectangle area = g2.getClipBounds();
+			render(g2, area == null ? new Rectangle(0, 0, getWidth(), getHeight()) : area);
+		}
+		g2.dispose();
+	}
+
+	/**
+	 * Brings the {@link #backBuffer} up to date and copies it onto {@code g2}.
+	 * If the offset changed by fewer lines than are visible, the pixels of the
+	 * rows that are still visible are moved and only the new rows are
+	 * rendered.
+	 */
+	private void paintBackBuffer(Graphics2D g2) {
+		int width = getWidth();
+		int height = getHeight();
+		if (width <= 0 || height <= 0) {
 			return;
 		}
-		fireByteHovered(new HexSelectionEvent(currentlyHoveredPosition));
+		do {
+			if (backBuffer == null || backBuffer.getWidth() != width || backBuffer.getHeight() != height) {
+				createBackBuffer(width, height);
+			}
+			if (backBuffer == null) {
+				// not displayable
+				render(g2, new Rectangle(0, 0, width, height));
+				return;
+			}
+			int status = backBuffer.validate(getGraphicsConfiguration());
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				createBackBuffer(width, height);
+			} else if (status == VolatileImage.IMAGE_RESTORED) {
+				backBufferValid = false;
+			}
+
+			Graphics2D bg = backBuffer.createGraphics();
+			bg.setFont(font);
+			if (!backBufferValid) {
+				render(bg, new Rectangle(0, 0, width, height));
+			} else {
+				if (renderedOffset != offset) {
+					scrollBackBuffer(bg, width, height);
+				}
+				if (dirtyArea != null) {
+					render(bg, dirtyArea);
+				}
+			}
+			bg.dispose();
+			backBufferValid = true;
+			dirtyArea = null;
+			renderedOffset = offset;
+
+			g2.drawImage(backBuffer, 0, 0, null);
+		} while (backBuffer.contentsLost());
+	}
+
+	private void createBackBuffer(int width, int height) {
+		if (backBuffer != null) {
+			backBuffer.flush();
+		}
+		backBuffer = createVolatileImage(width, height);
+		backBufferValid = false;
 	}
 
-	private void drawMarkers(Graphics2D g2) {
-		for (Marker marker : markers) {
-			drawMarker(g2, marker);
+	private void scrollBackBuffer(Graphics2D bg, int width, int height) {
+		int rowHeight = charHeight + lineGap;
+		long rows = lineLength == 0 ? Long.MAX_VALUE : (offset - renderedOffset) / lineLength;
+		if ((offset - renderedOffset) % Math.max(1, lineLength) != 0 || Math.abs(rows) >= lines) {
+			render(bg, new Rectangle(0, 0, width, height));
+			return;
+		}
+		int shift = (int) rows * rowHeight;
+		/*
+		 * Glyphs and markers may extend a little beyond the band of their row,
+		 * so the row next to the newly exposed ones is rendered again as well.
+		 */
+		if (shift > 0) {
+			bg.copyArea(0, shift, width, height - shift, 0, -shift);
+			int y = Math.max(0, height - shift - rowHeight);
+			render(bg, new Rectangle(0, y, width, height - y));
+		} else {
+			bg.copyArea(0, 0, width, height + shift, 0, -shift);
+			render(bg, new Rectangle(0, 0, width, Math.min(height, -shift + rowHeight)));
 		}
 	}
 
-	private void drawMarker(Graphics2D g2, Marker marker) {
-		marker.paint((Graphics2D) g2.create(), metrics);
+	/**
+	 * Renders background, markers and characters inside {@code area}. Nothing
+	 * outside of this area is touched.
+	 */
+	private void render(Graphics2D g2, Rectangle area) {
+		Graphics2D clipped = (Graphics2D) g2.create();
+		clipped.clip(area);
+
+		clipped.setColor(Color.WHITE);
+		clipped.fill(area);
+		clipped.setColor(Color.BLACK);
+
+		// rows next to the area may reach into it
+		int rowHeight = Math.max(1, charHeight + lineGap);
+		int firstRow = Math.max(0, area.y / rowHeight - 2);
+		int lastRow = (area.y + area.height) / rowHeight + 1;
+
+		drawMarkers(clipped, firstRow, lastRow);
+		drawHexLetters(clipped, firstRow, lastRow);
+		clipped.dispose();
+	}
+
+	/**
+	 * Discards the content of the back buffer so the next paint renders
+	 * everything.
+	 */
+	private void invalidateBackBuffer() {
+		backBufferValid = false;
+		dirtyArea = null;
+	}
+
+	/**
+	 * Marks an area of the back buffer as outdated so the next paint renders
+	 * it again.
+	 *
+	 * @param area
+	 *            the outdated area in the coordinates of the current offset
+	 */
+	private void invalidateBackBuffer(Rectangle area) {
+		if (!backBufferValid) {
+			return;
+		}
+		dirtyArea = dirtyArea == null ? new Rectangle(area) : dirtyArea.union(area);
 	}
 
-	private void drawHexLetters(Graphics2D g2) {
-		int xBase = hexX;
-		int asciiXBase = this.asciiX;
-		int x = xBase;
-		int asciiX = asciiXBase;
-		int y = hexY;
-		int nibble = 0;
-		for (int i = 0; i < bytes.length; i++) {
-			byte b = bytes[i];
+	/**
+	 * Enables or disables painting through a back buffer. With a back buffer,
+	 * scrolling moves the pixels of rows that stay visible instead of
+	 * rendering them again.
+	 *
+	 * @param backBuffered
+	 *            whether to use a back buffer
+	 */
+	public void setBackBuffered(boolean backBuffered) {
+		this.backBuffered = backBuffered;
+		if (!backBuffered && backBuffer != null) {
+			backBuffer.flush();
+			backBuffer = null;
+		}
+		invalidateBackBuffer();
+		repaint();
+	}
 
-			int high = (b >> 4) & 0x0F;
-			int low = b & 0x0F;
+	public boolean isBackBuffered() {
+		return backBuffered;
+	}
 
-			char charHigh = "0123456789ABCDEF".charAt(high);
-			char charLow = "0123456789ABCDEF".charAt(low);
+	/**
+	 * Paints the markers that overlap the specified rows. All markers are
+	 * painted on the same copy of {@code g2}; the state that markers are
+	 * allowed to change is reset in between.
+	 */
+	private void drawMarkers(Graphics2D g2, int firstRow, int lastRow) {
+		long lo = offset + (long) firstRow * lineLength;
+		long hi = offset + (long) (lastRow + 1) * lineLength - 1;
+		markers.query(lo, hi, visibleMarkers);
+		if (visibleMarkers.isEmpty()) {
+			return;
+		}
 
-			drawNibble(g2, x, y, nibble++, charHigh);
-			x += charWidth;
-			drawNibble(g2, x, y, nibble++, charLow);
-			x += charWidth;
+		Graphics2D mg = (Graphics2D) g2.create();
+		Shape clip = mg.getClip();
+		AffineTransform transform = mg.getTransform();
+		Paint paint = mg.getPaint();
+		Stroke stroke = mg.getStroke();
+		Composite composite = mg.getComposite();
+		Font font = mg.getFont();
+		for (Marker marker : visibleMarkers) {
+			marker.paint(mg, metrics);
+
+			mg.setTransform(transform);
+			mg.setClip(clip);
+			mg.setPaint(paint);
+			mg.setStroke(stroke);
+			mg.setComposite(composite);
+			mg.setFont(font);
+		}
+		mg.dispose();
+		visibleMarkers.clear();
+	}
 
-			g2.drawString(new String(new byte[] { b }, Charset.forName("ASCII")), asciiX, y);
-			asciiX += charWidth;
+	private void drawHexLetters(Graphics2D g2, int firstRow, int lastRow) {
+		int rows = lineLength == 0 ? 0 : (bytes.getCount() + lineLength - 1) / lineLength;
+		for (int row = firstRow; row < Math.min(rows, lastRow + 1); row++) {
+			drawRow(g2, row);
+		}
+	}
 
-			if ((i + 1) % lineLength == 0) {
-				g2.drawString(StringUtils.leftPad(Long.toHexString((offset + i + 1) - lineLength), addressLength, '0'), 0, y);
+	/**
+	 * Draws address, hex characters and ASCII characters of a single visible
+	 * row. The characters are formatted into {@link #rowChars} and drawn with
+	 * as few calls as possible: one for the address, one per two-byte block in
+	 * the hex column and one per run of printable characters in the ASCII
+	 * column.
+	 *
+	 * @param g2
+	 *            the graphics object to draw on
+	 * @param row
+	 *            the zero-based visible row
+	 */
+	private void drawRow(Graphics2D g2, int row) {
+		int y = hexY + row * (charHeight + lineGap);
+		int count = formatRow(row);
+		char[] chars = rowChars;
+
+		g2.drawChars(chars, 0, addressLength, 0, y);
+
+		int hexStart = addressLength;
+		int blockWidth = 4 * charWidth + twoByteGap;
+		for (int block = 0; 2 * block < count; block++) {
+			int length = Math.min(4, 2 * (count - 2 * block));
+			g2.drawChars(chars, hexStart + 4 * block, length, hexX + block * blockWidth, y);
+		}
 
-				x = xBase;
-				asciiX = asciiXBase;
-				y += charHeight + lineGap;
-				continue;
+		/*
+		 * Characters outside of the printable range are drawn one by one. They
+		 * may be rendered with a different advance which must not shift the
+		 * characters that follow.
+		 */
+		int asciiStart = addressLength + 2 * lineLength;
+		int runStart = 0;
+		for (int column = 0; column <= count; column++) {
+			if (column < count) {
+				char c = chars[asciiStart + column];
+				if (c >= 0x20 && c < 0x7F) {
+					continue;
+				}
 			}
-
-			if ((i + 1) % 2 == 0) {
-				x += twoByteGap;
+			if (runStart < column) {
+				g2.drawChars(chars, asciiStart + runStart, column - runStart, asciiX + runStart * charWidth, y);
+			}
+			if (column < count) {
+				g2.drawChars(chars, asciiStart + column, 1, asciiX + column * charWidth, y);
 			}
+			runStart = column + 1;
 		}
 	}
 
-	private void drawNibble(Graphics2D g2, int x, int y, int nibble, char c) {
-		g2.drawString(String.valueOf(c), x, y);
-		g2.setColor(Color.BLACK);
+	/**
+	 * Formats a visible row into {@link #rowChars}: the address, followed by
+	 * two hex characters for each byte of a full row and then by the ASCII
+	 * characters. Formatting does not allocate; drawing the characters is up
+	 * to the {@code Graphics2D}, which may allocate internally.
+	 *
+	 * @param row
+	 *            the zero-based visible row
+	 * @return the number of bytes in the row
+	 */
+	int formatRow(int row) {
+		byte[] array = bytes.array();
+		int rowStart = bytes.rowStart(row);
+		int count = Math.min(lineLength, bytes.getCount() - row * lineLength);
+		char[] chars = rowChars;
+
+		long address = offset + (long) row * lineLength;
+		for (int i = addressLength - 1; i >= 0; i--) {
+			chars[i] = ADDRESS_DIGITS[(int) (address & 0x0F)];
+			address >>>= 4;
+		}
+
+		int hexStart = addressLength;
+		int asciiStart = addressLength + 2 * lineLength;
+		for (int column = 0; column < count; column++) {
+			int b = array[rowStart + column] & 0xFF;
+			chars[hexStart + 2 * column] = HEX_DIGITS[b >> 4];
+			chars[hexStart + 2 * column + 1] = HEX_DIGITS[b & 0x0F];
+			chars[asciiStart + column] = DISPLAY_CHARS[b];
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the characters of the row that was formatted last.
+	 *
+	 * @return the array that {@link #formatRow(int)} writes to
+	 */
+	char[] getRowChars() {
+		return rowChars;
 	}
 
 	private void calculateMetrics(Graphics2D g2) {
@@ -285,14 +605,41 @@ public class HexPanel extends JPanel {
 
 		asciiX = hexX + hexWidth + hexAsciiGap;
 
+		calculateColumnTables();
+		// the same index may now be at a different spot
+		lastHoveredIndex = -1;
+
+		bytes.resize(lineLength, lines);
+		invalidateBackBuffer();
+		if (rowChars.length < addressLength + 3 * lineLength) {
+			rowChars = new char[addressLength + 3 * lineLength];
+		}
 		getData();
 
 		lastWidth = getWidth();
 		lastHeight = getHeight();
 
+		selectionUpdater.schedule();
+
 		fireMetricsUpdated();
 	}
 
+	private void calculateColumnTables() {
+		columnX = new int[lineLength];
+		columnAtX = new int[Math.max(0, hexWidth)];
+		int blockWidth = 4 * charWidth + twoByteGap;
+		for (int column = 0; column < lineLength; column++) {
+			columnX[column] = hexX + column * 2 * charWidth + (column / 2) * twoByteGap;
+		}
+		for (int x = 0; x < columnAtX.length; x++) {
+			int block = x / blockWidth;
+			int xInBlock = x - block * blockWidth;
+			columnAtX[x] = xInBlock < 4 * charWidth
+					? 2 * block + xInBlock / (2 * charWidth)
+					: 2 * (block + 1);
+		}
+	}
+
 	private static int getHexCharHeight(Graphics2D g2, Font font) {
 		FontRenderContext frc = g2.getFontRenderContext();
 		int height = 0;
@@ -304,9 +651,12 @@ public class HexPanel extends JPanel {
 		return height;
 	}
 
+	/**
+	 * Makes the data at the current {@link #offset} available in
+	 * {@link #bytes}. Rows that were visible before are not read again.
+	 */
 	private void getData() {
-		bytes = new byte[(int) Math.min(Math.max(0, data.getLength() - offset), lineLength * lines)];
-		data.get(bytes, offset);
+		bytes.moveTo(offset);
 	}
 
 	/**
@@ -323,8 +673,14 @@ public class HexPanel extends JPanel {
 		if (this.offset == newOffset) {
 			return;
 		}
+		if (dirtyArea != null) {
+			// the area refers to the old offset
+			invalidateBackBuffer();
+		}
 		this.offset = newOffset;
 		getData();
+		// the byte below the mouse changed
+		selectionUpdater.schedule();
 		repaint();
 	}
 
@@ -350,45 +706,42 @@ public class HexPanel extends JPanel {
 		return metrics;
 	}
 
-	public synchronized void addMetricsUpdatedListener(MetricsUpdatedListener l) {
+	public void addMetricsUpdatedListener(MetricsUpdatedListener l) {
 		metricsUpdatedListeners.add(l);
 	}
 
-	public synchronized void removeMetricsUpdatedListener(MetricsUpdatedListener l) {
+	public void removeMetricsUpdatedListener(MetricsUpdatedListener l) {
 		metricsUpdatedListeners.remove(l);
 	}
 
-	private synchronized void fireMetricsUpdated() {
+	private void fireMetricsUpdated() {
 		for (MetricsUpdatedListener l : metricsUpdatedListeners) {
 			l.metricsUpdated(metrics);
 		}
 	}
 
-	public synchronized void addHexSelectionListener(HexSelectionListener l) {
+	public void addHexSelectionListener(HexSelectionListener l) {
 		hexSelectionListeners.add(l);
 	}
 
-	public synchronized void removeHexSelectionListener(HexSelectionListener l) {
+	public void removeHexSelectionListener(HexSelectionListener l) {
 		hexSelectionListeners.remove(l);
 	}
 
-	private synchronized void fireByteClicked(HexSelectionListener.HexSelectionEvent e) {
+	private void fireByteClicked(HexSelectionListener.HexSelectionEvent e) {
 		for (HexSelectionListener l : hexSelectionListeners) {
 			l.onClick(e);
 		}
 	}
 
-	private synchronized void fireByteHovered(HexSelectionListener.HexSelectionEvent e) {
-		if (e.position.equals(lastHoveredPosition)) {
-			return;
-		}
-		lastHoveredPosition = e.position;
+	private void fireByteHovered(HexSelectionListener.HexSelectionEvent e) {
+		lastHoveredIndex = e.position.index;
 		for (HexSelectionListener l : hexSelectionListeners) {
 			l.onHover(e);
 		}
 	}
 
-	private synchronized void fireDrag(HexSelectionListener.HexSelectionEvent e) {
+	private void fireDrag(HexSelectionListener.HexSelectionEvent e) {
 		for (HexSelectionListener l : hexSelectionListeners) {
 			l.onDrag(e);
 		}
@@ -437,6 +790,120 @@ public class HexPanel extends JPanel {
 			return offset;
 		}
 
+		public int getRowHeight() {
+			return charHeight + lineGap;
+		}
+
+		/**
+		 * Returns the x coordinate of the first hex character of a column.
+		 *
+		 * @param column
+		 *            the zero-based column
+		 * @return the x coordinate
+		 */
+		public int getColumnX(int column) {
+			return columnX[column];
+		}
+
+		/**
+		 * Returns the y coordinate of the baseline of a visible row.
+		 *
+		 * @param row
+		 *            the zero-based row relative to the top of the visible data
+		 * @return the y coordinate
+		 */
+		public int getRowY(int row) {
+			return (row + 1) * (charHeight + lineGap);
+		}
+
+		/**
+		 * Returns the column of the byte in the hex column at {@code x}.
+		 *
+		 * @param x
+		 * @return the zero-based column or -1 if {@code x} is outside of the
+		 *         hex column
+		 */
+		public int columnAt(int x) {
+			int xNormalized = x - hexX;
+			if (xNormalized < 0 || xNormalized >= columnAtX.length) {
+				return -1;
+			}
+			return columnAtX[xNormalized];
+		}
+
+		/**
+		 * Returns the row at {@code y}.
+		 *
+		 * @param y
+		 * @return the zero-based row relative to the top of the visible data
+		 */
+		public int rowAt(int y) {
+			return y / (charHeight + lineGap);
+		}
+
+		/**
+		 * Returns the index of the byte that is at coordinates {@code x} and
+		 * {@code y}. This is the allocation-free variant of
+		 * {@link #positionFromCoordinates(int, int)}.
+		 *
+		 * @param x
+		 * @param y
+		 * @return the index or -1 if no byte is at these coordinates
+		 */
+		public long indexAt(int x, int y) {
+			int column = columnAt(x);
+			if (column == -1) {
+				return -1;
+			}
+			return (long) rowAt(y) * lineLength + column + offset;
+		}
+
+		/**
+		 * Checks whether the byte at {@code index} is visible from the current
+		 * offset.
+		 *
+		 * @param index
+		 * @return whether the byte is visible
+		 */
+		public boolean isVisible(long index) {
+			return index >= offset && index < offset + (long) lineLength * lines;
+		}
+
+		/**
+		 * Returns the visible row of the byte at {@code index}. The result is
+		 * negative or not less than {@link #getLines()} if the byte is not
+		 * visible.
+		 *
+		 * @param index
+		 * @return the zero-based row relative to the top of the visible data
+		 */
+		public int rowOf(long index) {
+			if (lineLength == 0) {
+				return -1;
+			}
+			long relativeIndex = index - offset;
+			long row = relativeIndex / lineLength;
+			if (relativeIndex < 0 && relativeIndex % lineLength != 0) {
+				// round towards negative infinity
+				row--;
+			}
+			return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, row));
+		}
+
+		/**
+		 * Returns the column of the byte at {@code index}.
+		 *
+		 * @param index
+		 * @return the zero-based column
+		 */
+		public int columnOf(long index) {
+			if (lineLength == 0) {
+				return -1;
+			}
+			int column = (int) ((index - offset) % lineLength);
+			return column < 0 ? column + lineLength : column;
+		}
+
 		/**
 		 * Returns the {@link HexPosition} of the byte at the specified index.
 		 *
@@ -454,14 +921,7 @@ public class HexPanel extends JPanel {
 				// index not visible from current offset
 				return null;
 			}
-			long relativeIndex = index - offset;
-			int row = (int) (relativeIndex / lineLength);
-			int column = (int) (relativeIndex % lineLength);
-
-			int x = column * 2 * charWidth + hexX + (column / 2) * twoByteGap;
-			int y = (row + 1) * (charHeight + lineGap);
-
-			return new HexPosition(index, x, y, column, row, index / lineLength);
+			return makePosition(index);
 		}
 
 		/**
@@ -475,53 +935,162 @@ public class HexPanel extends JPanel {
 		 *         coordinates
 		 */
 		public HexPosition positionFromCoordinates(int x, int y) {
-			if (!(x >= hexX && x < hexX + hexWidth)) {
-				return null;
-			}
-			int row = y / (charHeight + lineGap);
-
-			int xNormalized = x - hexX;
-			int twoByteBlock = xNormalized / (4 * charWidth + twoByteGap);
-			int xTwoByte = xNormalized - twoByteBlock * (4 * charWidth + twoByteGap);
+			long index = indexAt(x, y);
+			return index == -1 ? null : makePosition(index);
+		}
 
-			int byteCol;
-			if (xTwoByte < 4 * charWidth) {
-				int twoByteBlockHoveredByte = xTwoByte / (2 * charWidth);
-				byteCol = twoByteBlockHoveredByte + 2 * twoByteBlock;
-			} else {
-				/*
-				 * Out of block bounds. We just select the first byte of the
-				 * next block. Have to see whether this feels right. The
-				 * alternative is to use the previous byte or, as previously,
-				 * none at all.
-				 */
-				twoByteBlock++;
-				byteCol = 2 * twoByteBlock;
-			}
-			long index = row * lineLength + byteCol + offset;
-			int charX = twoByteBlock * (4 * charWidth + twoByteGap) + (byteCol % 2) * 2 * charWidth;
-			int charY = row * (charHeight + lineGap);
-			return new HexPosition(index, charX, charY, byteCol, row, index / lineLength);
+		private HexPosition makePosition(long index) {
+			long relativeIndex = index - offset;
+			int row = (int) (relativeIndex / lineLength);
+			int column = (int) (relativeIndex % lineLength);
+			return new HexPosition(index, columnX[column], getRowY(row), column, row, index / lineLength);
 		}
 	}
 
 	public void addMarker(Marker marker) {
 		marker.addListener(markerUpdatedListener);
 		markers.add(marker);
-		repaint();
+		markerChanged(marker);
+	}
+
+	/**
+	 * Adds all {@code markers} in a single {@linkplain #beginBatch() batch}.
+	 *
+	 * @param markers
+	 *            the markers to add
+	 */
+	public void addMarkers(Collection<? extends Marker> markers) {
+		beginBatch();
+		try {
+			for (Marker marker : markers) {
+				addMarker(marker);
+			}
+		} finally {
+			endBatch();
+		}
 	}
 
 	public void removeMarker(Marker marker) {
 		marker.removeListener(markerUpdatedListener);
-		markers.remove(marker);
+		if (markers.remove(marker)) {
+			markerChanged(marker);
+		}
 	}
 
-	private class HexSelectionUpdaterListener extends MouseAdapter {
+	/**
+	 * Removes all {@code markers} in a single {@linkplain #beginBatch() batch}.
+	 *
+	 * @param markers
+	 *            the markers to remove
+	 */
+	public void removeMarkers(Collection<? extends Marker> markers) {
+		beginBatch();
+		try {
+			for (Marker marker : markers) {
+				removeMarker(marker);
+			}
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Starts a batch of marker changes. Until the matching
+	 * {@link #endBatch()}, adding, removing and updating markers does not
+	 * cause repaints. Batches may be nested.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch of marker changes. If this ends the outermost batch, the
+	 * areas affected by all changes of the batch are repainted at once.
+	 *
+	 * @throws IllegalStateException
+	 *             if there is no batch in progress
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch in progress.");
+		}
+		if (--batchDepth > 0) {
+			return;
+		}
+		if (batchRepaintAll) {
+			invalidateBackBuffer();
+			repaint();
+		} else if (batchArea != null) {
+			invalidateBackBuffer(batchArea);
+			repaint(batchArea);
+		}
+		batchRepaintAll = false;
+		batchArea = null;
+	}
+
+	/**
+	 * Repaints the area affected by a change of {@code marker} or remembers it
+	 * until the current batch ends.
+	 */
+	private void markerChanged(Marker marker) {
+		areaChanged(marker.getChangedArea(metrics));
+	}
+
+	/**
+	 * Repaints an area affected by a change of a marker or remembers it until
+	 * the current batch ends.
+	 *
+	 * @param area
+	 *            the area or {@code null} to repaint all of the panel
+	 */
+	private void areaChanged(Rectangle area) {
+		if (batchDepth > 0) {
+			if (area == null) {
+				batchRepaintAll = true;
+			} else if (!area.isEmpty()) {
+				batchArea = batchArea == null ? area : batchArea.union(area);
+			}
+			return;
+		}
+		if (area == null) {
+			invalidateBackBuffer();
+			repaint();
+		} else if (!area.isEmpty()) {
+			invalidateBackBuffer(area);
+			repaint(area);
+		}
+	}
+
+	/**
+	 * Translates mouse events into {@link HexSelectionEvent}s. Hover and drag
+	 * events are coalesced: mouse events only record the latest position and
+	 * the listeners are notified once for all events that arrived in the
+	 * meantime, either before the next paint or, if nothing is painted, after
+	 * the pending events have been processed.
+	 */
+	private class HexSelectionUpdaterListener extends MouseAdapter implements Runnable {
 		private boolean dragging;
 
+		/**
+		 * The last known mouse position inside the panel. {@code mouseX} is -1
+		 * if the mouse is not inside the panel.
+		 */
+		private int mouseX = -1;
+		private int mouseY;
+
+		/**
+		 * Whether listeners have not been notified about the latest mouse
+		 * position yet.
+		 */
+		private boolean updatePending;
+		/**
+		 * Whether this listener is queued on the event dispatch thread.
+		 */
+		private boolean scheduled;
+
 		@Override
 		public void mouseClicked(MouseEvent e) {
-			HexSelectionEvent event = makeEvent(e.getX(), e.getY(), false);
+			HexSelectionEvent event = makeEvent(e.getX(), e.getY(), false, e.getModifiersEx());
 			if (event.position != null) {
 				fireByteClicked(event);
 			}
@@ -530,10 +1099,9 @@ public class HexPanel extends JPanel {
 		@Override
 		public void mouseDragged(MouseEvent e) {
 			dragging = true;
-			HexSelectionEvent event = makeEvent(e.getX(), e.getY(), true);
-			if (event.position != null) {
-				fireDrag(event);
-			}
+			mouseX = e.getX();
+			mouseY = e.getY();
+			schedule();
 		}
 
 		@Override
@@ -541,23 +1109,77 @@ public class HexPanel extends JPanel {
 			if (!dragging) {
 				return;
 			}
+			// deliver the last intermediate position before the final one
+			update();
 			dragging = false;
-			fireDrag(makeEvent(e.getX(), e.getY(), false));
+			fireDrag(makeEvent(e.getX(), e.getY(), false, e.getModifiersEx()));
 		}
 
 		@Override
 		public void mouseMoved(MouseEvent e) {
-			HexSelectionEvent event = makeEvent(e.getX(), e.getY(), false);
-			if (event.position != null) {
-				fireByteHovered(event);
-			} else {
-				lastHoveredPosition = null;
+			mouseX = e.getX();
+			mouseY = e.getY();
+			schedule();
+		}
+
+		@Override
+		public void mouseExited(MouseEvent e) {
+			if (dragging) {
+				return;
+			}
+			mouseX = -1;
+			updatePending = false;
+			lastHoveredIndex = -1;
+		}
+
+		/**
+		 * Requests that listeners are notified about the current mouse
+		 * position. Called for mouse events and whenever the byte below the
+		 * mouse may have changed without the mouse moving.
+		 */
+		void schedule() {
+			if (mouseX == -1) {
+				return;
+			}
+			updatePending = true;
+			if (!scheduled) {
+				scheduled = true;
+				SwingUtilities.invokeLater(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			scheduled = false;
+			update();
+		}
+
+		/**
+		 * Notifies listeners about the latest mouse position if that has not
+		 * happened yet.
+		 */
+		void update() {
+			if (!updatePending) {
+				return;
+			}
+			updatePending = false;
+			// compare indices first, positions are only created for events
+			long index = getMetrics().indexAt(mouseX, mouseY);
+			if (index == -1) {
+				if (!dragging) {
+					lastHoveredIndex = -1;
+				}
+			} else if (dragging) {
+				fireDrag(makeEvent(mouseX, mouseY, true, 0));
+			} else if (index != lastHoveredIndex) {
+				fireByteHovered(makeEvent(mouseX, mouseY, false, 0));
 			}
 		}
 
-		private HexSelectionListener.HexSelectionEvent makeEvent(int x, int y, boolean stillDragging) {
+		private HexSelectionListener.HexSelectionEvent makeEvent(int x, int y, boolean stillDragging,
+				int modifiers) {
 			HexPosition p = getMetrics().positionFromCoordinates(x, y);
-			return new HexSelectionListener.HexSelectionEvent(p, stillDragging);
+			return new HexSelectionListener.HexSelectionEvent(p, stillDragging, modifiers);
 		}
 	}
 
@@ -11,14 +11,24 @@ public interface HexSelectionListener {
 	public class HexSelectionEvent {
 		public final boolean stillDragging;
 		public final HexPosition position;
+		/**
+		 * The extended modifiers of the mouse event, see
+		 * {@link java.awt.event.InputEvent#getModifiersEx()}.
+		 */
+		public final int modifiers;
 
 		public HexSelectionEvent(HexPosition position) {
 			this(position, false);
 		}
 
 		public HexSelectionEvent(HexPosition position, boolean stillDragging) {
+			this(position, stillDragging, 0);
+		}
+
+		public HexSelectionEvent(HexPosition position, boolean stillDragging, int modifiers) {
 			this.position = position;
 			this.stillDragging = stillDragging;
+			this.modifiers = modifiers;
 		}
 	}
 
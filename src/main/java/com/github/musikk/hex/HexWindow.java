@@ -2,18 +2,23 @@ package com.github.musikk.hex;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Event;
+import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -21,9 +26,12 @@ import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
+import javax.swing.JTextArea;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -36,18 +44,60 @@ public class HexWindow extends JFrame {
 
 	private final JTabbedPane tabsRight = new JTabbedPane();
 	private ByteInspector byteInspector;
+	private final SignaturePanel signaturePanel = new SignaturePanel();
+	private final StatisticsPanel statisticsPanel = new StatisticsPanel();
+	private final StringsPanel stringsPanel = new StringsPanel();
+	private final DuplicatesPanel duplicatesPanel = new DuplicatesPanel();
 
 	private final CloseTabAction closeTabAction = new CloseTabAction();
 
+	/**
+	 * Runs the hover listeners that update the inspector and the status bar.
+	 */
+	private static final ExecutorService INSPECTOR_EXECUTOR = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory("hex-inspector"));
+
+	private final SearchController searchController = new SearchController(this, statusBar.messageLabel);
+	/**
+	 * The pattern of the last search.
+	 */
+	private ByteMatcher lastMatcher;
+	/**
+	 * The signatures to scan for. Loaded on first use.
+	 */
+	private SignatureTable signatureTable;
+
+	private final FindAction findAction = new FindAction();
+	private final FindNextAction findNextAction = new FindNextAction();
+	private final FindAllAction findAllAction = new FindAllAction();
+	private final ClearHighlightsAction clearHighlightsAction = new ClearHighlightsAction();
+	private final ScanSignaturesAction scanSignaturesAction = new ScanSignaturesAction();
+	private final BuildIndexAction buildIndexAction = new BuildIndexAction();
+	private final ChecksumsAction checksumsAction = new ChecksumsAction();
+	private final ExtractStringsAction extractStringsAction = new ExtractStringsAction();
+	private final CompareAction compareAction = new CompareAction();
+	private final FindDuplicatesAction findDuplicatesAction = new FindDuplicatesAction();
+
+	/**
+	 * Whether newly opened files are read through a
+	 * {@link MappedFileDataProvider} instead of a {@link FileDataProvider}.
+	 */
+	private final JCheckBoxMenuItem memoryMappedItem = new JCheckBoxMenuItem("Memory Mapped");
+
 	{
 		tabbedPane.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent e) {
 				closeTabAction.setEnabled(tabbedPane.getTabCount() > 0);
+				updateTabActions();
 				if (tabbedPane.getTabCount() > 0) {
-					setTitle("hex - " + tabFileMapping.get(tabbedPane.getSelectedComponent()).file.getAbsolutePath());
+					TabInfo tabInfo = tabFileMapping.get(tabbedPane.getSelectedComponent());
+					setTitle("hex - " + tabInfo.file.getAbsolutePath());
+					statisticsPanel.setTarget((ScrollableHexPanel) tabbedPane.getSelectedComponent(),
+							tabInfo.uncachedData);
 				} else {
 					setTitle("hex");
+					statisticsPanel.setTarget(null, null);
 				}
 			}
 		});
@@ -61,6 +111,10 @@ public class HexWindow extends JFrame {
 		setLayout(new BorderLayout());
 
 		addByteInspector(tabsRight);
+		tabsRight.addTab("Statistics", statisticsPanel);
+		tabsRight.addTab("Signatures", signaturePanel);
+		tabsRight.addTab("Strings", stringsPanel);
+		tabsRight.addTab("Duplicates", duplicatesPanel);
 
 		add(tabbedPane, BorderLayout.CENTER);
 		add(tabsRight, BorderLayout.EAST);
@@ -91,14 +145,54 @@ public class HexWindow extends JFrame {
 		fileMenu.add(new JMenuItem(new FileOpenAction()));
 		closeTabAction.setEnabled(false);
 		fileMenu.add(new JMenuItem(closeTabAction));
+		fileMenu.add(memoryMappedItem);
 
 		fileMenu.addSeparator();
 		fileMenu.add(new JMenuItem(new QuitAction()));
 
 		menuBar.add(fileMenu);
+
+		JMenu searchMenu = new JMenu("Search");
+		searchMenu.setMnemonic('s');
+		searchMenu.add(new JMenuItem(findAction));
+		searchMenu.add(new JMenuItem(findNextAction));
+		searchMenu.add(new JMenuItem(findAllAction));
+		searchMenu.addSeparator();
+		searchMenu.add(new JMenuItem(clearHighlightsAction));
+		searchMenu.addSeparator();
+		searchMenu.add(new JMenuItem(scanSignaturesAction));
+		searchMenu.add(new JMenuItem(new LoadSignaturesAction()));
+		searchMenu.addSeparator();
+		searchMenu.add(new JMenuItem(buildIndexAction));
+		updateTabActions();
+
+		menuBar.add(searchMenu);
+
+		JMenu toolsMenu = new JMenu("Tools");
+		toolsMenu.setMnemonic('t');
+		toolsMenu.add(new JMenuItem(checksumsAction));
+		toolsMenu.add(new JMenuItem(extractStringsAction));
+		toolsMenu.add(new JMenuItem(findDuplicatesAction));
+		toolsMenu.add(new JMenuItem(compareAction));
+
+		menuBar.add(toolsMenu);
 		add(menuBar, BorderLayout.NORTH);
 	}
 
+	private void updateTabActions() {
+		boolean tabOpen = tabbedPane.getTabCount() > 0;
+		findAction.setEnabled(tabOpen);
+		findNextAction.setEnabled(tabOpen && lastMatcher != null);
+		findAllAction.setEnabled(tabOpen && lastMatcher != null);
+		clearHighlightsAction.setEnabled(tabOpen);
+		scanSignaturesAction.setEnabled(tabOpen);
+		buildIndexAction.setEnabled(tabOpen);
+		checksumsAction.setEnabled(tabOpen);
+		extractStringsAction.setEnabled(tabOpen);
+		compareAction.setEnabled(tabOpen);
+		findDuplicatesAction.setEnabled(tabOpen);
+	}
+
 	private void setGlobalShortcuts() {
 		InputMap rootInputMap = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
 		ActionMap rootActionMap = getRootPane().getActionMap();
@@ -115,30 +209,109 @@ public class HexWindow extends JFrame {
 
 	private void addNewTab(File file) {
 		try {
-			final FileDataProvider data = new FileDataProvider(file);
+			DataProvider uncachedData = memoryMappedItem.isSelected()
+					? new MappedFileDataProvider(file)
+					: new FileDataProvider(file);
+			final CachingDataProvider data = new CachingDataProvider(uncachedData);
 
-			ScrollableHexPanel hexPanel = new ScrollableHexPanel(data);
+			ScrollableHexPanel hexPanel = new ScrollableHexPanel(data, uncachedData);
 			hexPanel.setHoverMarker(new SimpleBorderMarker(Color.BLACK));
 			hexPanel.setSelectionMarker(new SimpleBorderMarker(Color.BLUE));
+			hexPanel.setReadAhead(new ReadAhead(data));
 
-			hexPanel.getHexPanel().addHexSelectionListener(new HexSelectionAdapter() {
+			// reading the inspected bytes may block, keep it off the event dispatch thread
+			hexPanel.getHexPanel().addHexSelectionListener(new AsyncHexSelectionListener(new HexSelectionAdapter() {
 				@Override
-				public void onHover(HexSelectionEvent e) {
-					statusBar.setPosition(e.position.column, e.position.totalRow);
+				public void onHover(final HexSelectionEvent e) {
 					byteInspector.setData(data, e.position.index);
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							statusBar.setPosition(e.position.column, e.position.totalRow);
+							statusBar.setCacheStatistics(data);
+						}
+					});
 				}
-			});
+			}, INSPECTOR_EXECUTOR));
 
-			tabFileMapping.put(hexPanel, new TabInfo(data, file));
+			TabInfo tabInfo = new TabInfo(data, uncachedData, file);
+			tabFileMapping.put(hexPanel, tabInfo);
 			tabbedPane.addTab(file.getName(), hexPanel);
+			openIndex(tabInfo);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 		tabbedPane.setSelectedIndex(tabbedPane.getTabCount() - 1);
 	}
 
+	/**
+	 * Opens the index of a tab's file in the background if there is one.
+	 */
+	private void openIndex(final TabInfo tabInfo) {
+		BackgroundTask.POOL.execute(new Runnable() {
+			@Override
+			public void run() {
+				final NGramIndex index;
+				try {
+					index = NGramIndex.open(tabInfo.file, tabInfo.data);
+				} catch (IOException e) {
+					// search without the index
+					return;
+				}
+				if (index == null) {
+					return;
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						// the tab may be gone, have an index or be building a new one
+						if (tabInfo.index == null && tabInfo.indexBuilder == null
+								&& tabFileMapping.containsValue(tabInfo)) {
+							tabInfo.index = index;
+						} else {
+							close(index);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private NGramIndex indexOf(ScrollableHexPanel panel) {
+		return tabFileMapping.get(panel).index;
+	}
+
+	private static void close(NGramIndex index) {
+		try {
+			index.close();
+		} catch (IOException e) {
+			// nothing is read from it anymore
+		}
+	}
+
 	private void closeTab(int index) {
-		tabFileMapping.remove(tabbedPane.getSelectedComponent());
+		Component tab = tabbedPane.getSelectedComponent();
+		if (tab instanceof ScrollableHexPanel) {
+			((ScrollableHexPanel) tab).setReadAhead(null);
+			searchController.cancel((ScrollableHexPanel) tab);
+			signaturePanel.clear((ScrollableHexPanel) tab);
+			stringsPanel.clear((ScrollableHexPanel) tab);
+			duplicatesPanel.clear((ScrollableHexPanel) tab);
+			TabInfo tabInfo = tabFileMapping.get(tab);
+			if (tabInfo.indexBuilder != null) {
+				tabInfo.indexBuilder.cancel();
+			}
+			if (tabInfo.index != null) {
+				close(tabInfo.index);
+				tabInfo.index = null;
+			}
+			if (tabInfo.checksums != null) {
+				tabInfo.checksums.cancel();
+				tabInfo.checksums = null;
+			}
+			statisticsPanel.remove(tabInfo.uncachedData);
+		}
+		tabFileMapping.remove(tab);
 		tabbedPane.removeTabAt(index);
 	}
 
@@ -194,6 +367,300 @@ public class HexWindow extends JFrame {
 		}
 	}
 
+	/**
+	 * Action that works on the file of the selected tab.
+	 */
+	private abstract class TabAction extends AbstractAction {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			Component tab = tabbedPane.getSelectedComponent();
+			if (!(tab instanceof ScrollableHexPanel)) {
+				return;
+			}
+			perform((ScrollableHexPanel) tab, tabFileMapping.get(tab).data);
+		}
+		abstract void perform(ScrollableHexPanel panel, DataProvider data);
+	}
+
+	private class FindAction extends TabAction {
+		public FindAction() {
+			putValue(NAME, "Find...");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_F);
+			putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_F, Event.CTRL_MASK));
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			String input = (String) JOptionPane.showInputDialog(HexWindow.this,
+					"Hex bytes, ? matches any nibble (e.g. 4D 5A ?? A?):",
+					"Find", JOptionPane.PLAIN_MESSAGE, null, null, lastMatcher == null ? "" : lastMatcher.toString());
+			if (input == null) {
+				return;
+			}
+			try {
+				// wildcards need the slower masked search
+				lastMatcher = input.indexOf('?') == -1 ? BytePattern.parse(input) : MaskedPattern.parse(input);
+			} catch (IllegalArgumentException e) {
+				JOptionPane.showMessageDialog(HexWindow.this, e.getMessage(), "Invalid pattern",
+						JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			updateTabActions();
+			searchController.findNext(panel, data, indexOf(panel), lastMatcher);
+		}
+	}
+
+	private class FindNextAction extends TabAction {
+		public FindNextAction() {
+			putValue(NAME, "Find Next");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_N);
+			putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			searchController.findNext(panel, data, indexOf(panel), lastMatcher);
+		}
+	}
+
+	private class FindAllAction extends TabAction {
+		public FindAllAction() {
+			putValue(NAME, "Find All");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_A);
+			putValue(ACCELERATOR_KEY, KeyStroke.getKeyStroke(KeyEvent.VK_F, Event.CTRL_MASK | Event.SHIFT_MASK));
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			searchController.findAll(panel, data, indexOf(panel), lastMatcher);
+		}
+	}
+
+	private class ClearHighlightsAction extends TabAction {
+		public ClearHighlightsAction() {
+			putValue(NAME, "Clear Highlights");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_C);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			searchController.cancel(panel);
+			panel.clearHighlights();
+		}
+	}
+
+	private class ScanSignaturesAction extends TabAction {
+		public ScanSignaturesAction() {
+			putValue(NAME, "Scan Signatures");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_S);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			if (signatureTable == null) {
+				signatureTable = SignatureTable.builtIn();
+			}
+			tabsRight.setSelectedComponent(signaturePanel);
+			searchController.scanSignatures(panel, data, signatureTable, signaturePanel);
+		}
+	}
+
+	private class BuildIndexAction extends TabAction {
+		public BuildIndexAction() {
+			putValue(NAME, "Build Index");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_I);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			final TabInfo tabInfo = tabFileMapping.get(panel);
+			if (tabInfo.indexBuilder != null) {
+				// already building
+				return;
+			}
+			// the builder replaces the file of the old index
+			if (tabInfo.index != null) {
+				close(tabInfo.index);
+				tabInfo.index = null;
+			}
+			final NGramIndexBuilder builder = NGramIndexBuilder.build(tabInfo.file, data, new Runnable() {
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							indexBuilt(tabInfo);
+						}
+					});
+				}
+			});
+			tabInfo.indexBuilder = builder;
+			statusBar.messageLabel.setText("Building index of " + tabInfo.file.getName());
+			TaskMonitor.monitor(HexWindow.this, "Building index of " + tabInfo.file.getName(), builder);
+		}
+	}
+
+	private void indexBuilt(TabInfo tabInfo) {
+		NGramIndexBuilder builder = tabInfo.indexBuilder;
+		tabInfo.indexBuilder = null;
+		if (!tabFileMapping.containsValue(tabInfo)) {
+			// the tab has been closed
+			if (builder.getIndex() != null) {
+				close(builder.getIndex());
+			}
+		} else if (builder.getIndex() != null) {
+			if (tabInfo.index != null) {
+				close(tabInfo.index);
+			}
+			tabInfo.index = builder.getIndex();
+			statusBar.messageLabel.setText("Index of " + tabInfo.file.getName() + " built");
+		} else if (builder.getError() != null) {
+			statusBar.messageLabel.setText("Building the index failed");
+			JOptionPane.showMessageDialog(HexWindow.this, builder.getError().getMessage(), "Building the index failed",
+					JOptionPane.ERROR_MESSAGE);
+		} else {
+			statusBar.messageLabel.setText("Building the index cancelled");
+		}
+	}
+
+	private class ChecksumsAction extends TabAction {
+		public ChecksumsAction() {
+			putValue(NAME, "Checksums");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_C);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			// the selection or, without one, the whole file
+			long from = 0;
+			long to = data.getLength();
+			RangeMarker selection = panel.getSelectionMarker();
+			if (selection != null && !selection.isInvalid()) {
+				from = Math.min(selection.getByteStart(), selection.getByteEnd());
+				to = Math.min(to, Math.max(selection.getByteStart(), selection.getByteEnd()) + 1);
+			}
+			final TabInfo tabInfo = tabFileMapping.get(panel);
+			if (tabInfo.checksums != null) {
+				// replaced by the new range
+				tabInfo.checksums.cancel();
+			}
+			final Checksums[] checksums = new Checksums[1];
+			checksums[0] = Checksums.compute(data, from, to, new Runnable() {
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							checksumsComputed(tabInfo, checksums[0]);
+						}
+					});
+				}
+			});
+			tabInfo.checksums = checksums[0];
+			String message = String.format("Computing checksums of %d bytes", to - from);
+			statusBar.messageLabel.setText(message);
+			TaskMonitor.monitor(HexWindow.this, message, checksums[0]);
+		}
+	}
+
+	private class ExtractStringsAction extends TabAction {
+		public ExtractStringsAction() {
+			putValue(NAME, "Extract Strings");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_S);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			tabsRight.setSelectedComponent(stringsPanel);
+			stringsPanel.start(panel, data);
+		}
+	}
+
+	private class FindDuplicatesAction extends TabAction {
+		public FindDuplicatesAction() {
+			putValue(NAME, "Find Duplicates");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_D);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			tabsRight.setSelectedComponent(duplicatesPanel);
+			DuplicateFinder finder = duplicatesPanel.start(panel, data);
+			TaskMonitor.monitor(HexWindow.this, "Searching duplicates in " + tabFileMapping.get(panel).file.getName(),
+					finder);
+		}
+	}
+
+	private class CompareAction extends TabAction {
+		public CompareAction() {
+			putValue(NAME, "Compare With...");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_O);
+		}
+		@Override
+		void perform(ScrollableHexPanel panel, DataProvider data) {
+			JFileChooser fileChooser = new JFileChooser();
+			fileChooser.setMultiSelectionEnabled(false);
+			fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+			if (fileChooser.showOpenDialog(HexWindow.this) != JFileChooser.APPROVE_OPTION) {
+				return;
+			}
+			DiffWindow diffWindow;
+			try {
+				diffWindow = new DiffWindow(tabFileMapping.get(panel).file, fileChooser.getSelectedFile(),
+						memoryMappedItem.isSelected());
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(HexWindow.this, e.getMessage(), "Cannot compare files",
+						JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			diffWindow.setLocationRelativeTo(HexWindow.this);
+			diffWindow.setVisible(true);
+			diffWindow.compare();
+		}
+	}
+
+	private void checksumsComputed(TabInfo tabInfo, Checksums checksums) {
+		if (tabInfo.checksums != checksums) {
+			// replaced or the tab was closed
+			return;
+		}
+		tabInfo.checksums = null;
+		if (checksums.getError() != null) {
+			statusBar.messageLabel.setText("Computing checksums failed");
+			JOptionPane.showMessageDialog(this, checksums.getError().getMessage(), "Computing checksums failed",
+					JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		if (checksums.getResults() == null) {
+			statusBar.messageLabel.setText("Computing checksums cancelled");
+			return;
+		}
+		StringBuilder text = new StringBuilder(String.format("Range 0x%x-0x%x (%d bytes)%n%n",
+				checksums.getFrom(), checksums.getTo(), checksums.getTo() - checksums.getFrom()));
+		for (Map.Entry<String, String> result : checksums.getResults().entrySet()) {
+			text.append(String.format("%-8s %s%n", result.getKey(), result.getValue()));
+		}
+		JTextArea area = new JTextArea(text.toString());
+		area.setEditable(false);
+		area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, area.getFont().getSize()));
+		statusBar.messageLabel.setText("Checksums computed");
+		JOptionPane.showMessageDialog(this, area, "Checksums", JOptionPane.PLAIN_MESSAGE);
+	}
+
+	private class LoadSignaturesAction extends AbstractAction {
+		public LoadSignaturesAction() {
+			putValue(NAME, "Load Signature Table...");
+			putValue(MNEMONIC_KEY, KeyEvent.VK_L);
+		}
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			JFileChooser fileChooser = new JFileChooser();
+			fileChooser.setMultiSelectionEnabled(false);
+			fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+			if (fileChooser.showOpenDialog(HexWindow.this) != JFileChooser.APPROVE_OPTION) {
+				return;
+			}
+			try {
+				signatureTable = SignatureTable.load(fileChooser.getSelectedFile());
+				statusBar.messageLabel.setText(signatureTable.size() + " signatures loaded");
+			} catch (IOException ex) {
+				JOptionPane.showMessageDialog(HexWindow.this, ex.getMessage(), "Cannot load signatures",
+						JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
+
 	private class CycleTabAction extends AbstractAction {
 		private final boolean cycleRight;
 		public CycleTabAction(boolean cycleRight) {
@@ -209,11 +676,21 @@ public class HexWindow extends JFrame {
 
 	private class StatusBar extends JPanel {
 		private final JLabel positionLabel = new JLabel(" : ");
+		private final JLabel cacheLabel = new JLabel();
+		private final JLabel messageLabel = new JLabel();
 		public StatusBar() {
 			setLayout(new BorderLayout());
 
 			positionLabel.setPreferredSize(new Dimension(50, positionLabel.getPreferredSize().height));
 			add(positionLabel, BorderLayout.EAST);
+			add(cacheLabel, BorderLayout.WEST);
+			messageLabel.setHorizontalAlignment(JLabel.CENTER);
+			add(messageLabel, BorderLayout.CENTER);
+		}
+
+		public void setCacheStatistics(CachingDataProvider cache) {
+			cacheLabel.setText(String.format("Cache: %.1f%% hits, %d misses, %d evictions",
+					100 * cache.getHitRate(), cache.getMisses(), cache.getEvictions()));
 		}
 
 		public void setPosition(int column, long row) {
@@ -223,9 +700,27 @@ public class HexWindow extends JFrame {
 
 	private class TabInfo {
 		final DataProvider data;
+		/**
+		 * The same data without the cache, for reading all of it once.
+		 */
+		final DataProvider uncachedData;
 		final File file;
-		public TabInfo(DataProvider data, File file) {
+		/**
+		 * The index of the file or {@code null}. Only accessed on the event
+		 * dispatch thread.
+		 */
+		NGramIndex index;
+		/**
+		 * The build of the index that is running or {@code null}.
+		 */
+		NGramIndexBuilder indexBuilder;
+		/**
+		 * The computation of checksums that is running or {@code null}.
+		 */
+		Checksums checksums;
+		public TabInfo(DataProvider data, DataProvider uncachedData, File file) {
 			this.data = data;
+			this.uncachedData = uncachedData;
 			this.file = file;
 		}
 	}
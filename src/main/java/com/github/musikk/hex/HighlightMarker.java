@@ -0,0 +1,84 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import com.github.musikk.hex.HexPanel.Metrics;
+
+/**
+ * {@link RangeMarker} that fills the background of the marked region. Unlike
+ * {@link SimpleBorderMarker} it is suitable for regions that span multiple
+ * lines and for large numbers of markers, like search results.
+ */
+public class HighlightMarker extends RangeMarker {
+
+	/**
+	 * Creates a {@code HighlightMarker}.
+	 *
+	 * @param color
+	 *            the fill color; usually translucent so overlapping
+	 *            highlights remain visible
+	 */
+	public HighlightMarker(Color color) {
+		super(color);
+	}
+
+	/**
+	 * Creates a {@code HighlightMarker} for a range.
+	 *
+	 * @param color
+	 *            the fill color
+	 * @param byteStart
+	 *            the start of the range
+	 * @param byteEnd
+	 *            the end of the range (inclusive)
+	 */
+	public HighlightMarker(Color color, long byteStart, long byteEnd) {
+		super(color);
+		setByteStartEnd(byteStart, byteEnd);
+	}
+
+	@Override
+	protected void paintRangeMarker(Graphics2D g2, Metrics metrics) {
+		g2.setColor(getColor());
+		fill(g2, metrics, Math.min(getByteStart(), getByteEnd()), Math.max(getByteStart(), getByteEnd()));
+	}
+
+	/**
+	 * Fills the background of the visible part of a range with the current
+	 * color of {@code g2}.
+	 *
+	 * @param g2
+	 *            the graphics object to paint on
+	 * @param metrics
+	 *            {@code Metrics} that help determining where to paint
+	 * @param start
+	 *            the start of the range
+	 * @param end
+	 *            the end of the range (inclusive)
+	 */
+	static void fill(Graphics2D g2, Metrics metrics, long start, long end) {
+		start = Math.max(start, metrics.getOffset());
+		end = Math.min(end, metrics.getOffset() + (long) metrics.getLines() * metrics.getLineLength() - 1);
+		if (start > end) {
+			return;
+		}
+
+		int charHeight = metrics.getCharHeight();
+		int pad = metrics.getLineGap() / 2;
+		int hexX = metrics.getHexX();
+		int hexRight = hexX + metrics.getHexWidth();
+
+		int startRow = metrics.rowOf(start);
+		int endRow = metrics.rowOf(end);
+		for (int row = startRow; row <= endRow; row++) {
+			int left = row == startRow ? metrics.getColumnX(metrics.columnOf(start)) : hexX;
+			int right = row == endRow
+					? metrics.getColumnX(metrics.columnOf(end)) + 2 * metrics.getCharWidth()
+					: hexRight;
+			int y = metrics.getRowY(row);
+			g2.fillRect(left, y - charHeight - pad, right - left, charHeight + 2 * pad);
+		}
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Index of the byte histograms of the blocks of some data. With the index the
+ * {@link ByteStatistics} of any range are computed from the histograms of the
+ * blocks the range covers completely plus the bytes of the two blocks at its
+ * edges, no matter how large the range is.
+ * <p>
+ * The data is divided into at most {@link #MAX_BLOCKS} blocks of at least
+ * {@link #MIN_BLOCK_SIZE} bytes. The histograms are counted in parallel on
+ * {@link BackgroundTask#POOL} and stored as prefix sums, so the histogram of
+ * any run of blocks is the difference of two rows.
+ */
+public class HistogramIndex extends BackgroundTask {
+
+	static final int MIN_BLOCK_SIZE = 64 * 1024;
+	/**
+	 * The maximum number of blocks. The prefix sums take 2 KB per block.
+	 */
+	static final int MAX_BLOCKS = 16 * 1024;
+
+	/**
+	 * The read buffer of each thread. Grown on demand.
+	 */
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
+
+	private final DataProvider data;
+	private final int blockSize;
+	private final int blockCount;
+	/**
+	 * Row {@code b} holds the sum of the histograms of the blocks before block
+	 * {@code b}: the count of value {@code v} is at index {@code b * 256 + v}.
+	 */
+	private final long[] prefix;
+
+	private volatile boolean complete;
+
+	private HistogramIndex(DataProvider data) {
+		super(data.getLength());
+		this.data = data;
+		long size = MIN_BLOCK_SIZE;
+		while (size * MAX_BLOCKS < data.getLength()) {
+			size *= 2;
+		}
+		this.blockSize = (int) size;
+		this.blockCount = (int) ((data.getLength() + blockSize - 1) / blockSize);
+		this.prefix = new long[(blockCount + 1) * 256];
+	}
+
+	/**
+	 * Starts to build the index of some data.
+	 *
+	 * @param data
+	 *            the data; it is read once, so it should not go through a
+	 *            {@link CachingDataProvider}
+	 * @param whenFinished
+	 *            run on a background thread when the build has stopped
+	 * @return the index that is being built
+	 */
+	public static HistogramIndex build(DataProvider data, final Runnable whenFinished) {
+		final HistogramIndex index = new HistogramIndex(data);
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					index.new BlockTask(0, index.blockCount).invoke();
+					if (!index.isCancelled()) {
+						index.sumUp();
+						index.complete = true;
+					}
+				} catch (RuntimeException e) {
+					index.fail(e);
+				} finally {
+					index.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return index;
+	}
+
+	/**
+	 * Computes the statistics of a range by reading all of it. Meant for ranges
+	 * that are small or for data without an index.
+	 *
+	 * @param data
+	 *            the data
+	 * @param from
+	 *            the start of the range (inclusive)
+	 * @param to
+	 *            the end of the range (exclusive)
+	 * @return the statistics of the range
+	 */
+	public static ByteStatistics read(DataProvider data, long from, long to) {
+		long[] histogram = new long[256];
+		count(data, from, to, histogram);
+		return new ByteStatistics(histogram);
+	}
+
+	/**
+	 * Returns whether the index has been built completely.
+	 *
+	 * @return whether {@link #getStatistics(long, long)} may be called
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Computes the statistics of a range. Reads at most two blocks.
+	 *
+	 * @param from
+	 *            the start of the range (inclusive)
+	 * @param to
+	 *            the end of the range (exclusive)
+	 * @return the statistics of the range
+	 * @throws IllegalStateException
+	 *             if the index is not complete
+	 * @throws IllegalArgumentException
+	 *             if the range is not within the data
+	 */
+	public ByteStatistics getStatistics(long from, long to) {
+		if (!complete) {
+			throw new IllegalStateException("The index is not complete.");
+		}
+		if (from < 0 || from > to || to > data.getLength()) {
+			throw new IllegalArgumentException(String.format("Invalid range %d-%d for data of length %d.",
+					from, to, data.getLength()));
+		}
+		// the blocks that lie completely within the range
+		int first = (int) ((from + blockSize - 1) / blockSize);
+		int last = (int) (to / blockSize);
+		if (first >= last) {
+			return read(data, from, to);
+		}
+		long[] histogram = new long[256];
+		int firstRow = first * 256;
+		int lastRow = last * 256;
+		for (int b = 0; b < 256; b++) {
+			histogram[b] = prefix[lastRow + b] - prefix[firstRow + b];
+		}
+		count(data, from, (long) first * blockSize, histogram);
+		count(data, (long) last * blockSize, to, histogram);
+		return new ByteStatistics(histogram);
+	}
+
+	private static void count(DataProvider data, long from, long to, long[] histogram) {
+		byte[] buffer = BUFFERS.get();
+		int size = (int) Math.min(to - from, 1024 * 1024);
+		if (buffer.length < size) {
+			buffer = new byte[size];
+			BUFFERS.set(buffer);
+		}
+		for (long offset = from; offset < to; offset += size) {
+			int length = (int) Math.min(size, to - offset);
+			int read = data.get(ByteBuffer.wrap(buffer, 0, length), offset);
+			if (read != length) {
+				throw new IllegalStateException(String.format("Cannot read %d bytes at %d.", length, offset));
+			}
+			ByteStatistics.count(histogram, buffer, length);
+		}
+	}
+
+	/**
+	 * Turns the histograms of the blocks into prefix sums.
+	 */
+	private void sumUp() {
+		for (int i = 256; i < prefix.length; i++) {
+			prefix[i] += prefix[i - 256];
+		}
+	}
+
+	/**
+	 * Counts the histograms of a range of blocks by splitting it into single
+	 * blocks. The histogram of block {@code b} is stored in row {@code b + 1}.
+	 */
+	private class BlockTask extends RecursiveAction {
+		private final int start;
+		private final int end;
+
+		BlockTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > 1) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new BlockTask(start, middle), new BlockTask(middle, end));
+				return;
+			}
+			if (end == start || isCancelled()) {
+				return;
+			}
+			long offset = (long) start * blockSize;
+			long blockEnd = Math.min(data.getLength(), offset + blockSize);
+			long[] histogram = new long[256];
+			count(data, offset, blockEnd, histogram);
+			System.arraycopy(histogram, 0, prefix, (start + 1) * 256, 256);
+			addProgress(blockEnd - offset);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+
+/**
+ * {@link HighlightMarker} that knows a partner marker, like the other
+ * occurrence of a {@link Duplicate}.
+ */
+public class LinkedMarker extends HighlightMarker {
+
+	private LinkedMarker partner;
+
+	/**
+	 * Creates a {@code LinkedMarker} for a range.
+	 *
+	 * @param color
+	 *            the fill color
+	 * @param byteStart
+	 *            the start of the range
+	 * @param byteEnd
+	 *            the end of the range (inclusive)
+	 */
+	public LinkedMarker(Color color, long byteStart, long byteEnd) {
+		super(color, byteStart, byteEnd);
+	}
+
+	/**
+	 * Links two markers with each other.
+	 *
+	 * @param m1
+	 *            one marker
+	 * @param m2
+	 *            the other marker
+	 */
+	public static void link(LinkedMarker m1, LinkedMarker m2) {
+		m1.partner = m2;
+		m2.partner = m1;
+	}
+
+	public LinkedMarker getPartner() {
+		return partner;
+	}
+
+	/**
+	 * Checks whether this marker covers a byte.
+	 *
+	 * @param index
+	 *            the index of the byte
+	 * @return whether the byte is within the range of this marker
+	 */
+	public boolean contains(long index) {
+		return !isInvalid() && index >= Math.min(getByteStart(), getByteEnd())
+				&& index <= Math.max(getByteStart(), getByteEnd());
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.github.musikk.hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link DataProvider} that serves reads from memory mapped regions of a file.
+ * A single {@link MappedByteBuffer} cannot exceed 2 GB, so the file is split
+ * into segments of {@link #SEGMENT_SIZE} bytes that are mapped lazily the
+ * first time they are accessed. Reads that cross a segment boundary are split
+ * accordingly.
+ */
+public class MappedFileDataProvider extends AbstractDataProvider {
+
+	/**
+	 * The size of a single mapped segment in bytes.
+	 */
+	static final int SEGMENT_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long fileLength;
+
+	/**
+	 * The mapped segments. An entry is {@code null} as long as the segment has
+	 * not been accessed.
+	 */
+	private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+	public MappedFileDataProvider(File file) throws IOException {
+		this.channel = new RandomAccessFile(file, "r").getChannel();
+		this.fileLength = channel.size();
+		this.segments = new AtomicReferenceArray<>((int) ((fileLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE));
+	}
+
+	@Override
+	public long getLength() {
+		return fileLength;
+	}
+
+	@Override
+	public int get(ByteBuffer dst, long offset) {
+		if (offset > fileLength) {
+			return -1;
+		}
+		int toRead = (int) Math.min(dst.remaining(), fileLength - offset);
+		int read = 0;
+		while (read < toRead) {
+			long position = offset + read;
+			int segmentOffset = (int) (position % SEGMENT_SIZE);
+
+			/*
+			 * Work on a duplicate so position and limit of the shared segment
+			 * are never touched.
+			 */
+			ByteBuffer segment = getSegment((int) (position / SEGMENT_SIZE)).duplicate();
+			int r = Math.min(toRead - read, segment.capacity() - segmentOffset);
+			segment.position(segmentOffset);
+			segment.limit(segmentOffset + r);
+			dst.put(segment);
+			read += r;
+		}
+		return read;
+	}
+
+	private MappedByteBuffer getSegment(int index) {
+		MappedByteBuffer segment = segments.get(index);
+		if (segment != null) {
+			return segment;
+		}
+		long start = (long) index * SEGMENT_SIZE;
+		try {
+			segment = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileLength - start));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		// another thread may have been faster; use whatever got there first
+		segments.compareAndSet(index, null, segment);
+		return segments.get(index);
+	}
+
+	/**
+	 * Closes the file and drops the mapped segments, so they are unmapped once
+	 * they are garbage collected. Reads fail afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+		for (int i = 0; i < segments.length(); i++) {
+			segments.set(i, null);
+		}
+	}
+
+}
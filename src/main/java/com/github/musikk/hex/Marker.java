@@ -1,6 +1,7 @@
 package com.github.musikk.hex;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 /**
  * A marker for data in a {@link HexPanel}. A marker's purpose is to highlight a
@@ -16,8 +17,10 @@ public interface Marker {
 	 * is drawn before the hex characters are drawn, so if marker and character
 	 * overlap, the latter may obscure the former.
 	 *
-	 * The marker may change the state of the supplied {@code Graphics2D}
-	 * object.
+	 * The marker may change the paint, stroke, composite, font, transform and
+	 * clip of the supplied {@code Graphics2D} object; they are reset before the
+	 * next marker is painted. Other state, for example rendering hints, must be
+	 * restored by the marker.
 	 *
 	 * @param g2
 	 *            the graphics object onto which the marker may draw itself
@@ -25,6 +28,20 @@ public interface Marker {
 	 *            {@code Metrics} that help determining where to draw
 	 */
 	void paint(Graphics2D g2, HexPanel.Metrics metrics);
+
+	/**
+	 * Returns the area of the panel that is affected by the most recent change
+	 * of this marker. This is the area the marker covered before the change
+	 * combined with the area it covers now. It is meant to be called by
+	 * {@link MarkerUpdatedListener}s to repaint as little as possible.
+	 *
+	 * @param metrics
+	 *            {@code Metrics} that help determining the area
+	 * @return the affected area or {@code null} if the whole panel may be
+	 *         affected
+	 */
+	Rectangle getChangedArea(HexPanel.Metrics metrics);
+
 	void addListener(MarkerUpdatedListener l);
 	void removeListener(MarkerUpdatedListener l);
 }
\ No newline at end of file
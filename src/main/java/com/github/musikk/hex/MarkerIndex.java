@@ -0,0 +1,285 @@
+package com.github.musikk.hex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Stores the {@link Marker}s of a {@link HexPanel} so that the markers that
+ * overlap a range of bytes can be found without visiting all of them.
+ * <p>
+ * {@link RangeMarker}s are kept in an interval tree: a treap ordered by the
+ * start of the range where every node knows the greatest end in its subtree.
+ * Other markers cannot tell which bytes they cover and are returned by every
+ * query.
+ * <p>
+ * Queries return markers in the order in which they are painted: by
+ * {@linkplain RangeMarker#getPriority() priority} and, for equal priorities,
+ * in the order in which they were added. Markers that are not
+ * {@code RangeMarker}s have priority 0.
+ */
+class MarkerIndex {
+
+	private final Random random = new Random();
+
+	private final Map<Marker, Node> nodes = new IdentityHashMap<>();
+
+	/**
+	 * The root of the interval tree for {@link RangeMarker}s.
+	 */
+	private Node root;
+	/**
+	 * Markers that are not {@code RangeMarker}s.
+	 */
+	private final List<Node> unindexed = new ArrayList<>();
+
+	private long nextSeq;
+
+	/**
+	 * Reused by {@link #query(long, long, List)}.
+	 */
+	private final List<Node> found = new ArrayList<>();
+
+	private static final Comparator<Node> PAINT_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node n1, Node n2) {
+			int c = Integer.compare(priority(n1.marker), priority(n2.marker));
+			return c != 0 ? c : Long.compare(n1.seq, n2.seq);
+		}
+	};
+
+	/**
+	 * Adds a marker. Adding a marker that is already present has no effect.
+	 *
+	 * @param marker
+	 *            the marker to add
+	 */
+	void add(Marker marker) {
+		if (nodes.containsKey(marker)) {
+			return;
+		}
+		Node node = new Node(marker, nextSeq++, random.nextInt());
+		nodes.put(marker, node);
+		if (marker instanceof RangeMarker) {
+			setRange(node, (RangeMarker) marker);
+			root = insert(root, node);
+		} else {
+			unindexed.add(node);
+		}
+	}
+
+	/**
+	 * Removes a marker.
+	 *
+	 * @param marker
+	 *            the marker to remove
+	 * @return whether the marker was present
+	 */
+	boolean remove(Marker marker) {
+		Node node = nodes.remove(marker);
+		if (node == null) {
+			return false;
+		}
+		if (marker instanceof RangeMarker) {
+			root = delete(root, node);
+		} else {
+			unindexed.remove(node);
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the position of a marker in the index after its range changed.
+	 *
+	 * @param marker
+	 *            the changed marker
+	 */
+	void update(Marker marker) {
+		Node node = nodes.get(marker);
+		if (node == null || !(marker instanceof RangeMarker)) {
+			return;
+		}
+		RangeMarker rangeMarker = (RangeMarker) marker;
+		long start = Math.min(rangeMarker.getByteStart(), rangeMarker.getByteEnd());
+		long end = Math.max(rangeMarker.getByteStart(), rangeMarker.getByteEnd());
+		if (start == node.start && end == node.end) {
+			return;
+		}
+		root = delete(root, node);
+		setRange(node, rangeMarker);
+		root = insert(root, node);
+	}
+
+	/**
+	 * Collects the markers that may overlap the range from {@code lo} to
+	 * {@code hi} (both inclusive) in paint order.
+	 *
+	 * @param lo
+	 *            the start of the range
+	 * @param hi
+	 *            the end of the range
+	 * @param result
+	 *            the list the markers are added to; it is cleared first
+	 */
+	void query(long lo, long hi, List<Marker> result) {
+		result.clear();
+		found.clear();
+		found.addAll(unindexed);
+		query(root, lo, hi, found);
+		Collections.sort(found, PAINT_ORDER);
+		for (Node node : found) {
+			result.add(node.marker);
+		}
+	}
+
+	private static void query(Node node, long lo, long hi, List<Node> result) {
+		while (node != null && node.maxEnd >= lo) {
+			query(node.left, lo, hi, result);
+			if (node.start > hi) {
+				// everything to the right starts even later
+				return;
+			}
+			if (node.end >= lo) {
+				result.add(node);
+			}
+			node = node.right;
+		}
+	}
+
+	private static int priority(Marker marker) {
+		return marker instanceof RangeMarker ? ((RangeMarker) marker).getPriority() : 0;
+	}
+
+	int size() {
+		return nodes.size();
+	}
+
+	private static void setRange(Node node, RangeMarker marker) {
+		node.start = Math.min(marker.getByteStart(), marker.getByteEnd());
+		node.end = Math.max(marker.getByteStart(), marker.getByteEnd());
+		node.maxEnd = node.end;
+	}
+
+	private static Node insert(Node node, Node newNode) {
+		if (node == null) {
+			newNode.left = null;
+			newNode.right = null;
+			newNode.maxEnd = newNode.end;
+			return newNode;
+		}
+		if (compare(newNode, node) < 0) {
+			node.left = insert(node.left, newNode);
+			if (node.left.weight > node.weight) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, newNode);
+			if (node.right.weight > node.weight) {
+				node = rotateLeft(node);
+			}
+		}
+		updateMaxEnd(node);
+		return node;
+	}
+
+	private static Node delete(Node node, Node toDelete) {
+		if (node == null) {
+			return null;
+		}
+		if (node == toDelete) {
+			return merge(node.left, node.right);
+		}
+		if (compare(toDelete, node) < 0) {
+			node.left = delete(node.left, toDelete);
+		} else {
+			node.right = delete(node.right, toDelete);
+		}
+		updateMaxEnd(node);
+		return node;
+	}
+
+	/**
+	 * Merges two treaps where all keys of {@code left} are smaller than the
+	 * keys of {@code right}.
+	 */
+	private static Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.weight > right.weight) {
+			left.right = merge(left.right, right);
+			updateMaxEnd(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		updateMaxEnd(right);
+		return right;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		updateMaxEnd(node);
+		updateMaxEnd(left);
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		updateMaxEnd(node);
+		updateMaxEnd(right);
+		return right;
+	}
+
+	private static void updateMaxEnd(Node node) {
+		long maxEnd = node.end;
+		if (node.left != null) {
+			maxEnd = Math.max(maxEnd, node.left.maxEnd);
+		}
+		if (node.right != null) {
+			maxEnd = Math.max(maxEnd, node.right.maxEnd);
+		}
+		node.maxEnd = maxEnd;
+	}
+
+	private static int compare(Node n1, Node n2) {
+		int c = Long.compare(n1.start, n2.start);
+		return c != 0 ? c : Long.compare(n1.seq, n2.seq);
+	}
+
+	private static class Node {
+		final Marker marker;
+		/**
+		 * Insertion order, also used to break ties between equal starts.
+		 */
+		final long seq;
+		final int weight;
+
+		/**
+		 * The range of the marker at the time it was inserted into the tree.
+		 */
+		long start;
+		long end;
+		long maxEnd;
+
+		Node left;
+		Node right;
+
+		Node(Marker marker, long seq, int weight) {
+			this.marker = marker;
+			this.seq = seq;
+			this.weight = weight;
+		}
+	}
+
+}
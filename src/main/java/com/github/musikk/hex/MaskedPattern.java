@@ -0,0 +1,171 @@
+package com.github.musikk.hex;
+
+/**
+ * {@link ByteMatcher} for a sequence of bytes in which single nibbles or whole
+ * bytes may be wildcards, like {@code 4D 5A ?? ?? 50 45} or {@code A?}.
+ * <p>
+ * The search uses the bit-parallel Shift-Or algorithm: the state of all
+ * partial matches is kept in the bits of a single {@code long} and updated
+ * with one shift and one or per byte of data, no matter how many wildcards the
+ * pattern contains. Patterns longer than 64 bytes are searched by their first
+ * 64 bytes; the rest is compared when the prefix matches.
+ */
+public class MaskedPattern implements ByteMatcher {
+
+	/**
+	 * The number of pattern bytes tracked by the state.
+	 */
+	private static final int STATE_BITS = 64;
+
+	private final byte[] values;
+	private final byte[] masks;
+
+	/**
+	 * For every byte value, the bit {@code j} is cleared iff the value matches
+	 * byte {@code j} of the pattern.
+	 */
+	private final long[] mismatches = new long[256];
+	/**
+	 * The length of the prefix that is searched with Shift-Or.
+	 */
+	private final int prefixLength;
+
+	/**
+	 * Creates a {@code MaskedPattern}. A byte {@code b} of the data matches
+	 * byte {@code i} of the pattern iff
+	 * {@code (b & masks[i]) == (values[i] & masks[i])}.
+	 *
+	 * @param values
+	 *            the bytes to look for
+	 * @param masks
+	 *            the bits of each byte that have to match
+	 * @throws IllegalArgumentException
+	 *             if the pattern is empty or the arrays differ in length
+	 */
+	public MaskedPattern(byte[] values, byte[] masks) {
+		if (values.length == 0) {
+			throw new IllegalArgumentException("Pattern must not be empty.");
+		}
+		if (values.length != masks.length) {
+			throw new IllegalArgumentException(String.format("%d values but %d masks.", values.length, masks.length));
+		}
+		this.values = new byte[values.length];
+		this.masks = masks.clone();
+		for (int i = 0; i < values.length; i++) {
+			this.values[i] = (byte) (values[i] & masks[i]);
+		}
+		prefixLength = Math.min(values.length, STATE_BITS);
+		for (int b = 0; b < 256; b++) {
+			long mismatch = -1L;
+			for (int j = 0; j < prefixLength; j++) {
+				if ((b & this.masks[j]) == (this.values[j] & 0xFF)) {
+					mismatch &= ~(1L << j);
+				}
+			}
+			mismatches[b] = mismatch;
+		}
+	}
+
+	/**
+	 * Parses a pattern like {@code 4D 5A ?? A?}. Each byte consists of two hex
+	 * digits, either of which may be a {@code ?} to match any value. Whitespace
+	 * is ignored.
+	 *
+	 * @param pattern
+	 *            the pattern
+	 * @return the parsed {@code MaskedPattern}
+	 * @throws IllegalArgumentException
+	 *             if {@code pattern} contains characters other than hex digits,
+	 *             {@code ?} and whitespace, an odd number of digits or no
+	 *             digits at all
+	 */
+	public static MaskedPattern parse(String pattern) {
+		String digits = pattern.replaceAll("\\s+", "");
+		if (digits.length() % 2 != 0) {
+			throw new IllegalArgumentException("Odd number of hex digits: " + pattern);
+		}
+		byte[] values = new byte[digits.length() / 2];
+		byte[] masks = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			int value = 0;
+			int mask = 0;
+			for (int n = 0; n < 2; n++) {
+				char c = digits.charAt(2 * i + n);
+				value <<= 4;
+				mask <<= 4;
+				if (c == '?') {
+					continue;
+				}
+				int digit = Character.digit(c, 16);
+				if (digit == -1) {
+					throw new IllegalArgumentException("Not a hex byte: " + digits.substring(2 * i, 2 * i + 2));
+				}
+				value |= digit;
+				mask |= 0x0F;
+			}
+			values[i] = (byte) value;
+			masks[i] = (byte) mask;
+		}
+		return new MaskedPattern(values, masks);
+	}
+
+	@Override
+	public int getMaxLength() {
+		return values.length;
+	}
+
+	@Override
+	public void find(byte[] buffer, int length, int limit, long offset, MatchListener listener) {
+		// matches are detected at the end of the prefix
+		int end = Math.min(length - (values.length - prefixLength), limit + prefixLength - 1);
+		long found = 1L << (prefixLength - 1);
+		long state = -1L;
+		for (int i = 0; i < end; i++) {
+			state = state << 1 | mismatches[buffer[i] & 0xFF];
+			if ((state & found) == 0) {
+				int start = i - prefixLength + 1;
+				if (matchesSuffix(buffer, start) && !listener.matchFound(0, offset + start, values.length)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares the bytes of the pattern that are not tracked by the Shift-Or
+	 * state.
+	 */
+	private boolean matchesSuffix(byte[] buffer, int start) {
+		for (int i = prefixLength; i < values.length; i++) {
+			if ((buffer[start + i] & masks[i]) != values[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			appendNibble(sb, values[i] >> 4, masks[i] >> 4);
+			appendNibble(sb, values[i], masks[i]);
+		}
+		return sb.toString();
+	}
+
+	private static void appendNibble(StringBuilder sb, int value, int mask) {
+		if ((mask & 0x0F) == 0) {
+			sb.append('?');
+		} else if ((mask & 0x0F) == 0x0F) {
+			sb.append(Character.toUpperCase(Character.forDigit(value & 0x0F, 16)));
+		} else {
+			// partially masked nibbles cannot be written in this notation
+			sb.append('*');
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.github.musikk.hex;
+
+/**
+ * A match found by a {@link SearchEngine}.
+ */
+public class Match {
+
+	/**
+	 * The index of the pattern that matched. Always 0 for matchers that look
+	 * for a single pattern.
+	 */
+	public final int pattern;
+	/**
+	 * The position of the first byte of the match.
+	 */
+	public final long offset;
+	/**
+	 * The number of bytes that matched.
+	 */
+	public final int length;
+
+	public Match(int pattern, long offset, int length) {
+		this.pattern = pattern;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the position of the last byte of the match.
+	 *
+	 * @return the inclusive end of the match
+	 */
+	public long getEnd() {
+		return offset + length - 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Match: %d [pattern: %d, length: %d]", offset, pattern, length);
+	}
+
+}
@@ -0,0 +1,386 @@
+package com.github.musikk.hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk index of the 3-byte sequences (trigrams) in the data of a file. For
+ * every block of {@link #BLOCK_SIZE} bytes the index knows which trigrams
+ * occur in it, so a search for a pattern of 3 or more bytes only has to read
+ * the blocks that contain all trigrams of the pattern.
+ * <p>
+ * Trigrams are hashed into {@link #BUCKETS} buckets; every bucket stores the
+ * sorted list of blocks that contain one of its trigrams. Collisions only add
+ * candidates, which are verified by the search anyway. Blocks with so many
+ * different trigrams that indexing them is pointless, like compressed data,
+ * are marked as dense and are always candidates. Buckets that occur in most
+ * blocks are marked as saturated and do not narrow down a search.
+ * <p>
+ * An index is identified by the length, the modification time and a hash of
+ * samples of the data of the file. It is stored in {@link #getDirectory()}
+ * and read through a {@link MappedFileDataProvider} when it is opened again.
+ * Indices are built by {@link NGramIndexBuilder}.
+ * <p>
+ * File layout, all numbers big-endian:
+ * <ul>
+ * <li>the magic number {@code HEXIDX01}</li>
+ * <li>data length, modification time and sample hash as {@code long}s</li>
+ * <li>block size and block count as {@code int}s</li>
+ * <li>a bitmap of dense blocks, one {@code long} per 64 blocks</li>
+ * <li>a bitmap of saturated buckets, one {@code long} per 64 buckets</li>
+ * <li>the start of each bucket's list and the end of the last list as
+ * {@code long}s</li>
+ * <li>the lists: block numbers as deltas to the previous one in a variable
+ * length encoding of 7 bits per byte</li>
+ * </ul>
+ */
+public class NGramIndex {
+
+	static final long MAGIC = 0x4845584944583031L; // HEXIDX01
+	static final int BLOCK_SIZE = 256 * 1024;
+	static final int BUCKET_BITS = 20;
+	static final int BUCKETS = 1 << BUCKET_BITS;
+
+	/**
+	 * The size of the header up to the bitmaps.
+	 */
+	static final int HEADER_SIZE = 8 + 3 * 8 + 2 * 4;
+
+	private static final int SAMPLES = 64;
+	private static final int SAMPLE_SIZE = 4096;
+
+	private final MappedFileDataProvider index;
+	private final long length;
+	private final int blockCount;
+	private final long[] denseBlocks;
+	private final long[] saturatedBuckets;
+	private final long directoryStart;
+
+	private NGramIndex(MappedFileDataProvider index, long length, int blockCount, long[] denseBlocks,
+			long[] saturatedBuckets) {
+		this.index = index;
+		this.length = length;
+		this.blockCount = blockCount;
+		this.denseBlocks = denseBlocks;
+		this.saturatedBuckets = saturatedBuckets;
+		this.directoryStart = HEADER_SIZE + 8L * (denseBlocks.length + saturatedBuckets.length);
+	}
+
+	/**
+	 * Returns the directory that holds the index files.
+	 *
+	 * @return the index directory
+	 */
+	public static File getDirectory() {
+		return new File(new File(System.getProperty("user.home"), ".hex"), "index");
+	}
+
+	/**
+	 * Opens the index of a file if there is one that matches the current
+	 * content of the file.
+	 *
+	 * @param file
+	 *            the indexed file
+	 * @param data
+	 *            the data of {@code file}
+	 * @return the index or {@code null} if there is none
+	 * @throws IOException
+	 *             if the index cannot be read
+	 */
+	public static NGramIndex open(File file, DataProvider data) throws IOException {
+		return open(Key.of(file, data));
+	}
+
+	static NGramIndex open(Key key) throws IOException {
+		File indexFile = key.getIndexFile();
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		MappedFileDataProvider index = new MappedFileDataProvider(indexFile);
+		boolean opened = false;
+		try {
+			ByteBuffer header = read(index, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC || header.getLong() != key.length || header.getLong() != key.modified
+					|| header.getLong() != key.sampleHash || header.getInt() != BLOCK_SIZE) {
+				return null;
+			}
+			int blockCount = header.getInt();
+			long[] denseBlocks = new long[(blockCount + 63) / 64];
+			long[] saturatedBuckets = new long[BUCKETS / 64];
+			read(index, HEADER_SIZE, 8 * denseBlocks.length).asLongBuffer().get(denseBlocks);
+			read(index, HEADER_SIZE + 8L * denseBlocks.length, 8 * saturatedBuckets.length).asLongBuffer()
+					.get(saturatedBuckets);
+			opened = true;
+			return new NGramIndex(index, key.length, blockCount, denseBlocks, saturatedBuckets);
+		} finally {
+			if (!opened) {
+				index.close();
+			}
+		}
+	}
+
+	private static ByteBuffer read(DataProvider data, long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		if (data.get(buffer, offset) != length) {
+			throw new IOException("Index file is truncated.");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static int bucket(int b0, int b1, int b2) {
+		int trigram = b0 << 16 | b1 << 8 | b2;
+		return (trigram * 0x9E3779B1) >>> (32 - BUCKET_BITS);
+	}
+
+	public int getBlockSize() {
+		return BLOCK_SIZE;
+	}
+
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Closes the index file. The index must not be used afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		index.close();
+	}
+
+	/**
+	 * Returns the blocks in which a match of {@code pattern} may start. A
+	 * match that starts in a block may continue in the next one, so a block is
+	 * a candidate if every trigram of the pattern occurs in it or in the next
+	 * block.
+	 *
+	 * @param pattern
+	 *            the pattern; at least 3 and at most {@link #BLOCK_SIZE} bytes
+	 * @return the sorted numbers of the candidate blocks
+	 * @throws IllegalArgumentException
+	 *             if the pattern is too short or too long for the index
+	 */
+	public int[] findCandidates(byte[] pattern) {
+		if (pattern.length < 3 || pattern.length > BLOCK_SIZE) {
+			throw new IllegalArgumentException("Cannot use the index for a pattern of length " + pattern.length);
+		}
+		int[] dense = denseBlockList();
+		List<int[]> lists = new ArrayList<>();
+		long[] seen = new long[BUCKETS / 64];
+		for (int i = 0; i + 3 <= pattern.length; i++) {
+			int bucket = bucket(pattern[i] & 0xFF, pattern[i + 1] & 0xFF, pattern[i + 2] & 0xFF);
+			if (isSet(seen, bucket) || isSet(saturatedBuckets, bucket)) {
+				continue;
+			}
+			seen[bucket >>> 6] |= 1L << bucket;
+			// dense blocks contain every trigram
+			lists.add(withPrevious(union(readList(bucket), dense)));
+		}
+
+		int[] candidates;
+		if (lists.isEmpty()) {
+			// nothing to narrow down the search
+			candidates = new int[blockCount];
+			for (int i = 0; i < blockCount; i++) {
+				candidates[i] = i;
+			}
+			return candidates;
+		}
+		// start with the shortest list to keep intermediate results small
+		Collections.sort(lists, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] l1, int[] l2) {
+				return Integer.compare(l1.length, l2.length);
+			}
+		});
+		candidates = lists.get(0);
+		for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+			candidates = intersect(candidates, lists.get(i));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the ranges that have to be searched for {@code pattern} within
+	 * the range from {@code from} (inclusive) to {@code to} (exclusive).
+	 * Candidate blocks that follow each other are merged into one range. Each
+	 * range extends past its last block by the length of the pattern so the
+	 * matches that start in it can be found.
+	 *
+	 * @param pattern
+	 *            the pattern; at least 3 and at most {@link #BLOCK_SIZE} bytes
+	 * @param from
+	 *            the start of the searched range
+	 * @param to
+	 *            the end of the searched range
+	 * @return the starts and ends of the ranges, alternating and sorted
+	 */
+	public long[] findRanges(byte[] pattern, long from, long to) {
+		int[] candidates = findCandidates(pattern);
+		long[] ranges = new long[2 * candidates.length];
+		int count = 0;
+		for (int i = 0; i < candidates.length;) {
+			int first = candidates[i];
+			int last = first;
+			while (++i < candidates.length && candidates[i] == last + 1) {
+				last++;
+			}
+			long start = Math.max(from, (long) first * BLOCK_SIZE);
+			long end = Math.min(to, Math.min(length, (long) (last + 1) * BLOCK_SIZE + pattern.length - 1));
+			if (start < end) {
+				ranges[count++] = start;
+				ranges[count++] = end;
+			}
+		}
+		return Arrays.copyOf(ranges, count);
+	}
+
+	private int[] readList(int bucket) {
+		ByteBuffer bounds;
+		try {
+			bounds = read(index, directoryStart + 8L * bucket, 16);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		long start = bounds.getLong();
+		long end = bounds.getLong();
+		byte[] encoded = new byte[(int) (end - start)];
+		index.get(encoded, start);
+
+		int[] blocks = new int[encoded.length];
+		int count = 0;
+		int block = 0;
+		int value = 0;
+		int shift = 0;
+		for (byte b : encoded) {
+			value |= (b & 0x7F) << shift;
+			if (b < 0) {
+				shift += 7;
+				continue;
+			}
+			block += value;
+			blocks[count++] = block;
+			value = 0;
+			shift = 0;
+		}
+		return Arrays.copyOf(blocks, count);
+	}
+
+	/**
+	 * Adds the block before every block of the sorted list {@code blocks}.
+	 */
+	private static int[] withPrevious(int[] blocks) {
+		int[] result = new int[2 * blocks.length];
+		int count = 0;
+		for (int block : blocks) {
+			if (block > 0 && (count == 0 || result[count - 1] < block - 1)) {
+				result[count++] = block - 1;
+			}
+			if (count == 0 || result[count - 1] < block) {
+				result[count++] = block;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int count = 0;
+		for (int i = 0, j = 0; i < a.length && j < b.length;) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static int[] union(int[] a, int[] b) {
+		int[] result = new int[a.length + b.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			int next;
+			if (j == b.length || i < a.length && a[i] <= b[j]) {
+				next = a[i++];
+			} else {
+				next = b[j++];
+			}
+			if (count == 0 || result[count - 1] != next) {
+				result[count++] = next;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private int[] denseBlockList() {
+		int count = 0;
+		for (long bits : denseBlocks) {
+			count += Long.bitCount(bits);
+		}
+		int[] blocks = new int[count];
+		count = 0;
+		for (int block = 0; block < blockCount; block++) {
+			if (isSet(denseBlocks, block)) {
+				blocks[count++] = block;
+			}
+		}
+		return blocks;
+	}
+
+	private static boolean isSet(long[] bitmap, int bit) {
+		return (bitmap[bit >>> 6] & 1L << bit) != 0;
+	}
+
+	/**
+	 * Identifies the content of a file.
+	 */
+	static class Key {
+		final long length;
+		final long modified;
+		final long sampleHash;
+
+		private Key(long length, long modified, long sampleHash) {
+			this.length = length;
+			this.modified = modified;
+			this.sampleHash = sampleHash;
+		}
+
+		/**
+		 * Computes the key of a file. The hash covers samples spread evenly
+		 * over the data.
+		 */
+		static Key of(File file, DataProvider data) {
+			long length = data.getLength();
+			CRC32 crc = new CRC32();
+			byte[] sample = new byte[SAMPLE_SIZE];
+			for (int i = 0; i < SAMPLES; i++) {
+				long offset = Math.max(0, length - SAMPLE_SIZE) / (SAMPLES - 1) * i;
+				int read = data.get(sample, offset);
+				crc.update(sample, 0, Math.max(0, read));
+			}
+			return new Key(length, file.lastModified(), crc.getValue());
+		}
+
+		File getIndexFile() {
+			return new File(getDirectory(), String.format("%016x-%016x-%08x.idx", length, modified, sampleHash));
+		}
+	}
+
+}
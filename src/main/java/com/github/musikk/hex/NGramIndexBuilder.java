@@ -0,0 +1,401 @@
+package com.github.musikk.hex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds the {@link NGramIndex} of a file in the background.
+ * <p>
+ * The blocks of the data are scanned in parallel on
+ * {@link BackgroundTask#POOL}. Every block yields the distinct buckets of its
+ * trigrams; the pairs of bucket and block are collected in a buffer of
+ * {@link #RUN_SIZE} entries that is sorted and written to a temporary file
+ * whenever it is full. The sorted runs are merged into the lists of the
+ * index, so the memory that is needed does not depend on the size of the
+ * data.
+ */
+class NGramIndexBuilder extends BackgroundTask {
+
+	/**
+	 * The number of distinct buckets above which a block is not indexed but
+	 * marked as dense.
+	 */
+	static final int MAX_BLOCK_BUCKETS = 32 * 1024;
+
+	/**
+	 * The number of entries that are sorted in memory before they are written
+	 * to a temporary file.
+	 */
+	static final int RUN_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * The number of blocks that are scanned together.
+	 */
+	private static final int BATCH_BLOCKS = 64;
+
+	private static final ThreadLocal<BlockScanner> SCANNERS = new ThreadLocal<BlockScanner>() {
+		@Override
+		protected BlockScanner initialValue() {
+			return new BlockScanner();
+		}
+	};
+
+	private final File file;
+	private final DataProvider data;
+	private NGramIndex.Key key;
+	private final int blockCount;
+
+	private final long[] denseBlocks;
+	private final List<File> runs = new ArrayList<>();
+	private final long[] run = new long[RUN_SIZE];
+	private int runLength;
+
+	private volatile NGramIndex index;
+
+	private NGramIndexBuilder(File file, DataProvider data) {
+		super(data.getLength());
+		this.file = file;
+		this.data = data;
+		long blocks = (data.getLength() + NGramIndex.BLOCK_SIZE - 1) / NGramIndex.BLOCK_SIZE;
+		if (blocks > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Data is too large to be indexed.");
+		}
+		this.blockCount = (int) blocks;
+		this.denseBlocks = new long[(blockCount + 63) / 64];
+	}
+
+	/**
+	 * Starts to build the index of a file. An existing index of the file is
+	 * replaced.
+	 *
+	 * @param file
+	 *            the file to index
+	 * @param data
+	 *            the data of {@code file}
+	 * @param whenFinished
+	 *            run on a background thread when the build has stopped
+	 * @return the running build
+	 */
+	static NGramIndexBuilder build(File file, DataProvider data, final Runnable whenFinished) {
+		final NGramIndexBuilder builder = new NGramIndexBuilder(file, data);
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					builder.run();
+				} catch (IOException e) {
+					builder.fail(new RuntimeException("Cannot write index: " + e.getMessage(), e));
+				} catch (RuntimeException e) {
+					builder.fail(e);
+				} finally {
+					builder.deleteRuns();
+					builder.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return builder;
+	}
+
+	/**
+	 * Returns the index once it has been built.
+	 *
+	 * @return the index or {@code null} if the build is not complete or has
+	 *         failed
+	 */
+	NGramIndex getIndex() {
+		return index;
+	}
+
+	private void run() throws IOException {
+		// taken before the data is read so a later change invalidates the index
+		key = NGramIndex.Key.of(file, data);
+		final int[][] buckets = new int[BATCH_BLOCKS][];
+		for (int first = 0; first < blockCount; first += BATCH_BLOCKS) {
+			if (isCancelled()) {
+				return;
+			}
+			final int batchStart = first;
+			final int batchEnd = Math.min(blockCount, first + BATCH_BLOCKS);
+			new ScanTask(buckets, batchStart, batchStart, batchEnd).invoke();
+			for (int block = batchStart; block < batchEnd; block++) {
+				int[] blockBuckets = buckets[block - batchStart];
+				if (blockBuckets == null) {
+					denseBlocks[block >>> 6] |= 1L << block;
+					continue;
+				}
+				for (int bucket : blockBuckets) {
+					if (runLength == run.length) {
+						spill();
+					}
+					run[runLength++] = (long) bucket << 32 | block;
+				}
+			}
+		}
+		if (isCancelled()) {
+			return;
+		}
+		spill();
+
+		File directory = NGramIndex.getDirectory();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		File temp = File.createTempFile("index", ".tmp", directory);
+		try {
+			write(temp);
+			if (isCancelled()) {
+				return;
+			}
+			File indexFile = key.getIndexFile();
+			if (indexFile.exists() && !indexFile.delete()) {
+				throw new IOException("Cannot delete " + indexFile);
+			}
+			if (!temp.renameTo(indexFile)) {
+				throw new IOException("Cannot rename " + temp + " to " + indexFile);
+			}
+		} finally {
+			temp.delete();
+		}
+		index = NGramIndex.open(key);
+	}
+
+	/**
+	 * Sorts the collected entries and writes them to a temporary file.
+	 */
+	private void spill() throws IOException {
+		if (runLength == 0) {
+			return;
+		}
+		Arrays.sort(run, 0, runLength);
+		File runFile = File.createTempFile("hex-index", ".run");
+		runs.add(runFile);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)))) {
+			for (int i = 0; i < runLength; i++) {
+				out.writeLong(run[i]);
+			}
+		}
+		runLength = 0;
+	}
+
+	private void deleteRuns() {
+		for (File runFile : runs) {
+			runFile.delete();
+		}
+		runs.clear();
+	}
+
+	/**
+	 * Merges the runs into the lists of the index and writes the index file.
+	 * The lists are written first; the header, the bitmaps and the directory
+	 * are written once the positions of the lists are known.
+	 */
+	private void write(File temp) throws IOException {
+		long[] saturatedBuckets = new long[NGramIndex.BUCKETS / 64];
+		long[] directory = new long[NGramIndex.BUCKETS + 1];
+		int headerSize = NGramIndex.HEADER_SIZE + 8 * (denseBlocks.length + saturatedBuckets.length
+				+ directory.length);
+
+		PriorityQueue<RunReader> readers = new PriorityQueue<>();
+		try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+			for (File runFile : runs) {
+				RunReader reader = new RunReader(runFile);
+				if (reader.next()) {
+					readers.add(reader);
+				}
+			}
+
+			FileChannel channel = out.getChannel();
+			channel.position(headerSize);
+			OutputStream lists = new BufferedOutputStream(Channels.newOutputStream(channel));
+			long position = headerSize;
+			int[] blocks = new int[blockCount];
+			for (int bucket = 0; bucket < NGramIndex.BUCKETS; bucket++) {
+				if (isCancelled()) {
+					return;
+				}
+				int count = 0;
+				while (!readers.isEmpty() && (int) (readers.peek().value >>> 32) == bucket) {
+					RunReader reader = readers.poll();
+					blocks[count++] = (int) reader.value;
+					if (reader.next()) {
+						readers.add(reader);
+					}
+				}
+				directory[bucket] = position;
+				if (2L * count > blockCount) {
+					// would hardly rule out any block
+					saturatedBuckets[bucket >>> 6] |= 1L << bucket;
+					continue;
+				}
+				int previous = 0;
+				for (int i = 0; i < count; i++) {
+					position += writeVarInt(lists, blocks[i] - previous);
+					previous = blocks[i];
+				}
+			}
+			directory[NGramIndex.BUCKETS] = position;
+			lists.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(headerSize);
+			header.putLong(NGramIndex.MAGIC);
+			header.putLong(key.length);
+			header.putLong(key.modified);
+			header.putLong(key.sampleHash);
+			header.putInt(NGramIndex.BLOCK_SIZE);
+			header.putInt(blockCount);
+			header.asLongBuffer().put(denseBlocks).put(saturatedBuckets).put(directory);
+			header.position(0);
+			for (long written = 0; header.hasRemaining();) {
+				written += channel.write(header, written);
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	private static int writeVarInt(OutputStream out, int value) throws IOException {
+		int bytes = 1;
+		while ((value & ~0x7F) != 0) {
+			out.write(value & 0x7F | 0x80);
+			value >>>= 7;
+			bytes++;
+		}
+		out.write(value);
+		return bytes;
+	}
+
+	/**
+	 * Scans a range of blocks of a batch by splitting it into single blocks.
+	 */
+	private class ScanTask extends RecursiveAction {
+		private final int[][] buckets;
+		private final int batchStart;
+		private final int start;
+		private final int end;
+
+		ScanTask(int[][] buckets, int batchStart, int start, int end) {
+			this.buckets = buckets;
+			this.batchStart = batchStart;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > 1) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new ScanTask(buckets, batchStart, start, middle),
+						new ScanTask(buckets, batchStart, middle, end));
+				return;
+			}
+			if (isCancelled()) {
+				return;
+			}
+			long offset = (long) start * NGramIndex.BLOCK_SIZE;
+			long blockEnd = Math.min(data.getLength(), offset + NGramIndex.BLOCK_SIZE);
+			buckets[start - batchStart] = SCANNERS.get().scan(data, offset, blockEnd);
+			addProgress(blockEnd - offset);
+		}
+	}
+
+	/**
+	 * Finds the distinct buckets of the trigrams of a block. Each thread has
+	 * its own scanner so the buffers are reused.
+	 */
+	private static class BlockScanner {
+		private final byte[] buffer = new byte[NGramIndex.BLOCK_SIZE + 2];
+		private final long[] seen = new long[NGramIndex.BUCKETS / 64];
+		private final int[] buckets = new int[MAX_BLOCK_BUCKETS];
+
+		/**
+		 * Returns the sorted distinct buckets of the trigrams that start
+		 * between {@code start} and {@code end}, or {@code null} if there
+		 * are more than {@link #MAX_BLOCK_BUCKETS} of them.
+		 */
+		int[] scan(DataProvider data, long start, long end) {
+			int length = (int) (Math.min(data.getLength(), end + 2) - start);
+			int read = data.get(ByteBuffer.wrap(buffer, 0, length), start);
+			int count = 0;
+			boolean dense = false;
+			for (int i = 0; i + 2 < read; i++) {
+				int bucket = NGramIndex.bucket(buffer[i] & 0xFF, buffer[i + 1] & 0xFF, buffer[i + 2] & 0xFF);
+				long bit = 1L << bucket;
+				if ((seen[bucket >>> 6] & bit) != 0) {
+					continue;
+				}
+				if (count == buckets.length) {
+					dense = true;
+					break;
+				}
+				seen[bucket >>> 6] |= bit;
+				buckets[count++] = bucket;
+			}
+			for (int i = 0; i < count; i++) {
+				seen[buckets[i] >>> 6] = 0;
+			}
+			if (dense) {
+				return null;
+			}
+			int[] result = Arrays.copyOf(buckets, count);
+			Arrays.sort(result);
+			return result;
+		}
+	}
+
+	/**
+	 * Reads the entries of a run in order.
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+		private final DataInputStream in;
+		private long remaining;
+		long value;
+
+		RunReader(File runFile) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+			this.remaining = runFile.length() / 8;
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				close();
+				return false;
+			}
+			remaining--;
+			value = in.readLong();
+			return true;
+		}
+
+		void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing left to read anyway
+			}
+		}
+
+		@Override
+		public int compareTo(RunReader other) {
+			return Long.compare(value, other.value);
+		}
+	}
+
+}
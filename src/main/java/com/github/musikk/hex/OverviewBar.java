@@ -0,0 +1,366 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.nio.ByteBuffer;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.ButtonGroup;
+import javax.swing.JComponent;
+import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.SwingUtilities;
+
+import com.github.musikk.hex.HexPanel.Metrics;
+
+/**
+ * A strip that shows the whole data of a {@link ScrollableHexPanel} at once,
+ * colored by entropy or by the classes of its bytes. Compressed or encrypted
+ * data, text and padding stand out. The visible part of the data is outlined;
+ * clicking somewhere shows that part of the data.
+ * <p>
+ * The data is summarized in the background in leaves of at least
+ * {@link #MIN_LEAF_SIZE} bytes that are kept in a {@link SummaryPyramid}. The
+ * leaves are computed with decreasing stride, so the whole strip shows a
+ * coarse picture early that is refined as more leaves are done. Once the
+ * summaries exist, the strip is painted at any size without reading the data.
+ * Since every byte is read once, the data should not go through a
+ * {@link CachingDataProvider}; see
+ * {@link ScrollableHexPanel#ScrollableHexPanel(DataProvider, DataProvider)}.
+ */
+public class OverviewBar extends JComponent {
+
+	/**
+	 * What the colors of the strip show.
+	 */
+	public enum Mode {
+		/**
+		 * From blue for uniform data to red for random data.
+		 */
+		ENTROPY,
+		/**
+		 * Black for zero bytes, green for ASCII, red for bytes with the high
+		 * bit set and gray for control characters, mixed by frequency.
+		 */
+		BYTE_CLASSES
+	}
+
+	static final int MIN_LEAF_SIZE = 4096;
+	/**
+	 * The maximum number of leaves; more would not fit on the screen anyway.
+	 */
+	static final int MAX_LEAVES = 64 * 1024;
+
+	private static final int WIDTH = 16;
+	/**
+	 * The number of leaves that are summarized between two repaints.
+	 */
+	private static final int BATCH_LEAVES = 256;
+
+	private static final Color PENDING_COLOR = Color.LIGHT_GRAY;
+	private static final Color VIEWPORT_COLOR = Color.WHITE;
+
+	private static final double LOG_2 = Math.log(2);
+
+	private final ScrollableHexPanel panel;
+	private final DataProvider data;
+	private final long leafSize;
+	private final SummaryPyramid pyramid;
+
+	private Mode mode = Mode.ENTROPY;
+
+	/**
+	 * Computes the summaries. {@code null} until the strip is shown for the
+	 * first time.
+	 */
+	private Summarizer summarizer;
+
+	OverviewBar(ScrollableHexPanel panel, DataProvider data) {
+		this.panel = panel;
+		this.data = data;
+
+		long size = MIN_LEAF_SIZE;
+		while (size * MAX_LEAVES < data.getLength()) {
+			size *= 2;
+		}
+		leafSize = size;
+		pyramid = new SummaryPyramid((int) ((data.getLength() + leafSize - 1) / leafSize));
+
+		setPreferredSize(new Dimension(WIDTH, 0));
+		setToolTipText("");
+		setComponentPopupMenu(createPopupMenu());
+
+		MouseAdapter mouseListener = new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				if (SwingUtilities.isLeftMouseButton(e)) {
+					show(e.getY());
+				}
+			}
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				if (SwingUtilities.isLeftMouseButton(e)) {
+					show(e.getY());
+				}
+			}
+		};
+		addMouseListener(mouseListener);
+		addMouseMotionListener(mouseListener);
+	}
+
+	private JPopupMenu createPopupMenu() {
+		JPopupMenu menu = new JPopupMenu();
+		ButtonGroup group = new ButtonGroup();
+		for (final Mode m : Mode.values()) {
+			JRadioButtonMenuItem item = new JRadioButtonMenuItem(m == Mode.ENTROPY ? "Entropy" : "Byte Classes",
+					m == mode);
+			item.addActionListener(new ActionListener() {
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					setMode(m);
+				}
+			});
+			group.add(item);
+			menu.add(item);
+		}
+		return menu;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+		repaint();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		if (summarizer == null) {
+			summarizer = new Summarizer();
+			BackgroundTask.POOL.execute(summarizer);
+		}
+	}
+
+	@Override
+	public void removeNotify() {
+		super.removeNotify();
+		if (summarizer != null) {
+			summarizer.task.cancel();
+		}
+	}
+
+	/**
+	 * Returns the background task that summarizes the data.
+	 *
+	 * @return the task or {@code null} if it has not been started
+	 */
+	BackgroundTask getTask() {
+		return summarizer == null ? null : summarizer.task;
+	}
+
+	private void show(int y) {
+		if (getHeight() > 0 && data.getLength() > 0) {
+			panel.showIndex(Math.min(data.getLength() - 1, offsetAt(y)));
+		}
+	}
+
+	private long offsetAt(int y) {
+		return (long) ((double) Math.max(0, y) / getHeight() * data.getLength());
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		int height = getHeight();
+		int width = getWidth();
+		int leaves = pyramid.getLeafCount();
+		if (height == 0 || leaves == 0) {
+			return;
+		}
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, width, height);
+		}
+		double[] summary = new double[SummaryPyramid.FIELDS];
+		for (int y = Math.max(0, clip.y); y < Math.min(height, clip.y + clip.height); y++) {
+			int from = (int) ((long) y * leaves / height);
+			int to = Math.max(from + 1, (int) ((long) (y + 1) * leaves / height));
+			pyramid.sum(from, to, summary);
+			g.setColor(colorOf(summary));
+			g.fillRect(0, y, width, 1);
+		}
+
+		Metrics metrics = panel.getHexPanel().getMetrics();
+		if (data.getLength() > 0 && metrics.getLineLength() > 0) {
+			long visible = (long) metrics.getLines() * metrics.getLineLength();
+			int top = (int) ((double) metrics.getOffset() / data.getLength() * height);
+			int bottom = (int) ((double) (metrics.getOffset() + visible) / data.getLength() * height);
+			g.setColor(VIEWPORT_COLOR);
+			g.drawRect(0, top, width - 1, Math.max(2, Math.min(height - 1, bottom) - top));
+		}
+	}
+
+	private Color colorOf(double[] summary) {
+		double bytes = summary[SummaryPyramid.BYTES];
+		if (summary[SummaryPyramid.LEAVES] == 0 || bytes == 0) {
+			return PENDING_COLOR;
+		}
+		if (mode == Mode.ENTROPY) {
+			float entropy = (float) (summary[SummaryPyramid.ENTROPY] / bytes);
+			return Color.getHSBColor(2f / 3 * (1 - entropy), 1, 0.4f + 0.6f * entropy);
+		}
+		double ascii = summary[SummaryPyramid.ASCII] / bytes;
+		double high = summary[SummaryPyramid.HIGH] / bytes;
+		double control = 1 - ascii - high - summary[SummaryPyramid.ZERO] / bytes;
+		return new Color(channel(high + control / 2), channel(ascii + control / 2), channel(control / 2));
+	}
+
+	private static int channel(double fraction) {
+		return (int) Math.max(0, Math.min(255, Math.round(255 * fraction)));
+	}
+
+	@Override
+	public String getToolTipText(MouseEvent e) {
+		int leaves = pyramid.getLeafCount();
+		if (getHeight() == 0 || leaves == 0) {
+			return null;
+		}
+		int leaf = (int) Math.min(leaves - 1, (long) e.getY() * leaves / getHeight());
+		double[] summary = new double[SummaryPyramid.FIELDS];
+		pyramid.sum(leaf, leaf + 1, summary);
+		long offset = leaf * leafSize;
+		if (summary[SummaryPyramid.LEAVES] == 0) {
+			return String.format("0x%x: not summarized yet", offset);
+		}
+		double bytes = summary[SummaryPyramid.BYTES];
+		return String.format("0x%x: entropy %.2f, %.0f%% zero, %.0f%% ASCII, %.0f%% high", offset,
+				summary[SummaryPyramid.ENTROPY] / bytes, 100 * summary[SummaryPyramid.ZERO] / bytes,
+				100 * summary[SummaryPyramid.ASCII] / bytes, 100 * summary[SummaryPyramid.HIGH] / bytes);
+	}
+
+	/**
+	 * Summarizes the leaves with decreasing stride: first every
+	 * {@code n}-th leaf, then the leaves halfway between those, and so on.
+	 */
+	private class Summarizer extends RecursiveAction {
+		final BackgroundTask task = new BackgroundTask(data.getLength());
+
+		@Override
+		protected void compute() {
+			try {
+				int leaves = pyramid.getLeafCount();
+				int stride = Integer.highestOneBit(Math.max(1, leaves - 1));
+				int[] batch = new int[BATCH_LEAVES];
+				int count = 0;
+				for (int leaf = 0; leaf < leaves; leaf += stride) {
+					batch[count++] = leaf;
+					count = flushIfFull(batch, count);
+				}
+				for (; stride > 1; stride /= 2) {
+					for (int leaf = stride / 2; leaf < leaves; leaf += stride) {
+						batch[count++] = leaf;
+						count = flushIfFull(batch, count);
+					}
+				}
+				summarize(batch, count);
+			} catch (RuntimeException e) {
+				task.fail(e);
+			} finally {
+				task.finish();
+				repaint();
+			}
+		}
+
+		private int flushIfFull(int[] batch, int count) {
+			if (count < batch.length) {
+				return count;
+			}
+			summarize(batch, count);
+			return 0;
+		}
+
+		private void summarize(int[] batch, int count) {
+			if (task.isCancelled()) {
+				return;
+			}
+			invokeAll(new LeafTask(batch, 0, count));
+			repaint();
+		}
+	}
+
+	/**
+	 * Summarizes some leaves of a batch in parallel.
+	 */
+	private class LeafTask extends RecursiveAction {
+		private final int[] batch;
+		private final int from;
+		private final int to;
+
+		LeafTask(int[] batch, int from, int to) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new LeafTask(batch, from, middle), new LeafTask(batch, middle, to));
+				return;
+			}
+			if (to == from || summarizer.task.isCancelled()) {
+				return;
+			}
+			int leaf = batch[from];
+			long offset = leaf * leafSize;
+			int length = (int) Math.min(leafSize, data.getLength() - offset);
+			byte[] buffer = new byte[length];
+			int read = Math.max(0, data.get(ByteBuffer.wrap(buffer), offset));
+			pyramid.add(leaf, summarize(buffer, read));
+			summarizer.task.addProgress(length);
+		}
+	}
+
+	/**
+	 * Returns the {@link SummaryPyramid#FIELDS} values of a single leaf.
+	 */
+	static double[] summarize(byte[] buffer, int length) {
+		int[] histogram = new int[256];
+		for (int i = 0; i < length; i++) {
+			histogram[buffer[i] & 0xFF]++;
+		}
+		double entropy = 0;
+		long ascii = histogram['\t'] + histogram['\n'] + histogram['\r'];
+		long high = 0;
+		for (int b = 0; b < 256; b++) {
+			if (histogram[b] != 0) {
+				double p = (double) histogram[b] / length;
+				entropy -= p * Math.log(p);
+			}
+			if (b >= 0x20 && b < 0x7F) {
+				ascii += histogram[b];
+			} else if (b >= 0x80) {
+				high += histogram[b];
+			}
+		}
+		double[] summary = new double[SummaryPyramid.FIELDS];
+		summary[SummaryPyramid.LEAVES] = 1;
+		summary[SummaryPyramid.BYTES] = length;
+		// bits per byte, scaled to 0..1
+		summary[SummaryPyramid.ENTROPY] = entropy / LOG_2 / 8 * length;
+		summary[SummaryPyramid.ZERO] = histogram[0];
+		summary[SummaryPyramid.ASCII] = ascii;
+		summary[SummaryPyramid.HIGH] = high;
+		return summary;
+	}
+
+}
@@ -2,6 +2,7 @@ package com.github.musikk.hex;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 import com.github.musikk.hex.HexPanel.Metrics;
 
@@ -15,13 +16,23 @@ import com.github.musikk.hex.HexPanel.Metrics;
  */
 public abstract class RangeMarker extends AbstractMarker {
 
-	private long byteStart = -1;
-	private long byteEnd = -1;
-	private int priority;
+	/*
+	 * Markers may be changed by background tasks while the panel paints them.
+	 */
+	private volatile long byteStart = -1;
+	private volatile long byteEnd = -1;
+	private volatile int priority;
 	private final Color color;
 	private final Color backgroundColor;
 	private boolean singleByte;
 
+	/**
+	 * The range at the time listeners were notified the last time. Used to
+	 * determine the {@linkplain #getChangedArea(Metrics) changed area}.
+	 */
+	private volatile long notifiedStart = -1;
+	private volatile long notifiedEnd = -1;
+
 	/**
 	 * Creates a {@code RangeMarker} with the specified {@code color}. The
 	 * background color is unspecified.
@@ -126,6 +137,22 @@ public abstract class RangeMarker extends AbstractMarker {
 	public int getPriority() {
 		return priority;
 	}
+
+	/**
+	 * Sets the priority of this marker. Markers with a higher priority are
+	 * painted on top of markers with a lower priority. Markers with the same
+	 * priority are painted in the order in which they were added.
+	 *
+	 * @param priority
+	 *            the new priority
+	 */
+	public void setPriority(int priority) {
+		if (priority == this.priority) {
+			return;
+		}
+		this.priority = priority;
+		fireEvent();
+	}
 	public Color getColor() {
 		return color;
 	}
@@ -191,4 +218,73 @@ public abstract class RangeMarker extends AbstractMarker {
 
 	protected abstract void paintRangeMarker(Graphics2D g2, Metrics metrics);
 
+	@Override
+	protected void eventFired() {
+		notifiedStart = byteStart;
+		notifiedEnd = byteEnd;
+	}
+
+	@Override
+	public Rectangle getChangedArea(Metrics metrics) {
+		Rectangle before = getArea(metrics, notifiedStart, notifiedEnd);
+		Rectangle after = getArea(metrics, byteStart, byteEnd);
+		if (before.isEmpty()) {
+			return after;
+		}
+		if (after.isEmpty()) {
+			return before;
+		}
+		return before.union(after);
+	}
+
+	/**
+	 * Returns the area that this marker covers if it marks the range from
+	 * {@code start} to {@code end}. The area covers the hex characters of the
+	 * range including the line gap around them. Subclasses that paint outside
+	 * of this area have to override this method.
+	 *
+	 * @param metrics
+	 *            {@code Metrics} that help determining the area
+	 * @param start
+	 *            the start of the range
+	 * @param end
+	 *            the end of the range
+	 * @return the area, an empty rectangle if the range is invalid or not
+	 *         visible
+	 */
+	protected Rectangle getArea(Metrics metrics, long start, long end) {
+		if (start == -1 && end == -1) {
+			return new Rectangle();
+		}
+		if (start > end) {
+			long h = start;
+			start = end;
+			end = h;
+		}
+		long first = metrics.getOffset();
+		long last = first + (long) metrics.getLines() * metrics.getLineLength() - 1;
+		if (end < first || start > last) {
+			return new Rectangle();
+		}
+		long visibleStart = Math.max(start, first);
+		long visibleEnd = Math.min(end, last);
+		int startRow = metrics.rowOf(visibleStart);
+		int endRow = metrics.rowOf(visibleEnd);
+
+		int rowHeight = metrics.getRowHeight();
+		int y = startRow * rowHeight;
+		int height = (endRow - startRow + 1) * rowHeight + rowHeight / 2;
+		int x;
+		int width;
+		if (startRow == endRow) {
+			x = metrics.getColumnX(metrics.columnOf(visibleStart));
+			width = metrics.getColumnX(metrics.columnOf(visibleEnd)) + 2 * metrics.getCharWidth() - x;
+		} else {
+			x = metrics.getHexX();
+			width = metrics.getHexWidth();
+		}
+		// leave room for strokes that are centered on the edges
+		return new Rectangle(x - 2, y, width + 4, height);
+	}
+
 }
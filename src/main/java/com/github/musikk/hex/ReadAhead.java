@@ -0,0 +1,168 @@
+package com.github.musikk.hex;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads data into a {@link CachingDataProvider} in the background before it is
+ * displayed. The scroll direction and speed are derived from consecutive
+ * {@linkplain #scrolled(long, int) scroll notifications}; the faster the user
+ * scrolls, the more viewports are read ahead.
+ * <p>
+ * Requests are coalesced: if the user scrolls while a read is still in
+ * progress, only the most recent request is served afterwards.
+ */
+public class ReadAhead {
+
+	/**
+	 * The number of viewports that are read ahead when scrolling slowly.
+	 */
+	private static final int MIN_VIEWPORTS = 2;
+	/**
+	 * The number of viewports that are read ahead at most.
+	 */
+	private static final int MAX_VIEWPORTS = 32;
+	/**
+	 * Scroll notifications that are further apart than this are not
+	 * considered to be part of the same scroll movement.
+	 */
+	private static final long SCROLL_TIMEOUT_NANOS = 500L * 1000 * 1000;
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+			new DaemonThreadFactory("hex-read-ahead", Thread.MIN_PRIORITY));
+
+	private final CachingDataProvider data;
+
+	/**
+	 * The most recent range that is to be read. Replaced whenever a new scroll
+	 * notification arrives.
+	 */
+	private final AtomicReference<Range> pending = new AtomicReference<>();
+	/**
+	 * Whether a task is currently submitted that drains {@link #pending}.
+	 */
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile boolean shutdown;
+
+	private long lastOffset = -1;
+	private long lastNanos;
+	/**
+	 * Scroll speed in viewports per second, smoothed over consecutive
+	 * notifications.
+	 */
+	private double speed;
+
+	public ReadAhead(CachingDataProvider data) {
+		this.data = data;
+	}
+
+	/**
+	 * Notifies this {@code ReadAhead} that the visible data has changed.
+	 *
+	 * @param offset
+	 *            the new offset of the visible data
+	 * @param viewportSize
+	 *            the number of visible bytes
+	 */
+	public void scrolled(long offset, int viewportSize) {
+		long now = System.nanoTime();
+		long delta = offset - lastOffset;
+		long elapsed = now - lastNanos;
+		boolean continued = lastOffset != -1 && elapsed < SCROLL_TIMEOUT_NANOS;
+		lastOffset = offset;
+		lastNanos = now;
+		if (!continued || delta == 0 || viewportSize <= 0) {
+			speed = 0;
+			return;
+		}
+
+		double currentSpeed = Math.abs((double) delta / viewportSize) / (Math.max(elapsed, 1) / 1e9);
+		speed = speed == 0 ? currentSpeed : (speed + currentSpeed) / 2;
+
+		// read as far ahead as the user will scroll in the next second
+		int viewports = (int) Math.max(MIN_VIEWPORTS, Math.min(MAX_VIEWPORTS, Math.ceil(speed)));
+		// never read so much that the visible data is evicted
+		long maxBytes = (long) data.getMaxPages() * data.getPageSize() / 2;
+		long bytes = Math.min(maxBytes, (long) viewports * viewportSize);
+
+		long start;
+		if (delta > 0) {
+			start = offset + viewportSize;
+		} else {
+			start = offset - bytes;
+		}
+		long end = Math.min(start + bytes, data.getLength());
+		start = Math.max(0, start);
+		if (start >= end) {
+			return;
+		}
+		request(new Range(start, end, delta > 0));
+	}
+
+	private void request(Range range) {
+		if (shutdown) {
+			return;
+		}
+		pending.set(range);
+		if (running.compareAndSet(false, true)) {
+			EXECUTOR.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						drain();
+					} finally {
+						running.set(false);
+					}
+					if (pending.get() != null && !shutdown) {
+						// arrived after draining but before resetting the flag
+						request(pending.get());
+					}
+				}
+			});
+		}
+	}
+
+	private void drain() {
+		Range range;
+		while ((range = pending.getAndSet(null)) != null && !shutdown) {
+			long pageSize = data.getPageSize();
+			long firstPage = range.start / pageSize;
+			long lastPage = (range.end - 1) / pageSize;
+			/*
+			 * Read in the direction of the scroll movement so the data that is
+			 * needed first is available first.
+			 */
+			for (long i = 0; i <= lastPage - firstPage; i++) {
+				if (pending.get() != null || shutdown) {
+					// newer request, the current one is outdated
+					break;
+				}
+				long page = range.forward ? firstPage + i : lastPage - i;
+				data.prefetch(page * pageSize);
+			}
+		}
+	}
+
+	/**
+	 * Stops reading ahead. Reads that are in progress are finished but no new
+	 * ones are started.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		pending.set(null);
+	}
+
+	private static class Range {
+		final long start;
+		final long end;
+		final boolean forward;
+		Range(long start, long end, boolean forward) {
+			this.start = start;
+			this.end = end;
+			this.forward = forward;
+		}
+	}
+
+}
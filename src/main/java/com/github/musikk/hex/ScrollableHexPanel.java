@@ -6,9 +6,15 @@ import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import com.github.musikk.hex.HexPanel.Metrics;
 
@@ -36,18 +42,56 @@ public class ScrollableHexPanel extends JPanel {
 	 */
 	private RangeMarker selectionMarker;
 
+	/**
+	 * Markers that highlight search results and the like.
+	 */
+	private final List<RangeMarker> highlights = new ArrayList<>();
+
 	/**
 	 * The scroll bar that is used to scroll through the data.
 	 */
 	private final JScrollBar scrollbar;
 
+	/**
+	 * Shows an overview of all data next to the scroll bar.
+	 */
+	private final OverviewBar overviewBar;
+
 	/**
 	 * The listener that gets notified when the scrollbar's value changes, i.e.,
 	 * the user scrolls using the scrollbar.
 	 */
 	private AdjustmentListener scrollbarAdjustListener;
 
+	/**
+	 * Reads data ahead of the scroll movement. May be {@code null}.
+	 */
+	private ReadAhead readAhead;
+
+	/**
+	 * Notified when the offset of the panel changes.
+	 */
+	private final List<ChangeListener> scrollListeners = new CopyOnWriteArrayList<>();
+	/**
+	 * The offset at the time the scroll listeners were notified the last time.
+	 */
+	private long notifiedOffset;
+
 	public ScrollableHexPanel(final DataProvider data) {
+		this(data, data);
+	}
+
+	/**
+	 * Creates a panel whose {@link OverviewBar} reads another
+	 * {@code DataProvider} than the panel itself. The bar reads all of the
+	 * data once, which would only evict the pages of a cache.
+	 *
+	 * @param data
+	 *            the data to show
+	 * @param overviewData
+	 *            the same data, for the overview bar
+	 */
+	public ScrollableHexPanel(final DataProvider data, DataProvider overviewData) {
 		this.setLayout(new BorderLayout());
 
 		hexPanel = new HexPanel(data);
@@ -73,6 +117,7 @@ public class ScrollableHexPanel extends JPanel {
 				int newMax = (int) Math.min(MAX_TICKS, metrics.getLinesTotal() - metrics.getLines());
 				scrollbar.setMaximum(newMax);
 				scrollbar.setVisibleAmount(newMax == MAX_TICKS ? 1 : (int) (newMax - (metrics.getLinesTotal() - metrics.getLines() - 1)));
+				overviewBar.repaint();
 			}
 		});
 
@@ -90,7 +135,12 @@ public class ScrollableHexPanel extends JPanel {
 			}
 		});
 
-		this.add(scrollbar, BorderLayout.EAST);
+		overviewBar = new OverviewBar(this, overviewData);
+
+		JPanel east = new JPanel(new BorderLayout());
+		east.add(overviewBar, BorderLayout.WEST);
+		east.add(scrollbar, BorderLayout.EAST);
+		this.add(east, BorderLayout.EAST);
 	}
 
 	private void scrollLines(int scrollLines) {
@@ -103,7 +153,46 @@ public class ScrollableHexPanel extends JPanel {
 		} else {
 			newLine = Math.max(newLine, 0);
 		}
+		scrollToLine(newLine);
+	}
+
+	/**
+	 * Scrolls so that the byte at {@code index} is visible. If it is not
+	 * visible already, its line is moved to the middle of the panel.
+	 *
+	 * @param index
+	 *            the index of the byte to show
+	 */
+	public void showIndex(long index) {
+		HexPanel.Metrics metrics = hexPanel.getMetrics();
+		if (metrics.getLineLength() == 0 || metrics.isVisible(index)) {
+			return;
+		}
+		long line = index / metrics.getLineLength() - metrics.getLines() / 2;
+		line = Math.min(line, metrics.getLinesTotal() - metrics.getLines());
+		scrollToLine(Math.max(line, 0));
+	}
+
+	/**
+	 * Scrolls so that the line of the byte at {@code offset} is the first
+	 * visible line, or as close to it as possible.
+	 *
+	 * @param offset
+	 *            the index of the byte to show at the top
+	 */
+	public void scrollToOffset(long offset) {
+		HexPanel.Metrics metrics = hexPanel.getMetrics();
+		if (metrics.getLineLength() == 0) {
+			return;
+		}
+		long line = Math.min(offset / metrics.getLineLength(), metrics.getLinesTotal() - metrics.getLines());
+		scrollToLine(Math.max(line, 0));
+	}
+
+	private void scrollToLine(long newLine) {
+		HexPanel.Metrics metrics = hexPanel.getMetrics();
 		hexPanel.setLineOffset(newLine);
+		scrolled();
 
 		float fraction = ((float) newLine) / (metrics.getLinesTotal() - metrics.getLines());
 
@@ -121,6 +210,60 @@ public class ScrollableHexPanel extends JPanel {
 		scrollbar.addAdjustmentListener(scrollbarAdjustListener);
 	}
 
+	/**
+	 * Tells the parts that follow the visible data that the panel scrolled.
+	 */
+	private void scrolled() {
+		notifyReadAhead();
+		overviewBar.repaint();
+		long offset = hexPanel.getMetrics().getOffset();
+		if (offset != notifiedOffset) {
+			notifiedOffset = offset;
+			ChangeEvent e = new ChangeEvent(this);
+			for (ChangeListener l : scrollListeners) {
+				l.stateChanged(e);
+			}
+		}
+	}
+
+	/**
+	 * Adds a listener that is notified whenever the panel scrolled to another
+	 * offset.
+	 *
+	 * @param l
+	 *            the listener
+	 */
+	public void addScrollListener(ChangeListener l) {
+		scrollListeners.add(l);
+	}
+
+	public void removeScrollListener(ChangeListener l) {
+		scrollListeners.remove(l);
+	}
+
+	private void notifyReadAhead() {
+		if (readAhead == null) {
+			return;
+		}
+		HexPanel.Metrics metrics = hexPanel.getMetrics();
+		readAhead.scrolled(metrics.getOffset(), metrics.getLines() * metrics.getLineLength());
+	}
+
+	/**
+	 * Sets the {@link ReadAhead} that is notified whenever the user scrolls.
+	 * The previous one (if any) is shut down.
+	 *
+	 * @param readAhead
+	 *            the new {@code ReadAhead} or {@code null} to disable reading
+	 *            ahead
+	 */
+	public void setReadAhead(ReadAhead readAhead) {
+		if (this.readAhead != null) {
+			this.readAhead.shutdown();
+		}
+		this.readAhead = readAhead;
+	}
+
 	/**
 	 * Removes the old hover marker (if any) and sets the new marker (if any).
 	 * The new marker is set to {@linkplain RangeMarker#setSingleByte(boolean)
@@ -145,6 +288,35 @@ public class ScrollableHexPanel extends JPanel {
 		selectionMarker = marker;
 	}
 
+	public RangeMarker getSelectionMarker() {
+		return selectionMarker;
+	}
+
+	/**
+	 * Adds markers that highlight parts of the data, like search results. The
+	 * markers are added in a single batch.
+	 *
+	 * @param markers
+	 *            the markers to add
+	 */
+	public void addHighlights(Collection<? extends RangeMarker> markers) {
+		highlights.addAll(markers);
+		hexPanel.addMarkers(markers);
+	}
+
+	/**
+	 * Removes all markers that were added by
+	 * {@link #addHighlights(Collection)}.
+	 */
+	public void clearHighlights() {
+		hexPanel.removeMarkers(highlights);
+		highlights.clear();
+	}
+
+	public int getHighlightCount() {
+		return highlights.size();
+	}
+
 	private void replaceMarker(RangeMarker oldMarker, RangeMarker newMarker) {
 		if (oldMarker != null) {
 			oldMarker.invalidate();
@@ -160,6 +332,10 @@ public class ScrollableHexPanel extends JPanel {
 		return hexPanel;
 	}
 
+	public OverviewBar getOverviewBar() {
+		return overviewBar;
+	}
+
 	private class ScrollbarAdjustListener implements AdjustmentListener {
 		@Override
 		public void adjustmentValueChanged(AdjustmentEvent e) {
@@ -168,6 +344,7 @@ public class ScrollableHexPanel extends JPanel {
 
 			long newLine = (long) ((metrics.getLinesTotal() - metrics.getLines()) * (((float) adj.getValue()) / adj.getMaximum()));
 			hexPanel.setLineOffset(newLine);
+			scrolled();
 		}
 	}
 
@@ -178,7 +355,6 @@ public class ScrollableHexPanel extends JPanel {
 				return;
 			}
 			hoverMarker.setByteStart(e.position.index);
-			hexPanel.repaint();
 		}
 	}
 
@@ -0,0 +1,53 @@
+package com.github.musikk.hex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A search started by a {@link SearchEngine}.
+ */
+public class Search extends BackgroundTask {
+
+	private final int maxMatches;
+	private final AtomicInteger matches = new AtomicInteger();
+	private volatile boolean truncated;
+
+	Search(long total, int maxMatches) {
+		super(total);
+		this.maxMatches = maxMatches;
+	}
+
+	/**
+	 * Returns the number of matches that have been reported so far.
+	 *
+	 * @return the number of matches
+	 */
+	public int getMatchCount() {
+		return Math.min(matches.get(), maxMatches);
+	}
+
+	/**
+	 * Returns whether the search stopped because it found the maximum number
+	 * of matches.
+	 *
+	 * @return whether there may be more matches
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Counts a match.
+	 *
+	 * @return whether the match may be reported; if not, the search is
+	 *         cancelled
+	 */
+	boolean addMatch() {
+		if (matches.incrementAndGet() > maxMatches) {
+			truncated = true;
+			cancel();
+			return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,332 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs searches for the tabs of a {@link HexWindow} and shows their results.
+ * Only one search runs at a time; starting a new search cancels the previous
+ * one. All methods must be called on the event dispatch thread.
+ */
+class SearchController {
+
+	/**
+	 * The number of matches after which a search for all matches stops. Each
+	 * match becomes a marker.
+	 */
+	static final int MAX_MARKED_MATCHES = 10000;
+
+	/**
+	 * The number of hits after which a signature scan stops.
+	 */
+	static final int MAX_SIGNATURE_HITS = 100000;
+
+	private static final Color HIGHLIGHT_COLOR = new Color(255, 200, 0, 128);
+
+	private final Component parent;
+	/**
+	 * Shows the outcome of the last search.
+	 */
+	private final JLabel messageLabel;
+
+	private Search running;
+	private ScrollableHexPanel runningPanel;
+
+	SearchController(Component parent, JLabel messageLabel) {
+		this.parent = parent;
+		this.messageLabel = messageLabel;
+	}
+
+	/**
+	 * Finds the next match after the selection or, if there is no selection,
+	 * after the start of the visible data. If there is no match until the end
+	 * of the data, the search continues at the start. The match is selected.
+	 *
+	 * @param panel
+	 *            the panel that displays {@code data}
+	 * @param data
+	 *            the data to search
+	 * @param index
+	 *            the index of {@code data} or {@code null}
+	 * @param matcher
+	 *            the matcher to search with
+	 */
+	void findNext(ScrollableHexPanel panel, DataProvider data, NGramIndex index, ByteMatcher matcher) {
+		RangeMarker selection = panel.getSelectionMarker();
+		long from;
+		if (selection != null && !selection.isInvalid()) {
+			from = Math.min(selection.getByteStart(), selection.getByteEnd()) + 1;
+		} else {
+			from = panel.getHexPanel().getMetrics().getOffset();
+		}
+		from = Math.min(from, data.getLength());
+		findNext(panel, data, index, matcher, from, data.getLength(), false);
+	}
+
+	private void findNext(final ScrollableHexPanel panel, final DataProvider data, final NGramIndex index,
+			final ByteMatcher matcher, final long from, long to, final boolean wrapped) {
+		// assigned before the match is shown, both happen on the event dispatch thread
+		final Search[] current = new Search[1];
+		SearchListener listener = new SearchListener() {
+			@Override
+			public void matchesFound(List<Match> matches) {
+				final Match match = matches.get(0);
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						// drop the match of a search that was cancelled or replaced
+						if (running != current[0] || current[0].isCancelled()) {
+							return;
+						}
+						RangeMarker selection = panel.getSelectionMarker();
+						if (selection != null) {
+							selection.setByteStartEnd(match.offset, match.getEnd());
+						}
+						panel.showIndex(match.offset);
+						messageLabel.setText(String.format("Found at %d (0x%x)%s", match.offset, match.offset,
+								wrapped ? ", search wrapped" : ""));
+					}
+				});
+			}
+			@Override
+			public void searchFinished(final Search search) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (!finished(search) || search.getMatchCount() > 0) {
+							return;
+						}
+						if (!wrapped && from > 0) {
+							// matches starting before the original start are still missing
+							long to = Math.min(data.getLength(), from - 1 + matcher.getMaxLength());
+							findNext(panel, data, index, matcher, 0, to, true);
+						} else {
+							messageLabel.setText("Not found: " + matcher);
+						}
+					}
+				});
+			}
+		};
+		SearchEngine engine = new SearchEngine(data);
+		byte[] pattern = indexedPattern(index, matcher);
+		if (pattern != null) {
+			current[0] = engine.findNext(matcher, index.findRanges(pattern, from, to), listener);
+			start(panel, "Searching for " + matcher + " (indexed)", current[0]);
+		} else {
+			current[0] = engine.findNext(matcher, from, to, listener);
+			start(panel, "Searching for " + matcher, current[0]);
+		}
+	}
+
+	/**
+	 * Finds all matches and highlights them. Previous highlights are removed.
+	 * Matches are highlighted as they are found. At most
+	 * {@link #MAX_MARKED_MATCHES} matches are highlighted.
+	 *
+	 * @param panel
+	 *            the panel that displays {@code data}
+	 * @param data
+	 *            the data to search
+	 * @param index
+	 *            the index of {@code data} or {@code null}
+	 * @param matcher
+	 *            the matcher to search with
+	 */
+	void findAll(final ScrollableHexPanel panel, DataProvider data, NGramIndex index, ByteMatcher matcher) {
+		panel.clearHighlights();
+		byte[] pattern = indexedPattern(index, matcher);
+		long[] ranges = pattern == null ? null : index.findRanges(pattern, 0, data.getLength());
+		String message = "Searching for " + matcher + (ranges == null ? "" : " (indexed)");
+		findAll(panel, data, matcher, ranges, MAX_MARKED_MATCHES, message, new MatchReceiver() {
+			@Override
+			public void matchesFound(List<Match> matches) {
+				List<RangeMarker> markers = new ArrayList<>(matches.size());
+				for (Match match : matches) {
+					markers.add(new HighlightMarker(HIGHLIGHT_COLOR, match.offset, match.getEnd()));
+				}
+				panel.addHighlights(markers);
+			}
+			@Override
+			public void searchFinished(Search search) {
+				messageLabel.setText(String.format("%d matches%s", search.getMatchCount(),
+						search.isTruncated() ? " (stopped, too many matches)" : ""));
+			}
+		});
+	}
+
+	/**
+	 * Scans for all signatures of a table in a single pass. The hits are
+	 * shown in {@code results}. At most {@link #MAX_SIGNATURE_HITS} hits are
+	 * reported.
+	 *
+	 * @param panel
+	 *            the panel that displays {@code data}
+	 * @param data
+	 *            the data to scan
+	 * @param signatures
+	 *            the signatures to look for
+	 * @param results
+	 *            shows the hits
+	 */
+	void scanSignatures(ScrollableHexPanel panel, DataProvider data, SignatureTable signatures,
+			final SignaturePanel results) {
+		results.start(panel, signatures);
+		findAll(panel, data, signatures.getMatcher(), null, MAX_SIGNATURE_HITS,
+				"Scanning for " + signatures.size() + " signatures", new MatchReceiver() {
+			@Override
+			public void matchesFound(List<Match> matches) {
+				results.addHits(matches);
+			}
+			@Override
+			public void searchFinished(Search search) {
+				results.finish(search.isTruncated());
+				messageLabel.setText(String.format("%d signature hits%s", search.getMatchCount(),
+						search.isTruncated() ? " (stopped, too many hits)" : ""));
+			}
+		});
+	}
+
+	/**
+	 * Returns the pattern of {@code matcher} if {@code index} can narrow down
+	 * the search for it.
+	 *
+	 * @return the pattern or {@code null} if the whole range has to be
+	 *         searched
+	 */
+	private static byte[] indexedPattern(NGramIndex index, ByteMatcher matcher) {
+		if (index == null || !(matcher instanceof BytePattern)) {
+			return null;
+		}
+		byte[] pattern = ((BytePattern) matcher).getBytes();
+		return pattern.length >= 3 && pattern.length <= index.getBlockSize() ? pattern : null;
+	}
+
+	/**
+	 * Runs {@link SearchEngine#findAll(ByteMatcher, long, long, int, SearchListener)
+	 * findAll} over all data, or over {@code ranges} if they are not
+	 * {@code null}, and passes the matches to {@code receiver} on the event
+	 * dispatch thread. Matches that arrive while the receiver is busy are
+	 * passed on together. Matches of a search that has been cancelled or
+	 * replaced are dropped.
+	 */
+	private void findAll(ScrollableHexPanel panel, DataProvider data, ByteMatcher matcher, long[] ranges,
+			int maxMatches, String message, final MatchReceiver receiver) {
+		final Queue<Match> found = new ConcurrentLinkedQueue<>();
+		final AtomicBoolean flushScheduled = new AtomicBoolean();
+		// assigned before any flush runs, both happen on the event dispatch thread
+		final Search[] current = new Search[1];
+		final Runnable flush = new Runnable() {
+			@Override
+			public void run() {
+				flushScheduled.set(false);
+				List<Match> matches = new ArrayList<>();
+				Match match;
+				while ((match = found.poll()) != null) {
+					matches.add(match);
+				}
+				if (matches.isEmpty() || running != current[0]
+						|| current[0].isCancelled() && !current[0].isTruncated()) {
+					return;
+				}
+				receiver.matchesFound(matches);
+			}
+		};
+		SearchListener listener = new SearchListener() {
+			@Override
+			public void matchesFound(List<Match> matches) {
+				found.addAll(matches);
+				// one flush for all matches that arrive until it runs
+				if (flushScheduled.compareAndSet(false, true)) {
+					SwingUtilities.invokeLater(flush);
+				}
+			}
+			@Override
+			public void searchFinished(final Search search) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						flush.run();
+						if (finished(search)) {
+							receiver.searchFinished(search);
+						}
+					}
+				});
+			}
+		};
+		SearchEngine engine = new SearchEngine(data);
+		current[0] = ranges == null
+				? engine.findAll(matcher, 0, data.getLength(), maxMatches, listener)
+				: engine.findAll(matcher, ranges, maxMatches, listener);
+		start(panel, message, current[0]);
+	}
+
+	/**
+	 * Cancels the running search if it searches the data of {@code panel}.
+	 *
+	 * @param panel
+	 *            the panel whose search is cancelled
+	 */
+	void cancel(ScrollableHexPanel panel) {
+		if (running != null && runningPanel == panel) {
+			running.cancel();
+		}
+	}
+
+	private void start(ScrollableHexPanel panel, String message, Search search) {
+		if (running != null) {
+			running.cancel();
+		}
+		running = search;
+		runningPanel = panel;
+		messageLabel.setText(message);
+		TaskMonitor.monitor(parent, message, search);
+	}
+
+	/**
+	 * Handles the end of a search.
+	 *
+	 * @return whether the search completed; if not, the reason has been
+	 *         reported
+	 */
+	private boolean finished(Search search) {
+		if (running != search) {
+			// replaced by a newer search
+			return false;
+		}
+		running = null;
+		runningPanel = null;
+		if (search.getError() != null) {
+			messageLabel.setText("Search failed");
+			JOptionPane.showMessageDialog(parent, search.getError().getMessage(), "Search failed",
+					JOptionPane.ERROR_MESSAGE);
+			return false;
+		}
+		if (search.isCancelled() && !search.isTruncated()) {
+			messageLabel.setText("Search cancelled");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Receives the matches of a search on the event dispatch thread.
+	 */
+	private interface MatchReceiver {
+		void matchesFound(List<Match> matches);
+		/**
+		 * Called if the search completed or stopped after the maximum number
+		 * of matches.
+		 */
+		void searchFinished(Search search);
+	}
+
+}
@@ -0,0 +1,369 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.musikk.hex.ByteMatcher.MatchListener;
+
+/**
+ * Searches the data of a {@link DataProvider} with a {@link ByteMatcher}. The
+ * data is split into chunks that are read and searched in parallel on
+ * {@link BackgroundTask#POOL}. Consecutive chunks overlap by the maximum match
+ * length so matches that cross chunk boundaries are found.
+ * <p>
+ * Searches run in the background; the methods return immediately and the
+ * results are passed to a {@link SearchListener}.
+ */
+public class SearchEngine {
+
+	/**
+	 * The number of bytes that are searched by a single task. Large enough
+	 * that reads are efficient, small enough that all threads get work.
+	 */
+	static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * The read buffer of each thread. Grown on demand.
+	 */
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
+
+	private final DataProvider data;
+
+	public SearchEngine(DataProvider data) {
+		this.data = data;
+	}
+
+	/**
+	 * Finds all matches in the range from {@code from} (inclusive) to
+	 * {@code to} (exclusive). Matches have to lie completely within the range.
+	 *
+	 * @param matcher
+	 *            the matcher to search with
+	 * @param from
+	 *            the start of the range
+	 * @param to
+	 *            the end of the range
+	 * @param maxMatches
+	 *            the number of matches after which the search stops
+	 * @param listener
+	 *            receives the matches
+	 * @return the running search
+	 * @throws IllegalArgumentException
+	 *             if the range is not within the data
+	 */
+	public Search findAll(ByteMatcher matcher, long from, long to, int maxMatches, SearchListener listener) {
+		checkRange(from, to);
+		Search search = new Search(to - from, maxMatches);
+		start(search, listener, new FindAllTask(matcher, search, listener, from, to, to));
+		return search;
+	}
+
+	/**
+	 * Finds all matches in several ranges, like
+	 * {@link #findAll(ByteMatcher, long, long, int, SearchListener)} does for
+	 * a single range. This is used to search only the parts of the data that
+	 * an {@link NGramIndex} has not ruled out.
+	 *
+	 * @param matcher
+	 *            the matcher to search with
+	 * @param ranges
+	 *            the starts and ends of the ranges, alternating; the ranges
+	 *            must be sorted and must not overlap
+	 * @param maxMatches
+	 *            the number of matches after which the search stops
+	 * @param listener
+	 *            receives the matches
+	 * @return the running search
+	 * @throws IllegalArgumentException
+	 *             if a range is not within the data
+	 */
+	public Search findAll(final ByteMatcher matcher, final long[] ranges, int maxMatches,
+			final SearchListener listener) {
+		final Search search = new Search(checkRanges(ranges), maxMatches);
+		start(search, listener, new RecursiveAction() {
+			@Override
+			protected void compute() {
+				List<FindAllTask> tasks = new ArrayList<>(ranges.length / 2);
+				for (int i = 0; i < ranges.length; i += 2) {
+					tasks.add(new FindAllTask(matcher, search, listener, ranges[i], ranges[i + 1], ranges[i + 1]));
+				}
+				invokeAll(tasks);
+			}
+		});
+		return search;
+	}
+
+	/**
+	 * Finds the first match in the range from {@code from} (inclusive) to
+	 * {@code to} (exclusive). The range is searched in windows of a few chunks
+	 * per thread so the search stops soon after the first match is found.
+	 *
+	 * @param matcher
+	 *            the matcher to search with
+	 * @param from
+	 *            the start of the range
+	 * @param to
+	 *            the end of the range
+	 * @param listener
+	 *            receives the match, if any
+	 * @return the running search
+	 * @throws IllegalArgumentException
+	 *             if the range is not within the data
+	 */
+	public Search findNext(final ByteMatcher matcher, final long from, final long to, final SearchListener listener) {
+		checkRange(from, to);
+		final Search search = new Search(to - from, 1);
+		start(search, listener, new RecursiveAction() {
+			@Override
+			protected void compute() {
+				findFirst(matcher, search, from, to, listener);
+			}
+		});
+		return search;
+	}
+
+	/**
+	 * Finds the first match in several ranges, like
+	 * {@link #findNext(ByteMatcher, long, long, SearchListener)} does for a
+	 * single range. The ranges are searched in order.
+	 *
+	 * @param matcher
+	 *            the matcher to search with
+	 * @param ranges
+	 *            the starts and ends of the ranges, alternating; the ranges
+	 *            must be sorted and must not overlap
+	 * @param listener
+	 *            receives the match, if any
+	 * @return the running search
+	 * @throws IllegalArgumentException
+	 *             if a range is not within the data
+	 */
+	public Search findNext(final ByteMatcher matcher, final long[] ranges, final SearchListener listener) {
+		final Search search = new Search(checkRanges(ranges), 1);
+		start(search, listener, new RecursiveAction() {
+			@Override
+			protected void compute() {
+				for (int i = 0; i < ranges.length && !search.isCancelled(); i += 2) {
+					if (findFirst(matcher, search, ranges[i], ranges[i + 1], listener)) {
+						return;
+					}
+				}
+			}
+		});
+		return search;
+	}
+
+	/**
+	 * Searches a range in windows until a match is found.
+	 *
+	 * @return whether a match was found
+	 */
+	private boolean findFirst(ByteMatcher matcher, Search search, long from, long to, SearchListener listener) {
+		long window = 2L * CHUNK_SIZE * BackgroundTask.POOL.getParallelism();
+		AtomicReference<Match> first = new AtomicReference<>();
+		for (long start = from; start < to && !search.isCancelled(); start += window) {
+			new FindFirstTask(matcher, search, first, start, Math.min(to, start + window), to).invoke();
+			Match match = first.get();
+			if (match != null) {
+				search.addMatch();
+				listener.matchesFound(Collections.singletonList(match));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void checkRange(long from, long to) {
+		if (from < 0 || from > to || to > data.getLength()) {
+			throw new IllegalArgumentException(String.format("Invalid range %d-%d for data of length %d.",
+					from, to, data.getLength()));
+		}
+	}
+
+	/**
+	 * Checks a list of ranges.
+	 *
+	 * @return the number of bytes in the ranges
+	 */
+	private long checkRanges(long[] ranges) {
+		if (ranges.length % 2 != 0) {
+			throw new IllegalArgumentException("Ranges need a start and an end.");
+		}
+		long total = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			checkRange(ranges[i], ranges[i + 1]);
+			if (i > 0 && ranges[i] < ranges[i - 1]) {
+				throw new IllegalArgumentException("Ranges overlap or are not sorted.");
+			}
+			total += ranges[i + 1] - ranges[i];
+		}
+		return total;
+	}
+
+	private static void start(final Search search, final SearchListener listener, final RecursiveAction task) {
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					task.invoke();
+				} catch (RuntimeException e) {
+					search.fail(e);
+				} finally {
+					search.finish();
+					listener.searchFinished(search);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the data from {@code start} up to {@code end} plus the overlap for
+	 * matches that begin before {@code end}, but not beyond {@code rangeEnd}.
+	 *
+	 * @return the buffer that holds the data; the number of valid bytes is
+	 *         stored in {@code length[0]}
+	 */
+	private byte[] read(ByteMatcher matcher, long start, long end, long rangeEnd, int[] length) {
+		long readEnd = Math.min(rangeEnd, end + matcher.getMaxLength() - 1);
+		int size = (int) (readEnd - start);
+		byte[] buffer = BUFFERS.get();
+		if (buffer.length < size) {
+			buffer = new byte[size];
+			BUFFERS.set(buffer);
+		}
+		length[0] = Math.max(0, data.get(ByteBuffer.wrap(buffer, 0, size), start));
+		return buffer;
+	}
+
+	/**
+	 * Searches a range by splitting it into chunks of {@link #CHUNK_SIZE}.
+	 */
+	private abstract class ChunkTask extends RecursiveAction {
+		final ByteMatcher matcher;
+		final Search search;
+		final long start;
+		final long end;
+		/**
+		 * The end of the whole range, matches must not exceed it.
+		 */
+		final long rangeEnd;
+
+		ChunkTask(ByteMatcher matcher, Search search, long start, long end, long rangeEnd) {
+			this.matcher = matcher;
+			this.search = search;
+			this.start = start;
+			this.end = end;
+			this.rangeEnd = rangeEnd;
+		}
+
+		@Override
+		protected void compute() {
+			if (search.isCancelled()) {
+				return;
+			}
+			long chunks = (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			if (chunks > 1) {
+				long middle = start + chunks / 2 * CHUNK_SIZE;
+				invokeAll(split(start, middle), split(middle, end));
+				return;
+			}
+			int[] length = new int[1];
+			byte[] buffer = read(matcher, start, end, rangeEnd, length);
+			search(buffer, length[0]);
+			search.addProgress(end - start);
+		}
+
+		abstract ChunkTask split(long start, long end);
+
+		abstract void search(byte[] buffer, int length);
+	}
+
+	private class FindAllTask extends ChunkTask {
+		private final SearchListener listener;
+
+		FindAllTask(ByteMatcher matcher, Search search, SearchListener listener,
+				long start, long end, long rangeEnd) {
+			super(matcher, search, start, end, rangeEnd);
+			this.listener = listener;
+		}
+
+		@Override
+		ChunkTask split(long start, long end) {
+			return new FindAllTask(matcher, search, listener, start, end, rangeEnd);
+		}
+
+		@Override
+		void search(byte[] buffer, int length) {
+			final List<Match> matches = new ArrayList<>();
+			matcher.find(buffer, length, (int) (end - start), start, new MatchListener() {
+				@Override
+				public boolean matchFound(int pattern, long offset, int length) {
+					if (!search.addMatch()) {
+						return false;
+					}
+					matches.add(new Match(pattern, offset, length));
+					return !search.isCancelled();
+				}
+			});
+			if (!matches.isEmpty()) {
+				listener.matchesFound(matches);
+			}
+		}
+	}
+
+	private class FindFirstTask extends ChunkTask {
+		/**
+		 * The earliest match found so far by any chunk.
+		 */
+		private final AtomicReference<Match> first;
+
+		FindFirstTask(ByteMatcher matcher, Search search, AtomicReference<Match> first,
+				long start, long end, long rangeEnd) {
+			super(matcher, search, start, end, rangeEnd);
+			this.first = first;
+		}
+
+		@Override
+		ChunkTask split(long start, long end) {
+			return new FindFirstTask(matcher, search, first, start, end, rangeEnd);
+		}
+
+		@Override
+		void search(byte[] buffer, int length) {
+			Match found = first.get();
+			if (found != null && found.offset < start) {
+				// an earlier chunk already has a match
+				return;
+			}
+			matcher.find(buffer, length, (int) (end - start), start, new MatchListener() {
+				@Override
+				public boolean matchFound(int pattern, long offset, int length) {
+					Match match = new Match(pattern, offset, length);
+					Match current;
+					do {
+						current = first.get();
+						if (current != null && current.offset <= offset) {
+							break;
+						}
+					} while (!first.compareAndSet(current, match));
+					/*
+					 * Matches are reported by their end. Once the end is a
+					 * maximum match length past the earliest start, no
+					 * later match can start before it.
+					 */
+					return offset + length - matcher.getMaxLength() <= first.get().offset;
+				}
+			});
+		}
+	}
+
+}
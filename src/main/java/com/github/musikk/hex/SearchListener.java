@@ -0,0 +1,28 @@
+package com.github.musikk.hex;
+
+import java.util.List;
+
+/**
+ * Receives the results of a {@link Search}. The methods are called on the
+ * threads that perform the search.
+ */
+public interface SearchListener {
+
+	/**
+	 * Called whenever matches are found. Matches of different chunks may be
+	 * reported concurrently and out of order.
+	 *
+	 * @param matches
+	 *            the matches in ascending order of their position
+	 */
+	void matchesFound(List<Match> matches);
+
+	/**
+	 * Called once after the search has stopped.
+	 *
+	 * @param search
+	 *            the search that stopped
+	 */
+	void searchFinished(Search search);
+
+}
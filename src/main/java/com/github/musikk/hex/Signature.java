@@ -0,0 +1,61 @@
+package com.github.musikk.hex;
+
+/**
+ * A magic number that identifies a file format, like {@code 89 50 4E 47} for
+ * PNG images.
+ */
+public class Signature {
+
+	/**
+	 * The name of the file format.
+	 */
+	public final String name;
+	private final byte[] magic;
+	/**
+	 * The position of the magic number relative to the start of the file. Most
+	 * formats start with their magic number, some like tar have it further in.
+	 */
+	public final int offset;
+
+	/**
+	 * Creates a {@code Signature}.
+	 *
+	 * @param name
+	 *            the name of the file format
+	 * @param magic
+	 *            the magic number
+	 * @param offset
+	 *            the position of the magic number in the file
+	 * @throws IllegalArgumentException
+	 *             if {@code magic} is empty or {@code offset} is negative
+	 */
+	public Signature(String name, byte[] magic, int offset) {
+		if (magic.length == 0) {
+			throw new IllegalArgumentException("Magic number of " + name + " is empty.");
+		}
+		if (offset < 0) {
+			throw new IllegalArgumentException("Offset of " + name + " is negative: " + offset);
+		}
+		this.name = name;
+		this.magic = magic.clone();
+		this.offset = offset;
+	}
+
+	public byte[] getMagic() {
+		return magic.clone();
+	}
+
+	public int getLength() {
+		return magic.length;
+	}
+
+	byte[] magic() {
+		return magic;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Signature: %s [%s at %d]", name, new BytePattern(magic), offset);
+	}
+
+}
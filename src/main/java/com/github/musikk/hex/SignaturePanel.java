@@ -0,0 +1,223 @@
+package com.github.musikk.hex;
+
+import java.awt.BorderLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Shows the hits of a signature scan. Selecting a hit selects it in the
+ * {@link ScrollableHexPanel} that was scanned.
+ */
+class SignaturePanel extends JPanel {
+
+	private final HitTableModel model = new HitTableModel();
+	private final JTable table = new JTable(model);
+	private final JLabel summaryLabel = new JLabel(" ");
+
+	private ScrollableHexPanel target;
+	private SignatureTable signatures;
+
+	private final Comparator<Match> byFileStart = new Comparator<Match>() {
+		@Override
+		public int compare(Match m1, Match m2) {
+			return Long.compare(fileStart(m1), fileStart(m2));
+		}
+	};
+
+	public SignaturePanel() {
+		setLayout(new BorderLayout());
+
+		table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				if (!e.getValueIsAdjusting()) {
+					showSelectedHit();
+				}
+			}
+		});
+
+		add(summaryLabel, BorderLayout.NORTH);
+		add(new JScrollPane(table), BorderLayout.CENTER);
+	}
+
+	/**
+	 * Discards the previous hits and prepares for a new scan.
+	 *
+	 * @param target
+	 *            the panel whose data is scanned
+	 * @param signatures
+	 *            the signatures that are scanned for
+	 */
+	void start(ScrollableHexPanel target, SignatureTable signatures) {
+		this.target = target;
+		this.signatures = signatures;
+		model.clear();
+		summaryLabel.setText("Scanning...");
+	}
+
+	/**
+	 * Adds hits of the running scan. The hits are kept sorted by offset.
+	 *
+	 * @param matches
+	 *            the matches of the signatures
+	 */
+	void addHits(List<Match> matches) {
+		List<Match> hits = new ArrayList<>(matches.size());
+		for (Match match : matches) {
+			// the file would start before the data
+			if (match.offset >= signatures.get(match.pattern).offset) {
+				hits.add(match);
+			}
+		}
+		model.add(hits);
+		summaryLabel.setText(model.getRowCount() + " hits");
+	}
+
+	/**
+	 * Ends the scan.
+	 *
+	 * @param truncated
+	 *            whether the scan stopped because there were too many hits
+	 */
+	void finish(boolean truncated) {
+		summaryLabel.setText(model.getRowCount() + " hits" + (truncated ? " (stopped, too many hits)" : ""));
+	}
+
+	/**
+	 * Removes the hits if they belong to {@code panel}.
+	 *
+	 * @param panel
+	 *            the panel that is going away
+	 */
+	void clear(ScrollableHexPanel panel) {
+		if (target == panel) {
+			target = null;
+			model.clear();
+			summaryLabel.setText(" ");
+		}
+	}
+
+	private void showSelectedHit() {
+		int row = table.getSelectedRow();
+		if (row == -1 || target == null) {
+			return;
+		}
+		Match match = model.get(table.convertRowIndexToModel(row));
+		long start = fileStart(match);
+		RangeMarker selection = target.getSelectionMarker();
+		if (selection != null) {
+			selection.setByteStartEnd(start, match.getEnd());
+		}
+		target.showIndex(start);
+	}
+
+	private long fileStart(Match match) {
+		return match.offset - signatures.get(match.pattern).offset;
+	}
+
+	private class HitTableModel extends AbstractTableModel {
+		private final List<Match> hits = new ArrayList<>();
+
+		/**
+		 * Merges a batch of matches into the sorted hits. Chunks finish out
+		 * of order, but most batches only add rows after the earlier ones,
+		 * so only the hits after the first new one are touched.
+		 */
+		void add(List<Match> matches) {
+			if (matches.isEmpty()) {
+				return;
+			}
+			List<Match> batch = new ArrayList<>(matches);
+			Collections.sort(batch, byFileStart);
+
+			int first = rowAfter(batch.get(0));
+			List<Match> tail = hits.subList(first, hits.size());
+			List<Match> later = new ArrayList<>(tail);
+			tail.clear();
+
+			// the runs of consecutive new rows, as first and last row
+			List<int[]> inserted = new ArrayList<>();
+			int next = 0;
+			for (Match match : batch) {
+				while (next < later.size() && byFileStart.compare(later.get(next), match) <= 0) {
+					hits.add(later.get(next++));
+				}
+				int row = hits.size();
+				hits.add(match);
+				int[] last = inserted.isEmpty() ? null : inserted.get(inserted.size() - 1);
+				if (last != null && last[1] == row - 1) {
+					last[1] = row;
+				} else {
+					inserted.add(new int[] { row, row });
+				}
+			}
+			hits.addAll(later.subList(next, later.size()));
+			for (int[] rows : inserted) {
+				fireTableRowsInserted(rows[0], rows[1]);
+			}
+		}
+
+		/**
+		 * Returns the first row whose hit starts after a match.
+		 */
+		private int rowAfter(Match match) {
+			int low = 0;
+			int high = hits.size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (byFileStart.compare(hits.get(mid), match) <= 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		void clear() {
+			hits.clear();
+			fireTableDataChanged();
+		}
+
+		Match get(int row) {
+			return hits.get(row);
+		}
+
+		@Override
+		public int getRowCount() {
+			return hits.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 2;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return column == 0 ? "Offset" : "Format";
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			Match match = hits.get(row);
+			if (column == 0) {
+				return String.format("0x%x", fileStart(match));
+			}
+			return signatures.get(match.pattern).name;
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package com.github.musikk.hex;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of {@link Signature}s that can be searched for in a single pass.
+ * <p>
+ * Tables are read from text files with one signature per line: the name, the
+ * magic number in hex and optionally the offset of the magic number, separated
+ * by tabs. Empty lines and lines starting with {@code #} are ignored.
+ */
+public class SignatureTable {
+
+	private static final String BUILT_IN = "signatures.txt";
+
+	private final List<Signature> signatures;
+
+	private AhoCorasickMatcher matcher;
+
+	public SignatureTable(List<Signature> signatures) {
+		if (signatures.isEmpty()) {
+			throw new IllegalArgumentException("No signatures.");
+		}
+		this.signatures = Collections.unmodifiableList(new ArrayList<>(signatures));
+	}
+
+	/**
+	 * Returns the table of common file formats that ships with hex.
+	 *
+	 * @return the built-in table
+	 */
+	public static SignatureTable builtIn() {
+		try (InputStream in = SignatureTable.class.getResourceAsStream(BUILT_IN)) {
+			if (in == null) {
+				throw new IllegalStateException("Missing resource " + BUILT_IN);
+			}
+			return read(in, BUILT_IN);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads a table from a file.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the table
+	 * @throws IOException
+	 *             if the file cannot be read or is malformed
+	 */
+	public static SignatureTable load(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return read(in, file.getName());
+		}
+	}
+
+	private static SignatureTable read(InputStream in, String source) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		List<Signature> signatures = new ArrayList<>();
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\t+");
+			try {
+				if (fields.length < 2 || fields.length > 3) {
+					throw new IllegalArgumentException("Expected name, magic number and optional offset.");
+				}
+				byte[] magic = BytePattern.parse(fields[1]).getBytes();
+				int offset = fields.length == 3 ? Integer.decode(fields[2].trim()) : 0;
+				signatures.add(new Signature(fields[0].trim(), magic, offset));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(String.format("%s, line %d: %s", source, lineNumber, e.getMessage()), e);
+			}
+		}
+		if (signatures.isEmpty()) {
+			throw new IOException(source + " contains no signatures.");
+		}
+		return new SignatureTable(signatures);
+	}
+
+	public int size() {
+		return signatures.size();
+	}
+
+	public Signature get(int index) {
+		return signatures.get(index);
+	}
+
+	/**
+	 * Returns a matcher that finds all signatures of this table. The index of
+	 * the pattern of a {@link Match} is the index of the signature in this
+	 * table. The matcher is built on first use.
+	 *
+	 * @return the matcher
+	 */
+	public synchronized ByteMatcher getMatcher() {
+		if (matcher == null) {
+			List<byte[]> patterns = new ArrayList<>(signatures.size());
+			for (Signature signature : signatures) {
+				patterns.add(signature.magic());
+			}
+			matcher = new AhoCorasickMatcher(patterns);
+		}
+		return matcher;
+	}
+
+}
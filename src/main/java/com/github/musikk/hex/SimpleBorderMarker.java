@@ -29,69 +29,65 @@ public class SimpleBorderMarker extends RangeMarker {
 		int hexWidth = metrics.getHexWidth();
 		int pad = metrics.getLineGap() / 2;
 
-		HexPosition startPoint;
-		HexPosition endPoint;
-		if (getByteStart() <= getByteEnd()) {
-			startPoint = metrics.positionFromIndex(getByteStart());
-			endPoint = metrics.positionFromIndex(getByteEnd());
-		} else {
-			startPoint = metrics.positionFromIndex(getByteEnd());
-			endPoint = metrics.positionFromIndex(getByteStart());
+		long start = Math.min(getByteStart(), getByteEnd());
+		long end = Math.max(getByteStart(), getByteEnd());
+		long first = metrics.getOffset();
+		long last = first + (long) metrics.getLines() * metrics.getLineLength() - 1;
+		if (end < first || start > last) {
+			return;
 		}
 
-		boolean openStart = false;
-		boolean openEnd = false;
-		if (startPoint == null) {
-			// index and rowTotal are invalid but we don't need them here
-			startPoint = new HexPosition(-1, hexX, metrics.getHexY(), 0, 0, -1);
-			openStart = true;
-		}
-		if (endPoint == null) {
-			// index and rowTotal are invalid but we don't need them here
-			endPoint = new HexPosition(-1, hexX + hexWidth - 2 * charWidth,
-					(charHeight + metrics.getLineGap()) * metrics.getLines(),
-					metrics.getLineLength(), metrics.getLines(), -1);
-			openEnd = true;
-		}
-
-		if (startPoint.row == endPoint.row) {
-			g2.drawRect(startPoint.x, startPoint.y - charHeight - pad,
-					endPoint.x - startPoint.x + 2 * charWidth, charHeight + 2 * pad);
-		} else {
-			int xLeft = startPoint.x;
-			int xRight = hexX + hexWidth;
-			int yLow = startPoint.y + pad;
-			int yHigh = startPoint.y - charHeight - pad;
-
-			// [
-			g2.drawLine(xLeft, yLow, xRight, yLow); // low
+		// ranges that continue outside of the visible rows are left open
+		boolean openStart = start < first;
+		boolean openEnd = end > last;
+		int startRow = openStart ? 0 : metrics.rowOf(start);
+		int endRow = openEnd ? metrics.getLines() - 1 : metrics.rowOf(end);
+		int startX = openStart ? hexX : metrics.getColumnX(metrics.columnOf(start));
+		int endX = openEnd ? hexX + hexWidth : metrics.getColumnX(metrics.columnOf(end)) + 2 * charWidth;
+		int startY = metrics.getRowY(startRow);
+		int endY = metrics.getRowY(endRow);
+
+		if (startRow == endRow) {
+			g2.drawLine(startX, startY + pad, endX, startY + pad); // low
+			g2.drawLine(startX, startY - charHeight - pad, endX, startY - charHeight - pad); // high
 			if (!openStart) {
-				g2.drawLine(xLeft, yLow, xLeft, yHigh); // left
+				g2.drawLine(startX, startY + pad, startX, startY - charHeight - pad); // left
 			}
-			g2.drawLine(xLeft, yHigh, xRight, yHigh); // high
-
-			int row = startPoint.row + 2;
-			int y = row * (charHeight + metrics.getLineGap());
-			for (; row <= endPoint.row; row++) {
-				g2.drawLine(hexX, y + pad, hexX + hexWidth, y + pad); // low
-				g2.drawLine(hexX, y - charHeight - pad, hexX + hexWidth, y - charHeight - pad); // high
-
-				y += metrics.getLineGap() + charHeight;
+			if (!openEnd) {
+				g2.drawLine(endX, startY + pad, endX, startY - charHeight - pad); // right
 			}
+			return;
+		}
 
-			xLeft = hexX;
-			xRight = endPoint.x + 2 * charWidth;
-			yLow = endPoint.y + pad;
-			yHigh = endPoint.y - charHeight - pad;
+		int xLeft = startX;
+		int xRight = hexX + hexWidth;
+		int yLow = startY + pad;
+		int yHigh = startY - charHeight - pad;
 
-			// ]
-			g2.drawLine(xRight, yLow, xLeft, yLow); // low
-			if (!openEnd) {
-				g2.drawLine(xRight, yLow, xRight, yHigh); // right
-			}
-			g2.drawLine(xRight, yHigh, xLeft, yHigh); // high
+		// [
+		g2.drawLine(xLeft, yLow, xRight, yLow); // low
+		if (!openStart) {
+			g2.drawLine(xLeft, yLow, xLeft, yHigh); // left
 		}
+		g2.drawLine(xLeft, yHigh, xRight, yHigh); // high
 
+		for (int row = startRow + 1; row < endRow; row++) {
+			int y = metrics.getRowY(row);
+			g2.drawLine(hexX, y + pad, hexX + hexWidth, y + pad); // low
+			g2.drawLine(hexX, y - charHeight - pad, hexX + hexWidth, y - charHeight - pad); // high
+		}
+
+		xLeft = hexX;
+		xRight = endX;
+		yLow = endY + pad;
+		yHigh = endY - charHeight - pad;
+
+		// ]
+		g2.drawLine(xRight, yLow, xLeft, yLow); // low
+		if (!openEnd) {
+			g2.drawLine(xRight, yLow, xRight, yHigh); // right
+		}
+		g2.drawLine(xRight, yHigh, xLeft, yHigh); // high
 	}
 
 }
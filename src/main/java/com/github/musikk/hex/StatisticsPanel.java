@@ -0,0 +1,338 @@
+package com.github.musikk.hex;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Shows the {@link ByteStatistics} of the selection of a
+ * {@link ScrollableHexPanel}, or of all data if nothing is selected. Small
+ * ranges are read directly; for larger ones a {@link HistogramIndex} of the
+ * data is built on first use, but for all data only while the panel is
+ * showing. All methods must be called on the event dispatch thread.
+ */
+class StatisticsPanel extends JPanel {
+
+	/**
+	 * Ranges up to this size are read directly instead of through the index.
+	 */
+	static final long DIRECT_LIMIT = 4 * 1024 * 1024;
+
+	/**
+	 * The delay after a change of the selection before the statistics are
+	 * updated, so dragging does not compute the statistics of every step.
+	 */
+	private static final int UPDATE_DELAY = 150;
+	private static final int PROGRESS_INTERVAL = 200;
+
+	/**
+	 * Computes the statistics. Reading edge blocks may take a moment.
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory("hex-statistics"));
+
+	private final JLabel rangeLabel = new JLabel(" ");
+	private final JTextField countField = new JTextField();
+	private final JTextField zeroField = new JTextField();
+	private final JTextField minMaxField = new JTextField();
+	private final JTextField meanField = new JTextField();
+	private final JTextField distinctField = new JTextField();
+	private final JTextField entropyField = new JTextField();
+	private final HistogramView histogramView = new HistogramView();
+
+	private final Map<DataProvider, HistogramIndex> indices = new HashMap<>();
+
+	private ScrollableHexPanel panel;
+	private DataProvider data;
+	private RangeMarker selection;
+
+	/**
+	 * Counts the updates so that results of outdated updates are dropped.
+	 */
+	private int generation;
+
+	private final Timer updateTimer = new Timer(UPDATE_DELAY, new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			update();
+		}
+	});
+	private final Timer progressTimer = new Timer(PROGRESS_INTERVAL, new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			HistogramIndex index = data == null ? null : indices.get(data);
+			if (index == null || index.isDone()) {
+				progressTimer.stop();
+				return;
+			}
+			rangeLabel.setText(String.format("Indexing... %.0f%%", 100 * index.getProgress()));
+		}
+	});
+
+	private final MarkerUpdatedListener selectionListener = new MarkerUpdatedListener() {
+		@Override
+		public void markerUpdated(Marker marker) {
+			if (SwingUtilities.isEventDispatchThread()) {
+				updateTimer.restart();
+				return;
+			}
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					updateTimer.restart();
+				}
+			});
+		}
+	};
+
+	public StatisticsPanel() {
+		updateTimer.setRepeats(false);
+
+		JTextField[] fields = { countField, zeroField, minMaxField, meanField, distinctField, entropyField };
+		String[] names = { "Bytes", "Zero Bytes", "Min / Max", "Mean", "Distinct Values", "Entropy" };
+
+		JPanel fieldGroup = new JPanel(new GridBagLayout());
+		fieldGroup.setBorder(BorderFactory.createTitledBorder("Selection"));
+
+		GridBagConstraints labelsConstraints = new GridBagConstraints();
+		labelsConstraints.anchor = GridBagConstraints.WEST;
+		labelsConstraints.weightx = 1.0;
+		labelsConstraints.insets = new Insets(0, 5, 2, 5);
+		labelsConstraints.gridx = 0;
+		labelsConstraints.gridy = GridBagConstraints.RELATIVE;
+
+		GridBagConstraints textFieldConstraints = (GridBagConstraints) labelsConstraints.clone();
+		textFieldConstraints.fill = GridBagConstraints.HORIZONTAL;
+		textFieldConstraints.gridx = 1;
+
+		GridBagConstraints wideConstraints = (GridBagConstraints) textFieldConstraints.clone();
+		wideConstraints.gridx = 0;
+		wideConstraints.gridwidth = 2;
+
+		fieldGroup.add(rangeLabel, wideConstraints);
+		for (int i = 0; i < fields.length; i++) {
+			fields[i].setEditable(false);
+			fields[i].setColumns(16);
+			fieldGroup.add(new JLabel(names[i]), labelsConstraints);
+			fieldGroup.add(fields[i], textFieldConstraints);
+		}
+		fieldGroup.add(histogramView, wideConstraints);
+
+		setLayout(new BorderLayout());
+		add(fieldGroup, BorderLayout.NORTH);
+
+		// the statistics of all data may have been left out while hidden
+		addHierarchyListener(new HierarchyListener() {
+			@Override
+			public void hierarchyChanged(HierarchyEvent e) {
+				if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+					update();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Shows the statistics of the selection of another panel.
+	 *
+	 * @param panel
+	 *            the panel or {@code null} if there is none
+	 * @param data
+	 *            the data of {@code panel}; the index reads all of it once, so
+	 *            it should not go through a {@link CachingDataProvider}
+	 */
+	void setTarget(ScrollableHexPanel panel, DataProvider data) {
+		if (selection != null) {
+			selection.removeListener(selectionListener);
+		}
+		this.panel = panel;
+		this.data = data;
+		this.selection = panel == null ? null : panel.getSelectionMarker();
+		if (selection != null) {
+			selection.addListener(selectionListener);
+		}
+		update();
+	}
+
+	/**
+	 * Forgets the index of some data and stops building it.
+	 *
+	 * @param data
+	 *            the data that is going away
+	 */
+	void remove(DataProvider data) {
+		HistogramIndex index = indices.remove(data);
+		if (index != null) {
+			index.cancel();
+		}
+	}
+
+	private void update() {
+		final int current = ++generation;
+		if (panel == null) {
+			rangeLabel.setText(" ");
+			show(null);
+			return;
+		}
+
+		boolean selected = selection != null && !selection.isInvalid();
+		long from = 0;
+		long to = data.getLength();
+		if (selected) {
+			from = Math.min(selection.getByteStart(), selection.getByteEnd());
+			to = Math.min(to, Math.max(selection.getByteStart(), selection.getByteEnd()) + 1);
+		}
+		final long start = from;
+		final long end = Math.max(from, to);
+		final String range = selected ? String.format("0x%x-0x%x", start, end) : "All data";
+
+		final DataProvider data = this.data;
+		final HistogramIndex index;
+		if (end - start <= DIRECT_LIMIT) {
+			index = null;
+		} else if (!indices.containsKey(data) && !selected && !isShowing()) {
+			// every tab change gets here, do not index files nobody looks at
+			rangeLabel.setText(range);
+			show(null);
+			return;
+		} else {
+			index = indexOf(data);
+			if (!index.isComplete()) {
+				if (index.getError() != null) {
+					rangeLabel.setText("Indexing failed: " + index.getError().getMessage());
+				}
+				show(null);
+				return;
+			}
+		}
+
+		rangeLabel.setText(range + " (computing)");
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				ByteStatistics result = null;
+				String message = range;
+				try {
+					result = index == null ? HistogramIndex.read(data, start, end) : index.getStatistics(start, end);
+				} catch (RuntimeException e) {
+					message = "Cannot compute statistics: " + e.getMessage();
+				}
+				final ByteStatistics statistics = result;
+				final String label = message;
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (current == generation) {
+							rangeLabel.setText(label);
+							show(statistics);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Returns the index of some data, starting to build it if necessary.
+	 */
+	private HistogramIndex indexOf(DataProvider data) {
+		HistogramIndex index = indices.get(data);
+		if (index == null) {
+			index = HistogramIndex.build(data, new Runnable() {
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							update();
+						}
+					});
+				}
+			});
+			indices.put(data, index);
+		}
+		if (!index.isDone()) {
+			rangeLabel.setText("Indexing...");
+			progressTimer.start();
+		}
+		return index;
+	}
+
+	private void show(ByteStatistics statistics) {
+		histogramView.setStatistics(statistics);
+		if (statistics == null) {
+			for (JTextField field : new JTextField[] { countField, zeroField, minMaxField, meanField,
+					distinctField, entropyField }) {
+				field.setText("");
+			}
+			return;
+		}
+		countField.setText(Long.toString(statistics.getCount()));
+		zeroField.setText(String.format("%d (%.1f%%)", statistics.getZeroCount(),
+				statistics.getCount() == 0 ? 0 : 100.0 * statistics.getZeroCount() / statistics.getCount()));
+		minMaxField.setText(statistics.getCount() == 0 ? "" : String.format("0x%02x / 0x%02x",
+				statistics.getMin(), statistics.getMax()));
+		meanField.setText(String.format("%.2f", statistics.getMean()));
+		distinctField.setText(Integer.toString(statistics.getDistinctValues()));
+		entropyField.setText(String.format("%.3f bits/byte", statistics.getEntropy()));
+	}
+
+	/**
+	 * Draws the histogram as one bar per byte value. The bars are scaled by
+	 * the square root of the count so rare values remain visible.
+	 */
+	private static class HistogramView extends JComponent {
+		private ByteStatistics statistics;
+
+		HistogramView() {
+			setPreferredSize(new Dimension(256, 80));
+		}
+
+		void setStatistics(ByteStatistics statistics) {
+			this.statistics = statistics;
+			repaint();
+		}
+
+		@Override
+		protected void paintComponent(Graphics g) {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, getWidth(), getHeight());
+			if (statistics == null || statistics.getCount() == 0) {
+				return;
+			}
+			long max = 0;
+			for (int b = 0; b < 256; b++) {
+				max = Math.max(max, statistics.getCount(b));
+			}
+			double scale = getHeight() / Math.sqrt(max);
+			g.setColor(Color.DARK_GRAY);
+			for (int b = 0; b < 256; b++) {
+				int x = b * getWidth() / 256;
+				int width = Math.max(1, (b + 1) * getWidth() / 256 - x);
+				int height = (int) Math.ceil(Math.sqrt(statistics.getCount(b)) * scale);
+				g.fillRect(x, getHeight() - height, width, height);
+			}
+		}
+	}
+
+}
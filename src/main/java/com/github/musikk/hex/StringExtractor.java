@@ -0,0 +1,299 @@
+package com.github.musikk.hex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds runs of printable text in some data, like the {@code strings} tool.
+ * Runs of ASCII characters and of UTF-16LE characters whose high byte is zero
+ * are found. Printable are the characters from space to tilde and tab.
+ * <p>
+ * The data is split into chunks that are searched in parallel on
+ * {@link BackgroundTask#POOL}, one round of one chunk per thread at a time. A
+ * run belongs to the chunk it starts in; a chunk skips the rest of a run that
+ * started before it and reads past its end to find the end of its last run.
+ * The runs of a round are appended to a {@link TextRunFile} in order, so they
+ * can be shown while the extraction goes on and the heap only holds the runs
+ * of a single round.
+ */
+public class StringExtractor extends BackgroundTask {
+
+	/**
+	 * The number of bytes that are searched by a single task.
+	 */
+	static final int CHUNK_SIZE = 4 * 1024 * 1024;
+	/**
+	 * The number of bytes that are read past the end of a chunk. Longer runs
+	 * are followed by further reads.
+	 */
+	private static final int TAIL_SIZE = 4096;
+	private static final int EXTEND_SIZE = 64 * 1024;
+	/**
+	 * The length in bytes after which a run is cut off.
+	 */
+	static final int MAX_RUN_LENGTH = 1 << 30;
+	/**
+	 * The number of runs after which the extraction stops. The file of the
+	 * runs takes {@link TextRunFile#RECORD_SIZE} bytes per run.
+	 */
+	static final int MAX_RUNS = 100 * 1000 * 1000;
+
+	private static final Comparator<TextRun> BY_OFFSET = new Comparator<TextRun>() {
+		@Override
+		public int compare(TextRun r1, TextRun r2) {
+			return Long.compare(r1.offset, r2.offset);
+		}
+	};
+
+	private final DataProvider data;
+	private final int minLength;
+	private final TextRunFile runs;
+
+	private volatile boolean truncated;
+
+	private StringExtractor(DataProvider data, int minLength, TextRunFile runs) {
+		super(data.getLength());
+		this.data = data;
+		this.minLength = minLength;
+		this.runs = runs;
+	}
+
+	/**
+	 * Starts to extract the text runs of some data.
+	 *
+	 * @param data
+	 *            the data
+	 * @param minLength
+	 *            the minimum number of characters of a run
+	 * @param whenFinished
+	 *            run on a background thread when the extraction has stopped
+	 * @return the running extraction
+	 * @throws IOException
+	 *             if the file for the runs cannot be created
+	 */
+	public static StringExtractor extract(DataProvider data, int minLength, final Runnable whenFinished)
+			throws IOException {
+		if (minLength < 1) {
+			throw new IllegalArgumentException("Minimum length must be positive but is " + minLength + ".");
+		}
+		final StringExtractor extractor = new StringExtractor(data, minLength, new TextRunFile());
+		BackgroundTask.POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					extractor.run();
+				} catch (IOException e) {
+					extractor.fail(new RuntimeException("Cannot store strings: " + e.getMessage(), e));
+				} catch (RuntimeException e) {
+					extractor.fail(e);
+				} finally {
+					extractor.finish();
+					whenFinished.run();
+				}
+			}
+		});
+		return extractor;
+	}
+
+	/**
+	 * Returns the runs found so far, sorted by offset. The caller has to
+	 * {@linkplain TextRunFile#delete() delete} them when they are no longer
+	 * needed.
+	 *
+	 * @return the runs
+	 */
+	TextRunFile getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Returns whether the extraction stopped because it found
+	 * {@link #MAX_RUNS} runs.
+	 *
+	 * @return whether there may be more runs
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	private void run() throws IOException {
+		int parallelism = BackgroundTask.POOL.getParallelism();
+		long length = data.getLength();
+		for (long start = 0; start < length && !isCancelled(); start += (long) parallelism * CHUNK_SIZE) {
+			List<ChunkTask> tasks = new ArrayList<>(parallelism);
+			for (int i = 0; i < parallelism; i++) {
+				long chunkStart = start + (long) i * CHUNK_SIZE;
+				if (chunkStart >= length) {
+					break;
+				}
+				tasks.add(new ChunkTask(chunkStart, Math.min(length, chunkStart + CHUNK_SIZE)));
+			}
+			RecursiveAction.invokeAll(tasks);
+			for (ChunkTask task : tasks) {
+				if (isCancelled()) {
+					return;
+				}
+				List<TextRun> found = task.found;
+				if (runs.size() + found.size() > MAX_RUNS) {
+					found = found.subList(0, MAX_RUNS - runs.size());
+					truncated = true;
+					cancel();
+				}
+				runs.append(found);
+			}
+		}
+	}
+
+	private static boolean isPrintable(byte b) {
+		return b >= 0x20 && b < 0x7F || b == '\t';
+	}
+
+	/**
+	 * Finds the runs that start in a chunk.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private final long start;
+		private final long end;
+		List<TextRun> found;
+
+		/**
+		 * The position of {@link #buffer}{@code [0]} in the data.
+		 */
+		private long base;
+		private byte[] buffer;
+		private int length;
+
+		ChunkTask(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (isCancelled()) {
+				return;
+			}
+			// two bytes before the chunk tell whether a run started earlier
+			base = Math.max(0, start - 2);
+			long readEnd = Math.min(data.getLength(), end + TAIL_SIZE);
+			buffer = new byte[(int) (readEnd - base)];
+			length = Math.max(0, data.get(ByteBuffer.wrap(buffer), base));
+
+			found = new ArrayList<>();
+			findAscii();
+			findUtf16(start);
+			findUtf16(start + 1);
+			Collections.sort(found, BY_OFFSET);
+			buffer = null;
+			addProgress(end - start);
+		}
+
+		private void findAscii() {
+			int i = (int) (start - base);
+			int chunkEnd = (int) (end - base);
+			if (i > 0 && isPrintable(buffer[i - 1])) {
+				// belongs to the previous chunk
+				while (i < length && isPrintable(buffer[i])) {
+					i++;
+				}
+			}
+			while (i < chunkEnd) {
+				if (!isPrintable(buffer[i])) {
+					i++;
+					continue;
+				}
+				int runStart = i;
+				while (i < length && isPrintable(buffer[i])) {
+					i++;
+				}
+				long runEnd = base + i;
+				if (i == length) {
+					runEnd = extend(runEnd, false);
+				}
+				add(base + runStart, runEnd, false);
+			}
+		}
+
+		/**
+		 * Finds the UTF-16LE runs whose characters start at offsets with the
+		 * same parity as {@code first}.
+		 */
+		private void findUtf16(long first) {
+			int i = (int) (first - base);
+			int chunkEnd = (int) (end - base);
+			if (i >= 2 && isUtf16(i - 2)) {
+				while (isUtf16(i)) {
+					i += 2;
+				}
+			}
+			while (i < chunkEnd) {
+				if (!isUtf16(i)) {
+					i += 2;
+					continue;
+				}
+				int runStart = i;
+				while (isUtf16(i)) {
+					i += 2;
+				}
+				long runEnd = base + i;
+				if (i + 1 >= length) {
+					runEnd = extend(runEnd, true);
+				}
+				add(base + runStart, runEnd, true);
+			}
+		}
+
+		private boolean isUtf16(int i) {
+			return i + 1 < length && isPrintable(buffer[i]) && buffer[i + 1] == 0;
+		}
+
+		private void add(long runStart, long runEnd, boolean utf16) {
+			long runLength = Math.min(MAX_RUN_LENGTH, runEnd - runStart);
+			if ((utf16 ? runLength / 2 : runLength) >= minLength) {
+				found.add(new TextRun(runStart, (int) runLength, utf16));
+			}
+		}
+
+		/**
+		 * Follows a run beyond the end of the buffer.
+		 *
+		 * @param from
+		 *            the position after the end of the buffer
+		 * @return the position after the end of the run
+		 */
+		private long extend(long from, boolean utf16) {
+			byte[] piece = new byte[EXTEND_SIZE];
+			long position = from;
+			long limit = Math.min(data.getLength(), from + MAX_RUN_LENGTH);
+			while (position < limit) {
+				int read = data.get(ByteBuffer.wrap(piece, 0, (int) Math.min(EXTEND_SIZE, limit - position)),
+						position);
+				if (read <= 0) {
+					return position;
+				}
+				if (utf16) {
+					// pieces start at a character and have an even size
+					for (int i = 0; i < read; i += 2) {
+						if (i + 1 >= read || !isPrintable(piece[i]) || piece[i + 1] != 0) {
+							return position + i;
+						}
+					}
+				} else {
+					for (int i = 0; i < read; i++) {
+						if (!isPrintable(piece[i])) {
+							return position + i;
+						}
+					}
+				}
+				position += read;
+			}
+			return position;
+		}
+	}
+
+}
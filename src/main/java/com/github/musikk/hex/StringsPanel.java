@@ -0,0 +1,228 @@
+package com.github.musikk.hex;
+
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.swing.AbstractListModel;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JToolBar;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+/**
+ * Shows the text runs found by a {@link StringExtractor}. The list only reads
+ * the runs and their text that are visible, so it handles any number of runs.
+ * Selecting a run selects it in the {@link ScrollableHexPanel} it was found
+ * in. All methods must be called on the event dispatch thread.
+ */
+class StringsPanel extends JPanel {
+
+	/**
+	 * The number of characters of a run that are shown.
+	 */
+	private static final int PREVIEW_LENGTH = 200;
+	private static final int REFRESH_INTERVAL = 250;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+	private final RunListModel model = new RunListModel();
+	private final JList<String> list = new JList<>(model);
+	private final JSpinner minLengthSpinner = new JSpinner(new SpinnerNumberModel(4, 1, 1024, 1));
+	private final JLabel summaryLabel = new JLabel(" ");
+
+	private ScrollableHexPanel target;
+	private DataProvider data;
+	private StringExtractor extractor;
+
+	/**
+	 * Shows new runs while the extraction is running.
+	 */
+	private final Timer refreshTimer = new Timer(REFRESH_INTERVAL, new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			refresh();
+		}
+	});
+
+	public StringsPanel() {
+		setLayout(new BorderLayout());
+
+		JToolBar toolbar = new JToolBar(JToolBar.HORIZONTAL);
+		toolbar.setFloatable(false);
+		toolbar.add(new JLabel("Minimum Length "));
+		toolbar.add(minLengthSpinner);
+
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, list.getFont().getSize()));
+		// all cells have the same size, the list need not read every run
+		list.setPrototypeCellValue(String.format("0x%010x A %60s", 0, ""));
+		list.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				if (!e.getValueIsAdjusting()) {
+					showSelectedRun();
+				}
+			}
+		});
+
+		JPanel north = new JPanel(new BorderLayout());
+		north.add(toolbar, BorderLayout.NORTH);
+		north.add(summaryLabel, BorderLayout.SOUTH);
+		add(north, BorderLayout.NORTH);
+		add(new JScrollPane(list), BorderLayout.CENTER);
+	}
+
+	/**
+	 * Discards the previous runs and starts to extract the runs of some data
+	 * with the minimum length that is set in this panel.
+	 *
+	 * @param target
+	 *            the panel that displays {@code data}
+	 * @param data
+	 *            the data to extract the runs of
+	 */
+	void start(ScrollableHexPanel target, DataProvider data) {
+		discard();
+		this.target = target;
+		this.data = data;
+		try {
+			extractor = StringExtractor.extract(data, (Integer) minLengthSpinner.getValue(), new Runnable() {
+				@Override
+				public void run() {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							refresh();
+						}
+					});
+				}
+			});
+		} catch (IOException e) {
+			summaryLabel.setText("Cannot extract strings: " + e.getMessage());
+			return;
+		}
+		summaryLabel.setText("Extracting...");
+		refreshTimer.start();
+	}
+
+	/**
+	 * Removes the runs if they belong to {@code panel}.
+	 *
+	 * @param panel
+	 *            the panel that is going away
+	 */
+	void clear(ScrollableHexPanel panel) {
+		if (target == panel) {
+			discard();
+			summaryLabel.setText(" ");
+		}
+	}
+
+	private void discard() {
+		refreshTimer.stop();
+		if (extractor != null) {
+			extractor.cancel();
+			extractor.getRuns().delete();
+			extractor = null;
+		}
+		target = null;
+		data = null;
+		model.setSize(0);
+	}
+
+	private void refresh() {
+		if (extractor == null) {
+			return;
+		}
+		model.setSize(extractor.getRuns().size());
+		if (!extractor.isDone()) {
+			summaryLabel.setText(String.format("%d strings, %.0f%%", model.getSize(),
+					100 * extractor.getProgress()));
+			return;
+		}
+		refreshTimer.stop();
+		if (extractor.getError() != null) {
+			summaryLabel.setText("Extraction failed: " + extractor.getError().getMessage());
+		} else if (extractor.isTruncated()) {
+			summaryLabel.setText(model.getSize() + " strings (stopped, too many strings)");
+		} else if (extractor.isCancelled()) {
+			summaryLabel.setText(model.getSize() + " strings (cancelled)");
+		} else {
+			summaryLabel.setText(model.getSize() + " strings");
+		}
+	}
+
+	private TextRun getRun(int index) {
+		try {
+			return extractor.getRuns().get(index);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void showSelectedRun() {
+		int index = list.getSelectedIndex();
+		if (index == -1 || target == null) {
+			return;
+		}
+		TextRun run = getRun(index);
+		if (run == null) {
+			return;
+		}
+		RangeMarker selection = target.getSelectionMarker();
+		if (selection != null) {
+			selection.setByteStartEnd(run.offset, run.getEnd());
+		}
+		target.showIndex(run.offset);
+	}
+
+	/**
+	 * Reads the runs and their text when the list asks for them.
+	 */
+	private class RunListModel extends AbstractListModel<String> {
+		private int size;
+
+		void setSize(int newSize) {
+			int oldSize = size;
+			size = newSize;
+			if (newSize > oldSize) {
+				fireIntervalAdded(this, oldSize, newSize - 1);
+			} else if (newSize < oldSize) {
+				fireIntervalRemoved(this, newSize, oldSize - 1);
+			}
+		}
+
+		@Override
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String getElementAt(int index) {
+			TextRun run = getRun(index);
+			if (run == null) {
+				return "";
+			}
+			int length = Math.min(run.length, run.utf16 ? 2 * PREVIEW_LENGTH : PREVIEW_LENGTH);
+			byte[] text = new byte[length];
+			int read = Math.max(0, data.get(text, run.offset));
+			String preview = new String(text, 0, read, run.utf16 ? UTF_16LE : ASCII);
+			return String.format("0x%010x %s %s%s", run.offset, run.utf16 ? "W" : "A", preview,
+					run.length > length ? "..." : "");
+		}
+	}
+
+}
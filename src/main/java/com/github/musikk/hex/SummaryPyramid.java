@@ -0,0 +1,128 @@
+package com.github.musikk.hex;
+
+import java.util.Arrays;
+
+/**
+ * Summaries of the regions of some data, stored at several resolutions. The
+ * data is divided into leaves of equal size; every level above combines two
+ * nodes of the level below. A summary of any range of leaves is the sum of at
+ * most two nodes per level, so showing the data at a different scale never
+ * requires reading it again.
+ * <p>
+ * Leaves are added one by one in any order. Summaries only include the leaves
+ * that have been added; {@link #LEAVES} tells how many those are. All methods
+ * are thread safe.
+ */
+class SummaryPyramid {
+
+	/**
+	 * The number of leaves the summary consists of.
+	 */
+	static final int LEAVES = 0;
+	/**
+	 * The number of bytes the summary consists of.
+	 */
+	static final int BYTES = 1;
+	/**
+	 * The sum of the entropy of the leaves, each weighted by its number of
+	 * bytes. The entropy of a leaf is between 0 and 1.
+	 */
+	static final int ENTROPY = 2;
+	/**
+	 * The number of zero bytes.
+	 */
+	static final int ZERO = 3;
+	/**
+	 * The number of printable ASCII characters and whitespace.
+	 */
+	static final int ASCII = 4;
+	/**
+	 * The number of bytes with the high bit set.
+	 */
+	static final int HIGH = 5;
+	/**
+	 * The number of values of a summary.
+	 */
+	static final int FIELDS = 6;
+
+	private final int leafCount;
+	/**
+	 * The nodes of each level, {@link #FIELDS} values per node. Level 0 holds
+	 * the leaves.
+	 */
+	private final double[][] levels;
+
+	/**
+	 * Creates an empty pyramid.
+	 *
+	 * @param leafCount
+	 *            the number of leaves
+	 */
+	SummaryPyramid(int leafCount) {
+		this.leafCount = leafCount;
+		int count = 1;
+		while (1 << count - 1 < leafCount) {
+			count++;
+		}
+		levels = new double[count][];
+		for (int level = 0; level < count; level++) {
+			int nodes = (leafCount + (1 << level) - 1) >> level;
+			levels[level] = new double[Math.max(1, nodes) * FIELDS];
+		}
+	}
+
+	int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * Adds the summary of a leaf to all levels.
+	 *
+	 * @param leaf
+	 *            the index of the leaf
+	 * @param summary
+	 *            the {@link #FIELDS} values of the leaf
+	 */
+	synchronized void add(int leaf, double[] summary) {
+		for (int level = 0; level < levels.length; level++) {
+			int base = (leaf >> level) * FIELDS;
+			for (int f = 0; f < FIELDS; f++) {
+				levels[level][base + f] += summary[f];
+			}
+		}
+	}
+
+	/**
+	 * Returns the summary of the leaves from {@code from} (inclusive) to
+	 * {@code to} (exclusive).
+	 *
+	 * @param from
+	 *            the first leaf
+	 * @param to
+	 *            the end of the leaves
+	 * @param summary
+	 *            receives the {@link #FIELDS} values
+	 */
+	synchronized void sum(int from, int to, double[] summary) {
+		Arrays.fill(summary, 0);
+		for (int level = 0; from < to; level++) {
+			// add the nodes that stick out, move up with the rest
+			if ((from & 1) != 0) {
+				addNode(level, from++, summary);
+			}
+			if ((to & 1) != 0) {
+				addNode(level, --to, summary);
+			}
+			from >>= 1;
+			to >>= 1;
+		}
+	}
+
+	private void addNode(int level, int node, double[] summary) {
+		int base = node * FIELDS;
+		for (int f = 0; f < FIELDS; f++) {
+			summary[f] += levels[level][base + f];
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.github.musikk.hex;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.Timer;
+
+/**
+ * Shows the progress of a {@link BackgroundTask} in a {@link ProgressMonitor}.
+ * The monitor pops up only if the task takes a while; cancelling the monitor
+ * cancels the task.
+ */
+class TaskMonitor implements ActionListener {
+
+	private static final int MAX = 1000;
+	private static final int INTERVAL = 100;
+
+	private final BackgroundTask task;
+	private final ProgressMonitor monitor;
+	private final Timer timer;
+
+	private TaskMonitor(Component parent, String message, BackgroundTask task) {
+		this.task = task;
+		this.monitor = new ProgressMonitor(parent, message, null, 0, MAX);
+		this.timer = new Timer(INTERVAL, this);
+	}
+
+	/**
+	 * Starts monitoring a task. Must be called on the event dispatch thread.
+	 *
+	 * @param parent
+	 *            the parent component of the monitor
+	 * @param message
+	 *            describes the task
+	 * @param task
+	 *            the task to monitor
+	 */
+	static void monitor(Component parent, String message, BackgroundTask task) {
+		new TaskMonitor(parent, message, task).timer.start();
+	}
+
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		if (monitor.isCanceled()) {
+			task.cancel();
+		}
+		if (task.isDone()) {
+			timer.stop();
+			monitor.close();
+			return;
+		}
+		monitor.setProgress((int) (task.getProgress() * MAX));
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.github.musikk.hex;
+
+/**
+ * A run of text found by a {@link StringExtractor}.
+ */
+public class TextRun {
+
+	/**
+	 * The position of the first byte of the run.
+	 */
+	public final long offset;
+	/**
+	 * The number of bytes of the run, two per character for UTF-16LE.
+	 */
+	public final int length;
+	/**
+	 * Whether the run is UTF-16LE text rather than ASCII.
+	 */
+	public final boolean utf16;
+
+	public TextRun(long offset, int length, boolean utf16) {
+		this.offset = offset;
+		this.length = length;
+		this.utf16 = utf16;
+	}
+
+	/**
+	 * Returns the position of the last byte of the run.
+	 *
+	 * @return the inclusive end of the run
+	 */
+	public long getEnd() {
+		return offset + length - 1;
+	}
+
+	/**
+	 * Returns the number of characters of the run.
+	 *
+	 * @return the number of characters
+	 */
+	public int getCharacters() {
+		return utf16 ? length / 2 : length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TextRun: %d [length: %d, %s]", offset, length, utf16 ? "UTF-16LE" : "ASCII");
+	}
+
+}
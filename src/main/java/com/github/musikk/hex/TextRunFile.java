@@ -0,0 +1,120 @@
+package com.github.musikk.hex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Temporary file that holds {@link TextRun}s, so the number of runs is not
+ * limited by the heap. Each run takes {@link #RECORD_SIZE} bytes: the offset,
+ * the length and a flag for UTF-16LE.
+ * <p>
+ * Runs are appended by a single thread; any thread may read the runs that
+ * have been appended. Reads go through a page of {@link #PAGE_RECORDS} runs,
+ * so showing consecutive runs reads the file only once in a while.
+ */
+class TextRunFile {
+
+	static final int RECORD_SIZE = 8 + 4 + 1;
+	private static final int PAGE_RECORDS = 1024;
+
+	private final File file;
+	private final DataOutputStream out;
+	private final RandomAccessFile in;
+
+	/**
+	 * The number of runs that have been written completely.
+	 */
+	private volatile int size;
+
+	private final byte[] page = new byte[PAGE_RECORDS * RECORD_SIZE];
+	private int pageStart = -1;
+	private int pageRecords;
+
+	private boolean deleted;
+
+	TextRunFile() throws IOException {
+		file = File.createTempFile("hex-strings", ".tmp");
+		file.deleteOnExit();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		in = new RandomAccessFile(file, "r");
+	}
+
+	/**
+	 * Appends runs. Does nothing once the file has been deleted, so an
+	 * extraction that is still stopping may keep appending.
+	 *
+	 * @param runs
+	 *            the runs to append
+	 * @throws IOException
+	 *             if the runs cannot be written
+	 */
+	synchronized void append(List<TextRun> runs) throws IOException {
+		if (runs.isEmpty() || deleted) {
+			return;
+		}
+		for (TextRun run : runs) {
+			out.writeLong(run.offset);
+			out.writeInt(run.length);
+			out.writeByte(run.utf16 ? 1 : 0);
+		}
+		out.flush();
+		size += runs.size();
+	}
+
+	/**
+	 * Returns the number of runs that can be read.
+	 *
+	 * @return the number of runs
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Reads a run.
+	 *
+	 * @param index
+	 *            the index of the run, less than {@link #size()}
+	 * @return the run
+	 * @throws IOException
+	 *             if the run cannot be read
+	 */
+	synchronized TextRun get(int index) throws IOException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		if (pageStart == -1 || index < pageStart || index >= pageStart + pageRecords) {
+			pageStart = index / PAGE_RECORDS * PAGE_RECORDS;
+			pageRecords = Math.min(PAGE_RECORDS, size - pageStart);
+			in.seek((long) pageStart * RECORD_SIZE);
+			in.readFully(page, 0, pageRecords * RECORD_SIZE);
+		}
+		ByteBuffer record = ByteBuffer.wrap(page, (index - pageStart) * RECORD_SIZE, RECORD_SIZE);
+		return new TextRun(record.getLong(), record.getInt(), record.get() != 0);
+	}
+
+	/**
+	 * Closes and deletes the file. The runs cannot be read afterwards.
+	 */
+	synchronized void delete() {
+		deleted = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			// deleted anyway
+		}
+		try {
+			in.close();
+		} catch (IOException e) {
+			// deleted anyway
+		}
+		file.delete();
+	}
+
+}
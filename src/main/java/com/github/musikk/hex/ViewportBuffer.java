@@ -0,0 +1,159 @@
+package com.github.musikk.hex;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the data that is visible in a {@link HexPanel}. The rows are stored in
+ * a ring buffer: if the offset changes by fewer lines than are visible, the
+ * rows that are still visible stay where they are and only the rows that
+ * became visible are read from the {@link DataProvider}.
+ */
+class ViewportBuffer {
+
+	private final DataProvider data;
+
+	private byte[] bytes = new byte[0];
+	/**
+	 * Wraps {@link #bytes} to read data without allocating.
+	 */
+	private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+	private int lineLength;
+	private int lines;
+
+	/**
+	 * The offset of the first visible row or -1 if the buffer holds no valid
+	 * data.
+	 */
+	private long offset = -1;
+	/**
+	 * The index of the ring row that holds the first visible row.
+	 */
+	private int firstRow;
+	/**
+	 * The number of valid bytes starting at {@link #offset}.
+	 */
+	private int count;
+
+	ViewportBuffer(DataProvider data) {
+		this.data = data;
+	}
+
+	/**
+	 * Changes the dimensions of the buffer. The content is invalidated and read
+	 * again on the next {@link #moveTo(long)}.
+	 *
+	 * @param lineLength
+	 *            the number of bytes per row
+	 * @param lines
+	 *            the number of rows
+	 */
+	void resize(int lineLength, int lines) {
+		this.lineLength = Math.max(0, lineLength);
+		this.lines = Math.max(0, lines);
+		int size = this.lineLength * this.lines;
+		if (bytes.length < size) {
+			bytes = new byte[size];
+			buffer = ByteBuffer.wrap(bytes);
+		}
+		offset = -1;
+		firstRow = 0;
+		count = 0;
+	}
+
+	/**
+	 * Makes the data starting at {@code newOffset} available. Only rows that
+	 * have not been visible before are read.
+	 *
+	 * @param newOffset
+	 *            the offset of the first row, a multiple of the line length
+	 */
+	void moveTo(long newOffset) {
+		if (newOffset == offset || lines == 0 || lineLength == 0) {
+			return;
+		}
+		long delta = offset == -1 ? Long.MAX_VALUE : newOffset - offset;
+		if (delta % lineLength != 0 || Math.abs(delta / lineLength) >= lines) {
+			firstRow = 0;
+			readRows(0, newOffset, lines);
+		} else {
+			int rows = (int) (delta / lineLength);
+			if (rows > 0) {
+				// scrolled down, the rows at the bottom are new
+				firstRow = (firstRow + rows) % lines;
+				readRows(lines - rows, newOffset + (long) (lines - rows) * lineLength, rows);
+			} else {
+				// scrolled up, the rows at the top are new
+				firstRow = (firstRow + rows + lines) % lines;
+				readRows(0, newOffset, -rows);
+			}
+		}
+		offset = newOffset;
+		count = (int) Math.min(Math.max(0, data.getLength() - newOffset), (long) lineLength * lines);
+	}
+
+	/**
+	 * Reads consecutive rows.
+	 *
+	 * @param row
+	 *            the first visible row to read
+	 * @param rowOffset
+	 *            the offset of that row in the data
+	 * @param rowCount
+	 *            the number of rows to read
+	 */
+	private void readRows(int row, long rowOffset, int rowCount) {
+		int ringRow = (firstRow + row) % lines;
+		// the rows may wrap around the end of the ring
+		int untilEnd = Math.min(rowCount, lines - ringRow);
+		read(ringRow, rowOffset, untilEnd);
+		if (untilEnd < rowCount) {
+			read(0, rowOffset + (long) untilEnd * lineLength, rowCount - untilEnd);
+		}
+	}
+
+	private void read(int ringRow, long rowOffset, int rowCount) {
+		if (rowOffset >= data.getLength()) {
+			return;
+		}
+		buffer.clear();
+		buffer.position(ringRow * lineLength);
+		buffer.limit((ringRow + rowCount) * lineLength);
+		data.get(buffer, rowOffset);
+	}
+
+	/**
+	 * Returns the array that backs this buffer. Use {@link #rowStart(int)} to
+	 * locate a row inside the array.
+	 *
+	 * @return the backing array
+	 */
+	byte[] array() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the index in {@link #array()} where the specified visible row
+	 * starts.
+	 *
+	 * @param row
+	 *            the zero-based visible row
+	 * @return the index of the first byte of the row
+	 */
+	int rowStart(int row) {
+		if (lines == 0) {
+			return 0;
+		}
+		return ((firstRow + row) % lines) * lineLength;
+	}
+
+	/**
+	 * Returns the number of valid bytes starting at the current offset.
+	 *
+	 * @return the number of visible bytes
+	 */
+	int getCount() {
+		return count;
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link AhoCorasickMatcher} reports every occurrence of every
+ * pattern exactly once, including patterns that are suffixes of others and
+ * are only found through the failure links. Small pattern sets run on the
+ * full transition table, thousands of random patterns on the sparse one.
+ */
+public class AhoCorasickMatcherTest {
+
+	@Test
+	public void denseAutomatonFindsTheSameMatchesAsAScan() {
+		Random random = new Random(1);
+		for (int n = 0; n < 200; n++) {
+			// few distinct values, so patterns overlap and share prefixes
+			List<byte[]> patterns = randomPatterns(random, 1 + random.nextInt(20), 1 + random.nextInt(12), 3);
+			AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns);
+			assertTrue(matcher.getStateCount() <= AhoCorasickMatcher.MAX_DENSE_STATES);
+			compare(random, matcher, patterns, 3);
+		}
+	}
+
+	@Test
+	public void sparseAutomatonFindsTheSameMatchesAsAScan() {
+		Random random = new Random(2);
+		for (int n = 0; n < 3; n++) {
+			List<byte[]> patterns = randomPatterns(random, 8000, 12, 256);
+			// a suffix of another pattern, found through the failure links
+			byte[] pattern = new byte[12];
+			random.nextBytes(pattern);
+			patterns.add(pattern);
+			patterns.add(Arrays.copyOfRange(pattern, 4, pattern.length));
+			AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns);
+			assertTrue(matcher.getStateCount() > AhoCorasickMatcher.MAX_DENSE_STATES);
+			compare(random, matcher, patterns, 256);
+		}
+	}
+
+	@Test
+	public void reportsMatchesInOrderOfTheirLastByte() {
+		List<byte[]> patterns = new ArrayList<>();
+		patterns.add(new byte[] { 1, 2, 3, 4 });
+		patterns.add(new byte[] { 2 });
+		patterns.add(new byte[] { 3, 4 });
+		byte[] data = { 0, 1, 2, 3, 4, 5 };
+		List<long[]> found = find(new AhoCorasickMatcher(patterns), data, data.length, 100);
+		assertEquals(3, found.size());
+		assertEquals(102, found.get(0)[0]);
+		assertEquals(1, found.get(0)[1]);
+		long lastEnd = 0;
+		for (long[] match : found) {
+			long end = match[0] + patterns.get((int) match[1]).length;
+			assertTrue(end >= lastEnd);
+			lastEnd = end;
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyPatterns() {
+		List<byte[]> patterns = new ArrayList<>();
+		patterns.add(new byte[0]);
+		new AhoCorasickMatcher(patterns);
+	}
+
+	private static List<byte[]> randomPatterns(Random random, int count, int maxLength, int alphabet) {
+		List<byte[]> patterns = new ArrayList<>(count);
+		for (int p = 0; p < count; p++) {
+			byte[] pattern = new byte[1 + random.nextInt(maxLength)];
+			for (int i = 0; i < pattern.length; i++) {
+				pattern[i] = (byte) random.nextInt(alphabet);
+			}
+			patterns.add(pattern);
+		}
+		return patterns;
+	}
+
+	private static void compare(Random random, AhoCorasickMatcher matcher, List<byte[]> patterns, int alphabet) {
+		byte[] data = new byte[1 + random.nextInt(20000)];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) random.nextInt(alphabet);
+		}
+		// planted, so long patterns occur as well
+		for (int i = 0; i < 50; i++) {
+			byte[] pattern = patterns.get(random.nextInt(patterns.size()));
+			if (pattern.length <= data.length) {
+				int at = random.nextInt(data.length - pattern.length + 1);
+				System.arraycopy(pattern, 0, data, at, pattern.length);
+			}
+		}
+		int limit = random.nextInt(data.length + 1);
+		long offset = random.nextInt(1000);
+
+		List<String> expected = scan(data, patterns, limit, offset);
+		List<String> actual = new ArrayList<>();
+		for (long[] match : find(matcher, data, limit, offset)) {
+			assertEquals(patterns.get((int) match[1]).length, match[2]);
+			actual.add(match[0] + ":" + match[1]);
+		}
+		Collections.sort(actual);
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Returns offset, pattern and length of each match in the order they are
+	 * reported.
+	 */
+	private static List<long[]> find(ByteMatcher matcher, byte[] data, int limit, long offset) {
+		final List<long[]> found = new ArrayList<>();
+		matcher.find(data, data.length, limit, offset, new ByteMatcher.MatchListener() {
+			@Override
+			public boolean matchFound(int pattern, long offset, int length) {
+				found.add(new long[] { offset, pattern, length });
+				return true;
+			}
+		});
+		return found;
+	}
+
+	private static List<String> scan(byte[] data, List<byte[]> patterns, int limit, long offset) {
+		List<String> found = new ArrayList<>();
+		for (int start = 0; start < limit; start++) {
+			for (int p = 0; p < patterns.size(); p++) {
+				byte[] pattern = patterns.get(p);
+				int i = 0;
+				while (i < pattern.length && start + i < data.length && data[start + i] == pattern[i]) {
+					i++;
+				}
+				if (i == pattern.length) {
+					found.add((offset + start) + ":" + p);
+				}
+			}
+		}
+		Collections.sort(found);
+		return found;
+	}
+
+}
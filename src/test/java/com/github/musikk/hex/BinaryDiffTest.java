@@ -0,0 +1,99 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link BinaryDiff} joins the differences found by its chunks:
+ * a difference that spans a chunk border, ends right at one or starts right
+ * after one must come out as a single range, and the tail of the longer
+ * input must be one range joined to a difference right before it.
+ */
+public class BinaryDiffTest {
+
+	private static final int CHUNK = BinaryDiff.CHUNK_SIZE;
+
+	@Test
+	public void findsTheSameRangesAsAComparison() throws Exception {
+		Random random = new Random(1);
+		for (int n = 0; n < 6; n++) {
+			byte[] left = new byte[3 * CHUNK + random.nextInt(5000)];
+			random.nextBytes(left);
+			// of the same length or longer or shorter
+			int rightLength = n % 3 == 0 ? left.length : left.length + random.nextInt(4000) - 2000;
+			byte[] right = Arrays.copyOf(left, rightLength);
+			for (int k = 0; k < 2000; k++) {
+				int at = random.nextInt(Math.min(left.length, right.length));
+				int length = 1 + random.nextInt(k % 10 == 0 ? 300 : 4);
+				for (int i = at; i < Math.min(at + length, right.length); i++) {
+					right[i] ^= (byte) (1 + random.nextInt(255));
+				}
+			}
+			// across a border, up to a border and right after one
+			for (int i = CHUNK - 5; i < CHUNK + 5; i++) {
+				right[i] ^= 1;
+			}
+			for (int i = 2 * CHUNK - 8; i < 2 * CHUNK; i++) {
+				right[i] ^= 1;
+			}
+			right[2 * CHUNK] ^= 1;
+
+			BinaryDiff diff = BinaryDiff.compare(new ByteArrayDataProvider(left), new ByteArrayDataProvider(right),
+					new Runnable() {
+						@Override
+						public void run() {
+						}
+					});
+			diff.await();
+			assertNull(diff.getError());
+			assertFalse(diff.isTruncated());
+
+			DiffRanges ranges = diff.getRanges();
+			List<Long> actual = new ArrayList<>();
+			for (int i = 0; i < ranges.size(); i++) {
+				actual.add(ranges.getStart(i));
+				actual.add(ranges.getEnd(i));
+			}
+			assertEquals(compare(left, right), actual);
+		}
+	}
+
+	/**
+	 * Returns start and end of each range of differing bytes. The bytes after
+	 * the end of the shorter data differ.
+	 */
+	private static List<Long> compare(byte[] left, byte[] right) {
+		List<Long> bounds = new ArrayList<>();
+		int common = Math.min(left.length, right.length);
+		for (int i = 0; i < common;) {
+			if (left[i] == right[i]) {
+				i++;
+				continue;
+			}
+			bounds.add((long) i);
+			while (i < common && left[i] != right[i]) {
+				i++;
+			}
+			bounds.add((long) i);
+		}
+		if (left.length != right.length) {
+			long end = Math.max(left.length, right.length);
+			if (!bounds.isEmpty() && bounds.get(bounds.size() - 1) == common) {
+				bounds.set(bounds.size() - 1, end);
+			} else {
+				bounds.add((long) common);
+				bounds.add(end);
+			}
+		}
+		return bounds;
+	}
+
+}
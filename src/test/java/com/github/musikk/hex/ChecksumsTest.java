@@ -0,0 +1,110 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+/**
+ * Checks the math that lets {@link Checksums} compute CRC-32 and Adler-32
+ * per chunk in parallel: combining the checksums of two parts must give the
+ * checksum of the whole, also for empty parts and for sums close to the
+ * Adler-32 modulus. The digests, which cannot be combined, are checked over
+ * ranges that start and end inside chunks.
+ */
+public class ChecksumsTest {
+
+	@Test
+	public void combinedCrc32EqualsCrc32OfTheWhole() {
+		Random random = new Random(1);
+		for (int n = 0; n < 500; n++) {
+			byte[] data = randomData(random, random.nextInt(3) == 0 ? 100000 : 100);
+			int split = random.nextInt(data.length + 1);
+			long crc1 = crc32(data, 0, split);
+			long crc2 = crc32(data, split, data.length);
+			assertEquals(crc32(data, 0, data.length), Checksums.combineCrc32(crc1, crc2, data.length - split));
+		}
+	}
+
+	@Test
+	public void combinedAdler32EqualsAdler32OfTheWhole() {
+		Random random = new Random(2);
+		for (int n = 0; n < 500; n++) {
+			byte[] data = randomData(random, random.nextInt(3) == 0 ? 100000 : 100);
+			if (n % 2 == 0) {
+				// long runs of 0xFF push the sums close to the modulus
+				for (int i = 0; i < data.length; i++) {
+					data[i] = (byte) 0xFF;
+				}
+			}
+			int split = random.nextInt(data.length + 1);
+			long adler1 = adler32(data, 0, split);
+			long adler2 = adler32(data, split, data.length);
+			assertEquals(adler32(data, 0, data.length), Checksums.combineAdler32(adler1, adler2, data.length - split));
+		}
+	}
+
+	@Test
+	public void computesAllChecksumsOfARange() throws Exception {
+		Random random = new Random(3);
+		// several chunks and a partial one
+		byte[] data = new byte[5 * Checksums.CHUNK_SIZE + 1234];
+		random.nextBytes(data);
+		long[][] ranges = { { 0, data.length }, { 12345, 12345 + 3 * Checksums.CHUNK_SIZE + 17 },
+				{ Checksums.CHUNK_SIZE - 1, Checksums.CHUNK_SIZE + 1 }, { 5, 5 } };
+		for (long[] range : ranges) {
+			Checksums checksums = Checksums.compute(new ByteArrayDataProvider(data), range[0], range[1],
+					new Runnable() {
+						@Override
+						public void run() {
+						}
+					});
+			checksums.await();
+			assertNull(checksums.getError());
+			assertEquals(expected(data, (int) range[0], (int) range[1]), checksums.getResults());
+		}
+	}
+
+	private static byte[] randomData(Random random, int maxLength) {
+		byte[] data = new byte[random.nextInt(maxLength + 1)];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private static long crc32(byte[] data, int from, int to) {
+		CRC32 crc = new CRC32();
+		crc.update(data, from, to - from);
+		return crc.getValue();
+	}
+
+	private static long adler32(byte[] data, int from, int to) {
+		Adler32 adler = new Adler32();
+		adler.update(data, from, to - from);
+		return adler.getValue();
+	}
+
+	private static Map<String, String> expected(byte[] data, int from, int to) throws NoSuchAlgorithmException {
+		Map<String, String> results = new LinkedHashMap<>();
+		results.put("CRC32", String.format("%08x", crc32(data, from, to)));
+		results.put("Adler32", String.format("%08x", adler32(data, from, to)));
+		for (String algorithm : new String[] { "MD5", "SHA-1", "SHA-256" }) {
+			MessageDigest digest = MessageDigest.getInstance(algorithm);
+			digest.update(data, from, to - from);
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			results.put(algorithm, hex.toString());
+		}
+		return results;
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the concurrency contract of {@link DataProvider}: many threads read
+ * random ranges at the same time and every read must return exactly the bytes
+ * of the file.
+ */
+public class DataProviderConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int READS_PER_THREAD = 2000;
+	private static final int MAX_READ = 200 * 1024;
+
+	private byte[] content;
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		// not a multiple of the page or segment size
+		content = new byte[3 * 1024 * 1024 + 17];
+		new Random(1).nextBytes(content);
+		file = File.createTempFile("hex-test", ".bin");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void concurrentReadsFromFile() throws Exception {
+		readConcurrently(new FileDataProvider(file));
+	}
+
+	@Test
+	public void concurrentReadsFromMappedFile() throws Exception {
+		MappedFileDataProvider data = new MappedFileDataProvider(file);
+		try {
+			readConcurrently(data);
+		} finally {
+			data.close();
+		}
+	}
+
+	@Test
+	public void concurrentReadsThroughCache() throws Exception {
+		// a small budget, so pages are evicted while other threads read them
+		readConcurrently(new CachingDataProvider(new FileDataProvider(file), 4096, 16 * 4096));
+	}
+
+	@Test
+	public void concurrentReadsFromArray() throws Exception {
+		readConcurrently(new ByteArrayDataProvider(content));
+	}
+
+	/**
+	 * Interrupting a reader closes the shared {@code FileChannel}; the other
+	 * readers must reopen it instead of failing.
+	 */
+	@Test
+	public void interruptedReaderDoesNotAffectOthers() throws Exception {
+		final FileDataProvider data = new FileDataProvider(file);
+		final CountDownLatch done = new CountDownLatch(1);
+		final Thread victim = new Thread() {
+			@Override
+			public void run() {
+				ByteBuffer buffer = ByteBuffer.allocate(MAX_READ);
+				while (done.getCount() > 0) {
+					try {
+						buffer.clear();
+						data.get(buffer, 0);
+					} catch (RuntimeException e) {
+						// expected when interrupted
+						Thread.interrupted();
+					}
+				}
+			}
+		};
+		victim.start();
+		Thread interrupter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (!done.await(1, TimeUnit.MILLISECONDS)) {
+						victim.interrupt();
+					}
+				} catch (InterruptedException e) {
+					// stop
+				}
+			}
+		};
+		interrupter.start();
+		try {
+			readConcurrently(data);
+		} finally {
+			done.countDown();
+			interrupter.join();
+			victim.join();
+		}
+	}
+
+	private void readConcurrently(final DataProvider data) throws Exception {
+		assertEquals(content.length, data.getLength());
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<Void>> readers = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final long seed = t;
+				readers.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						start.await();
+						read(data, new Random(seed));
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Void> reader : readers) {
+				try {
+					reader.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof AssertionError) {
+						throw (AssertionError) e.getCause();
+					}
+					throw e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads random ranges through arrays, heap buffers with an offset and
+	 * direct buffers and compares them to the file content.
+	 */
+	private void read(DataProvider data, Random random) {
+		for (int i = 0; i < READS_PER_THREAD; i++) {
+			int length = 1 + random.nextInt(MAX_READ);
+			// sometimes reads over the end of the data
+			long offset = random.nextInt(content.length + 1);
+			int expected = (int) Math.min(length, content.length - offset);
+			byte[] actual;
+			switch (random.nextInt(3)) {
+			case 0: {
+				actual = new byte[length];
+				assertEquals(expected, data.get(actual, offset));
+				break;
+			}
+			case 1: {
+				ByteBuffer buffer = ByteBuffer.allocate(length + 10);
+				buffer.position(5);
+				buffer.limit(5 + length);
+				assertEquals(expected, data.get(buffer, offset));
+				assertEquals(5 + expected, buffer.position());
+				actual = Arrays.copyOfRange(buffer.array(), 5, 5 + length);
+				break;
+			}
+			default: {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+				assertEquals(expected, data.get(buffer, offset));
+				assertEquals(expected, buffer.position());
+				buffer.flip();
+				actual = new byte[length];
+				buffer.get(actual, 0, expected);
+				break;
+			}
+			}
+			assertArrayEquals("read of " + length + " bytes at " + offset,
+					Arrays.copyOfRange(content, (int) offset, (int) offset + expected),
+					Arrays.copyOf(actual, expected));
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the binary searches of {@link DiffRanges} at every offset, including
+ * the offsets on the first and last byte of a range and in the gaps, where
+ * {@code ceiling}, {@code next} and {@code previous} differ.
+ */
+public class DiffRangesTest {
+
+	@Test
+	public void joinsTouchingRanges() {
+		DiffRanges ranges = new DiffRanges();
+		ranges.add(10, 20);
+		ranges.add(20, 25);
+		ranges.add(30, 31);
+		assertEquals(2, ranges.size());
+		assertEquals(10, ranges.getStart(0));
+		assertEquals(25, ranges.getEnd(0));
+		assertEquals(30, ranges.getStart(1));
+		assertEquals(16, ranges.getByteCount());
+	}
+
+	@Test
+	public void findsTheSameRangesAsAScan() {
+		Random random = new Random(1);
+		for (int n = 0; n < 50; n++) {
+			// enough ranges to grow the array
+			DiffRanges ranges = new DiffRanges();
+			long end = random.nextInt(10);
+			long bytes = 0;
+			for (int i = random.nextInt(200); i > 0; i--) {
+				long start = end + random.nextInt(3);
+				end = start + 1 + random.nextInt(5);
+				ranges.add(start, end);
+				bytes += end - start;
+			}
+			assertEquals(bytes, ranges.getByteCount());
+
+			for (long offset = 0; offset <= end + 1; offset++) {
+				int ceiling = ranges.size();
+				int next = -1;
+				int previous = -1;
+				for (int i = ranges.size() - 1; i >= 0; i--) {
+					if (ranges.getEnd(i) > offset) {
+						ceiling = i;
+					}
+					if (ranges.getStart(i) > offset) {
+						next = i;
+					}
+				}
+				for (int i = 0; i < ranges.size(); i++) {
+					if (ranges.getStart(i) < offset) {
+						previous = i;
+					}
+				}
+				assertEquals("ceiling of " + offset, ceiling, ranges.ceiling(offset));
+				assertEquals("next of " + offset, next, ranges.next(offset));
+				assertEquals("previous of " + offset, previous, ranges.previous(offset));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOverlappingRanges() {
+		DiffRanges ranges = new DiffRanges();
+		ranges.add(10, 20);
+		ranges.add(19, 25);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyRanges() {
+		new DiffRanges().add(10, 10);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Plants copies in random data and checks that {@link DuplicateFinder} finds
+ * them and reports nothing that a comparison of the bytes does not confirm.
+ */
+public class DuplicateFinderTest {
+
+	private static final int MIN_LENGTH = 512;
+
+	@Test
+	public void findsPlantedCopies() throws Exception {
+		Random random = new Random(1);
+		byte[] content = new byte[24 * 1024 * 1024];
+		random.nextBytes(content);
+
+		List<long[]> planted = new ArrayList<>();
+		boolean[] used = new boolean[content.length];
+		// a run of zeros repeats itself at any distance
+		int zeros = 20 * 1024 * 1024;
+		Arrays.fill(content, zeros, zeros + 100000, (byte) 0);
+		Arrays.fill(used, zeros, zeros + 100000, true);
+		// copies long enough to hold many anchors, none overlapping another,
+		// one across the first border of the 4 MB chunks
+		plant(content, used, planted, 100000, 4 * 1024 * 1024 - 1000, 8000);
+		while (planted.size() < 100) {
+			int length = 4 * MIN_LENGTH + random.nextInt(planted.size() % 10 == 0 ? 300000 : 5000);
+			plant(content, used, planted, random.nextInt(content.length - length),
+					random.nextInt(content.length - length), length);
+		}
+		DuplicateFinder finder = DuplicateFinder.find(new ByteArrayDataProvider(content), MIN_LENGTH,
+				new Runnable() {
+					@Override
+					public void run() {
+					}
+				});
+		finder.await();
+		assertNull(finder.getError());
+		assertFalse(finder.isTruncated());
+		List<Duplicate> duplicates = finder.getDuplicates();
+
+		for (Duplicate duplicate : duplicates) {
+			assertTrue(duplicate.toString(), duplicate.length >= MIN_LENGTH);
+			assertTrue(duplicate.toString(), duplicate.original < duplicate.copy);
+			for (long i = 0; i < duplicate.length; i++) {
+				assertEquals(duplicate.toString(), content[(int) (duplicate.original + i)],
+						content[(int) (duplicate.copy + i)]);
+			}
+		}
+		for (long[] copy : planted) {
+			assertTrue(Arrays.toString(copy), covers(duplicates, copy[0], copy[1], copy[2]));
+		}
+		boolean zerosFound = false;
+		for (Duplicate duplicate : duplicates) {
+			zerosFound |= duplicate.original >= zeros && duplicate.copy + duplicate.length <= zeros + 100000
+					&& duplicate.length > 90000;
+		}
+		assertTrue(zerosFound);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMinimumLengthsUpToAWindow() {
+		DuplicateFinder.find(new ByteArrayDataProvider(new byte[1000]), DuplicateFinder.WINDOW, new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+	}
+
+	/**
+	 * Copies a region unless it or its copy overlaps an earlier one.
+	 */
+	private static void plant(byte[] content, boolean[] used, List<long[]> planted, int from, int to, int length) {
+		for (int i = 0; i < length; i++) {
+			if (used[from + i] || used[to + i]) {
+				return;
+			}
+		}
+		if (Math.abs(from - to) < length) {
+			return;
+		}
+		System.arraycopy(content, from, content, to, length);
+		Arrays.fill(used, from, from + length, true);
+		Arrays.fill(used, to, to + length, true);
+		planted.add(new long[] { Math.min(from, to), Math.max(from, to), length });
+	}
+
+	private static boolean covers(List<Duplicate> duplicates, long original, long copy, long length) {
+		for (Duplicate duplicate : duplicates) {
+			if (duplicate.copy - duplicate.original == copy - original && duplicate.original <= original
+					&& original + length <= duplicate.original + duplicate.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
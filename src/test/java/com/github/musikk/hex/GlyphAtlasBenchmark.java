@@ -0,0 +1,183 @@
+package com.github.musikk.hex;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Random;
+
+/**
+ * Measures how long drawing the characters of a full screen of rows takes
+ * with {@code drawChars}, as {@link HexPanel} does, and with copies from a
+ * pre-rendered glyph atlas. The atlas was tried and dropped because it was
+ * slower on the software pipeline; run this on the target machine to check
+ * again. Not a unit test, run its {@code main} method.
+ * <p>
+ * The frame is drawn into a {@link BufferedImage}, which uses the software
+ * pipeline, and, unless the environment is headless, into a
+ * {@link VolatileImage}, which uses an accelerated pipeline where there is
+ * one (e.g. {@code -Dsun.java2d.opengl=true}).
+ */
+public class GlyphAtlasBenchmark {
+
+	private static final int ROWS = 40;
+	private static final int LINE_LENGTH = 16;
+	private static final int ADDRESS_LENGTH = 8;
+	private static final int WIDTH = 1400;
+	private static final int HEIGHT = 1200;
+
+	private static final int WARM_UP_FRAMES = 300;
+	private static final int FRAMES = 1000;
+
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 24);
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final char[][] rows = new char[ROWS][];
+	private int charWidth;
+	private int lineHeight;
+	private int ascent;
+	private BufferedImage atlas;
+
+	public static void main(String[] args) {
+		GlyphAtlasBenchmark benchmark = new GlyphAtlasBenchmark();
+		BufferedImage software = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		benchmark.run("BufferedImage", software);
+		if (!GraphicsEnvironment.isHeadless()) {
+			GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			VolatileImage accelerated = configuration.createCompatibleVolatileImage(WIDTH, HEIGHT);
+			System.out.println("VolatileImage accelerated: " + accelerated.getCapabilities().isAccelerated());
+			benchmark.run("VolatileImage", accelerated);
+		}
+	}
+
+	GlyphAtlasBenchmark() {
+		Random random = new Random(1);
+		for (int row = 0; row < ROWS; row++) {
+			char[] chars = new char[ADDRESS_LENGTH + 3 * LINE_LENGTH];
+			String address = String.format("%08X", row * LINE_LENGTH);
+			address.getChars(0, ADDRESS_LENGTH, chars, 0);
+			for (int column = 0; column < LINE_LENGTH; column++) {
+				int b = 0x20 + random.nextInt(0x5F);
+				chars[ADDRESS_LENGTH + 2 * column] = HEX_DIGITS[b >> 4];
+				chars[ADDRESS_LENGTH + 2 * column + 1] = HEX_DIGITS[b & 0xF];
+				chars[ADDRESS_LENGTH + 2 * LINE_LENGTH + column] = (char) b;
+			}
+			rows[row] = chars;
+		}
+	}
+
+	private void run(String name, Image destination) {
+		Graphics2D g2 = (Graphics2D) destination.getGraphics();
+		g2.setFont(FONT);
+		g2.setColor(Color.BLACK);
+		FontMetrics fm = g2.getFontMetrics();
+		charWidth = fm.charWidth('A');
+		ascent = fm.getAscent();
+		lineHeight = ascent + fm.getDescent();
+		atlas = renderAtlas();
+
+		for (int i = 0; i < WARM_UP_FRAMES; i++) {
+			drawText(g2);
+			drawAtlas(g2);
+		}
+		finish(destination);
+		long start = System.nanoTime();
+		for (int i = 0; i < FRAMES; i++) {
+			drawText(g2);
+		}
+		finish(destination);
+		long text = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < FRAMES; i++) {
+			drawAtlas(g2);
+		}
+		finish(destination);
+		long copies = System.nanoTime() - start;
+		g2.dispose();
+		System.out.printf("%s: drawChars %.2f ms, atlas %.2f ms per frame%n", name,
+				text / 1e6 / FRAMES, copies / 1e6 / FRAMES);
+	}
+
+	/**
+	 * Waits until queued drawing is done. Accelerated pipelines draw in the
+	 * background; reading the pixels back has to wait for them.
+	 */
+	private static void finish(Image destination) {
+		if (destination instanceof VolatileImage) {
+			((VolatileImage) destination).getSnapshot();
+		}
+	}
+
+	/**
+	 * Draws like {@code HexPanel.drawRow}: the address, the hex digits in
+	 * blocks of two bytes and the ASCII column as a single run.
+	 */
+	private void drawText(Graphics2D g2) {
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, 0, WIDTH, HEIGHT);
+		g2.setColor(Color.BLACK);
+		int hexX = (ADDRESS_LENGTH + 2) * charWidth;
+		int blockWidth = 5 * charWidth;
+		int asciiX = hexX + LINE_LENGTH / 2 * blockWidth + 2 * charWidth;
+		for (int row = 0; row < ROWS; row++) {
+			int y = ascent + row * lineHeight;
+			char[] chars = rows[row];
+			g2.drawChars(chars, 0, ADDRESS_LENGTH, 0, y);
+			for (int block = 0; block < LINE_LENGTH / 2; block++) {
+				g2.drawChars(chars, ADDRESS_LENGTH + 4 * block, 4, hexX + block * blockWidth, y);
+			}
+			g2.drawChars(chars, ADDRESS_LENGTH + 2 * LINE_LENGTH, LINE_LENGTH, asciiX, y);
+		}
+	}
+
+	/**
+	 * Draws the same characters one by one from the atlas.
+	 */
+	private void drawAtlas(Graphics2D g2) {
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, 0, WIDTH, HEIGHT);
+		int hexX = (ADDRESS_LENGTH + 2) * charWidth;
+		int blockWidth = 5 * charWidth;
+		int asciiX = hexX + LINE_LENGTH / 2 * blockWidth + 2 * charWidth;
+		for (int row = 0; row < ROWS; row++) {
+			int y = row * lineHeight;
+			char[] chars = rows[row];
+			for (int i = 0; i < ADDRESS_LENGTH; i++) {
+				drawGlyph(g2, chars[i], i * charWidth, y);
+			}
+			for (int i = 0; i < 2 * LINE_LENGTH; i++) {
+				drawGlyph(g2, chars[ADDRESS_LENGTH + i], hexX + i / 4 * blockWidth + i % 4 * charWidth, y);
+			}
+			for (int i = 0; i < LINE_LENGTH; i++) {
+				drawGlyph(g2, chars[ADDRESS_LENGTH + 2 * LINE_LENGTH + i], asciiX + i * charWidth, y);
+			}
+		}
+	}
+
+	private void drawGlyph(Graphics2D g2, char c, int x, int y) {
+		int sx = c * charWidth;
+		g2.drawImage(atlas, x, y, x + charWidth, y + lineHeight, sx, 0, sx + charWidth, lineHeight, null);
+	}
+
+	/**
+	 * Renders the characters up to 0x7F side by side.
+	 */
+	private BufferedImage renderAtlas() {
+		BufferedImage image = new BufferedImage(0x80 * charWidth, lineHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D ig = image.createGraphics();
+		ig.setFont(FONT);
+		ig.setColor(Color.BLACK);
+		for (char c = 0x20; c < 0x7F; c++) {
+			ig.drawChars(new char[] { c }, 0, 1, c * charWidth, ascent);
+		}
+		ig.dispose();
+		return image;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how {@link HexPanel} formats its rows.
+ */
+public class HexPanelRowTest {
+
+	private static final int LENGTH = 100000;
+
+	private byte[] content;
+	private HexPanel panel;
+
+	@Before
+	public void paintPanel() {
+		content = new byte[LENGTH];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i * 7);
+		}
+		panel = new HexPanel(new ByteArrayDataProvider(content));
+		panel.setBackBuffered(false);
+		panel.setSize(1000, 600);
+		// lays out the panel and reads the visible bytes
+		paint();
+		panel.setOffset(4096);
+		paint();
+	}
+
+	private void paint() {
+		BufferedImage image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		panel.paint(g);
+		g.dispose();
+	}
+
+	@Test
+	public void formatsAddressHexAndAscii() {
+		HexPanel.Metrics metrics = panel.getMetrics();
+		int lineLength = metrics.getLineLength();
+		int addressLength = (int) Math.log10(LENGTH) + 1;
+		assertTrue(lineLength > 0 && metrics.getLines() > 0);
+
+		for (int row = 0; row < metrics.getLines(); row++) {
+			int count = panel.formatRow(row);
+			assertEquals(lineLength, count);
+			long start = metrics.getOffset() + (long) row * lineLength;
+
+			StringBuilder expected = new StringBuilder();
+			String address = Long.toHexString(start);
+			for (int i = address.length(); i < addressLength; i++) {
+				expected.append('0');
+			}
+			expected.append(address);
+			for (int column = 0; column < count; column++) {
+				expected.append(String.format("%02X", content[(int) start + column]));
+			}
+			for (int column = 0; column < count; column++) {
+				expected.append(new String(content, (int) start + column, 1, Charset.forName("ASCII")));
+			}
+			assertEquals(expected.toString(), new String(panel.getRowChars(), 0, expected.length()));
+		}
+	}
+
+	@Test
+	public void formattingDoesNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		int lines = panel.getMetrics().getLines();
+		long thread = Thread.currentThread().getId();
+		int formatted = 0;
+		// the first round warms up the code and the measurement
+		for (int round = 0; round < 2; round++) {
+			long before = allocations.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < 100000; i++) {
+				formatted += panel.formatRow(i % lines);
+			}
+			long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+			if (round == 1) {
+				// a single allocation per row would take far more
+				assertTrue(allocated + " bytes allocated", allocated < 1000);
+			}
+		}
+		assertTrue(formatted > 0);
+	}
+
+}
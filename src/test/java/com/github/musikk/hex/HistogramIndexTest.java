@@ -0,0 +1,87 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that {@link HistogramIndex} adds the partial blocks at both edges of
+ * a range to the prefix sums of the whole blocks correctly: for ranges on
+ * block borders, inside a single block, ending in the partial last block and
+ * empty.
+ */
+public class HistogramIndexTest {
+
+	private static final int BLOCK = HistogramIndex.MIN_BLOCK_SIZE;
+
+	private byte[] content;
+	private HistogramIndex index;
+
+	@Before
+	public void buildIndex() throws Exception {
+		Random random = new Random(1);
+		// several blocks and a partial one, with some values much more common
+		content = new byte[40 * BLOCK + 1234];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : random.nextInt(8));
+		}
+		index = HistogramIndex.build(new ByteArrayDataProvider(content), new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		index.await();
+		assertNull(index.getError());
+		assertTrue(index.isComplete());
+	}
+
+	@Test
+	public void statisticsEqualAHistogramOfTheRange() {
+		Random random = new Random(2);
+		long[][] ranges = new long[300][];
+		ranges[0] = new long[] { 0, content.length };
+		ranges[1] = new long[] { BLOCK, 3 * BLOCK };
+		ranges[2] = new long[] { BLOCK - 1, 3 * BLOCK + 1 };
+		ranges[3] = new long[] { 5 * BLOCK + 3, 5 * BLOCK + 3 };
+		ranges[4] = new long[] { 39 * BLOCK + 7, content.length };
+		for (int n = 5; n < ranges.length; n++) {
+			int from = random.nextInt(content.length + 1);
+			// short ones within a block as well
+			int length = random.nextInt(n % 2 == 0 ? 1000 : content.length);
+			ranges[n] = new long[] { from, Math.min(content.length, from + length) };
+		}
+
+		for (long[] range : ranges) {
+			long[] histogram = new long[256];
+			for (int i = (int) range[0]; i < range[1]; i++) {
+				histogram[content[i] & 0xFF]++;
+			}
+			ByteStatistics expected = new ByteStatistics(histogram);
+			ByteStatistics actual = index.getStatistics(range[0], range[1]);
+			String name = range[0] + "-" + range[1];
+			assertEquals(name, range[1] - range[0], actual.getCount());
+			for (int b = 0; b < 256; b++) {
+				assertEquals(name + " value " + b, histogram[b], actual.getCount(b));
+			}
+			assertEquals(name, expected.getMin(), actual.getMin());
+			assertEquals(name, expected.getMax(), actual.getMax());
+			assertEquals(name, expected.getDistinctValues(), actual.getDistinctValues());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsRangesBeyondTheData() {
+		index.getStatistics(0, content.length + 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsReversedRanges() {
+		index.getStatistics(10, 9);
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the Shift-Or search of {@link MaskedPattern} with nibble and byte
+ * wildcards, with patterns longer than the 64 bytes of its state word and
+ * with a limit that cuts off matches starting late in the buffer, as well as
+ * the parsing of the pattern syntax.
+ */
+public class MaskedPatternTest {
+
+	private static final byte[] MASKS = { 0, 0x0F, (byte) 0xF0, (byte) 0xFF };
+
+	@Test
+	public void findsTheSameMatchesAsAScan() {
+		Random random = new Random(1);
+		int matches = 0;
+		for (int n = 0; n < 300; n++) {
+			// few distinct values, so there are many partial matches
+			byte[] data = new byte[1 + random.nextInt(5000)];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) (random.nextInt(4) * 0x11);
+			}
+			// also longer than the 64 bytes the state covers
+			int length = 1 + random.nextInt(n % 3 == 0 ? 100 : 8);
+			byte[] values = new byte[length];
+			byte[] masks = new byte[length];
+			int start = random.nextInt(data.length);
+			for (int i = 0; i < length; i++) {
+				// mostly taken from the data, so the pattern occurs
+				values[i] = start + i < data.length && random.nextInt(10) > 0 ? data[start + i]
+						: (byte) random.nextInt(256);
+				masks[i] = random.nextInt(3) == 0 ? MASKS[random.nextInt(MASKS.length)] : (byte) 0xFF;
+			}
+			int limit = random.nextInt(data.length + 1);
+			long offset = random.nextInt(1000);
+
+			MaskedPattern pattern = new MaskedPattern(values, masks);
+			List<Long> expected = scan(data, values, masks, limit, offset);
+			assertEquals(expected, find(pattern, data, limit, offset));
+			matches += expected.size();
+		}
+		// the comparison means little without matches
+		assertTrue(matches > 1000);
+	}
+
+	@Test
+	public void stopsWhenTheListenerSaysSo() {
+		byte[] data = new byte[100];
+		final List<Long> found = new ArrayList<>();
+		MaskedPattern.parse("00 ?0").find(data, data.length, data.length, 0, new ByteMatcher.MatchListener() {
+			@Override
+			public boolean matchFound(int pattern, long offset, int length) {
+				found.add(offset);
+				return found.size() < 3;
+			}
+		});
+		assertEquals(3, found.size());
+	}
+
+	@Test
+	public void parsesWildcards() {
+		MaskedPattern pattern = MaskedPattern.parse("4d 5A?? a?");
+		assertEquals("4D 5A ?? A?", pattern.toString());
+		assertEquals(4, pattern.getMaxLength());
+		byte[] data = { 0x4D, 0x5A, 0x12, (byte) 0xA7, 0x4D, 0x5A, 0x00, (byte) 0xB0 };
+		List<Long> expected = new ArrayList<>();
+		expected.add(0L);
+		assertEquals(expected, find(pattern, data, data.length, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOddNumberOfDigits() {
+		MaskedPattern.parse("4D 5");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherCharacters() {
+		MaskedPattern.parse("4D 5G");
+	}
+
+	private static List<Long> find(ByteMatcher matcher, byte[] data, int limit, long offset) {
+		final List<Long> found = new ArrayList<>();
+		matcher.find(data, data.length, limit, offset, new ByteMatcher.MatchListener() {
+			@Override
+			public boolean matchFound(int pattern, long offset, int length) {
+				found.add(offset);
+				return true;
+			}
+		});
+		return found;
+	}
+
+	private static List<Long> scan(byte[] data, byte[] values, byte[] masks, int limit, long offset) {
+		List<Long> found = new ArrayList<>();
+		for (int start = 0; start < limit && start + values.length <= data.length; start++) {
+			int i = 0;
+			while (i < values.length && (data[start + i] & masks[i]) == (values[i] & masks[i])) {
+				i++;
+			}
+			if (i == values.length) {
+				found.add(offset + start);
+			}
+		}
+		return found;
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Builds the trigram index of a file and checks that it never rules out a
+ * block in which a scan finds a match, also for matches that continue into
+ * the next block and for blocks marked as dense, that a rare pattern narrows
+ * the search to a few blocks and that an index with another header is not
+ * used.
+ */
+public class NGramIndexTest {
+
+	private static final String WORDS = "the quick brown fox jumps over a lazy dog ";
+
+	private String userHome;
+	private File home;
+	private File file;
+	private byte[] content;
+	private DataProvider data;
+
+	@Before
+	public void buildIndex() throws Exception {
+		// the index is stored below the home directory
+		userHome = System.getProperty("user.home");
+		home = File.createTempFile("hex-home", "");
+		home.delete();
+		home.mkdir();
+		System.setProperty("user.home", home.getPath());
+
+		Random random = new Random(1);
+		content = new byte[30 * NGramIndex.BLOCK_SIZE + 123];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) WORDS.charAt(random.nextInt(WORDS.length()));
+		}
+		// random bytes make dense blocks
+		for (int i = 10 * NGramIndex.BLOCK_SIZE; i < 13 * NGramIndex.BLOCK_SIZE; i++) {
+			content[i] = (byte) random.nextInt(256);
+		}
+		// a rare pattern, also across block borders
+		for (long at : new long[] { 5, NGramIndex.BLOCK_SIZE - 3, 7L * NGramIndex.BLOCK_SIZE - 1,
+				content.length - 6 }) {
+			System.arraycopy("XYZZYQ".getBytes("ASCII"), 0, content, (int) at, 6);
+		}
+		file = new File(home, "data.bin");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content);
+		}
+		data = new FileDataProvider(file);
+
+		NGramIndexBuilder builder = NGramIndexBuilder.build(file, data, new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		builder.await();
+		assertNull(builder.getError());
+		assertNotNull(builder.getIndex());
+		builder.getIndex().close();
+	}
+
+	@After
+	public void deleteFiles() {
+		System.setProperty("user.home", userHome);
+		delete(home);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void candidatesContainEveryBlockWithAMatch() throws IOException {
+		NGramIndex index = NGramIndex.open(file, data);
+		assertNotNull(index);
+		assertEquals(31, index.getBlockCount());
+
+		Random random = new Random(2);
+		for (int n = 0; n < 200; n++) {
+			byte[] pattern;
+			if (n % 4 == 0) {
+				pattern = new byte[3 + random.nextInt(5)];
+				random.nextBytes(pattern);
+			} else {
+				int at = random.nextInt(content.length - 40);
+				pattern = Arrays.copyOfRange(content, at, at + 3 + random.nextInt(30));
+			}
+			int[] candidates = index.findCandidates(pattern);
+			long[] ranges = index.findRanges(pattern, 0, content.length);
+			for (int start : scan(pattern)) {
+				assertTrue("block of match at " + start,
+						Arrays.binarySearch(candidates, start / NGramIndex.BLOCK_SIZE) >= 0);
+				assertTrue("range of match at " + start, covers(ranges, start, start + pattern.length));
+			}
+		}
+		index.close();
+	}
+
+	@Test
+	public void rarePatternNarrowsTheSearch() throws IOException {
+		NGramIndex index = NGramIndex.open(file, data);
+		int[] candidates = index.findCandidates("XYZZYQ".getBytes("ASCII"));
+		// the blocks of the matches, the blocks before them and the dense blocks
+		assertTrue(Arrays.toString(candidates), candidates.length <= 10);
+		assertTrue(Arrays.binarySearch(candidates, 6) >= 0);
+		assertTrue(Arrays.binarySearch(candidates, 30) >= 0);
+		index.close();
+	}
+
+	@Test
+	public void indexWithAnotherHeaderIsNotUsed() throws IOException {
+		File indexFile = NGramIndex.Key.of(file, data).getIndexFile();
+		assertTrue(indexFile.isFile());
+		try (RandomAccessFile out = new RandomAccessFile(indexFile, "rw")) {
+			out.writeLong(0);
+		}
+		assertNull(NGramIndex.open(file, data));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsShortPatterns() throws IOException {
+		NGramIndex index = NGramIndex.open(file, data);
+		try {
+			index.findCandidates(new byte[2]);
+		} finally {
+			index.close();
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void closedIndexCannotBeRead() throws IOException {
+		NGramIndex index = NGramIndex.open(file, data);
+		index.close();
+		index.findCandidates("XYZZYQ".getBytes("ASCII"));
+	}
+
+	private int[] scan(byte[] pattern) {
+		int[] starts = new int[16];
+		int count = 0;
+		for (int start = 0; start + pattern.length <= content.length; start++) {
+			int i = 0;
+			while (i < pattern.length && content[start + i] == pattern[i]) {
+				i++;
+			}
+			if (i == pattern.length) {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, 2 * count);
+				}
+				starts[count++] = start;
+			}
+		}
+		return Arrays.copyOf(starts, count);
+	}
+
+	private static boolean covers(long[] ranges, long start, long end) {
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] <= start && end <= ranges[i + 1]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link StringExtractor} neither splits nor duplicates runs at
+ * the borders of its chunks: ASCII and UTF-16LE runs that cross a border,
+ * including UTF-16LE at odd offsets, a run longer than the tail that is read
+ * past a chunk and a run that ends the data. Also checks that the runs of an
+ * extraction that is still stopping may be deleted.
+ */
+public class StringExtractorTest {
+
+	private static final int CHUNK = StringExtractor.CHUNK_SIZE;
+
+	@Test
+	public void findsTheSameRunsAsAScan() throws Exception {
+		Random random = new Random(1);
+		// more chunks than a single round of tasks covers, and a partial one
+		byte[] content = new byte[Math.max(3 * BackgroundTask.POOL.getParallelism(), 5) * CHUNK + 777];
+		for (int i = 0; i < content.length; i++) {
+			int kind = random.nextInt(10);
+			content[i] = (byte) (kind < 6 ? 'a' + random.nextInt(26) : kind < 8 ? 0 : random.nextInt(256));
+		}
+		// a long run across the first border
+		for (int i = CHUNK - 100; i < CHUNK + 9000; i++) {
+			content[i] = 'x';
+		}
+		// short and long UTF-16 runs across the next borders
+		for (int i = 2 * CHUNK - 3; i < 2 * CHUNK + 5; i += 2) {
+			content[i] = 'U';
+			content[i + 1] = 0;
+		}
+		for (int i = 3 * CHUNK - 4001; i < 3 * CHUNK + 100001; i += 2) {
+			content[i] = 'W';
+			content[i + 1] = 0;
+		}
+		// a run that ends the data
+		for (int i = content.length - 20; i < content.length; i++) {
+			content[i] = 'e';
+		}
+
+		DataProvider data = new ByteArrayDataProvider(content);
+		for (int minLength : new int[] { 1, 4, 8 }) {
+			StringExtractor extractor = StringExtractor.extract(data, minLength, new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+			extractor.await();
+			assertNull(extractor.getError());
+			assertFalse(extractor.isTruncated());
+
+			TextRunFile runs = extractor.getRuns();
+			try {
+				List<String> actual = new ArrayList<>(runs.size());
+				long lastOffset = 0;
+				for (int i = 0; i < runs.size(); i++) {
+					TextRun run = runs.get(i);
+					assertTrue("sorted at " + run.offset, run.offset >= lastOffset);
+					lastOffset = run.offset;
+					actual.add(run.offset + ":" + run.length + ":" + run.utf16);
+				}
+				Collections.sort(actual);
+				assertEquals("minimum length " + minLength, scan(content, minLength), actual);
+			} finally {
+				runs.delete();
+			}
+		}
+	}
+
+	@Test
+	public void runsMayBeDeletedWhileStopping() throws Exception {
+		byte[] content = new byte[3 * CHUNK];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i % 3 == 0 ? 0 : 'a');
+		}
+		for (int n = 0; n < 10; n++) {
+			StringExtractor extractor = StringExtractor.extract(new ByteArrayDataProvider(content), 1,
+					new Runnable() {
+						@Override
+						public void run() {
+						}
+					});
+			/*
+			 * The extraction may be past its last check for cancellation when
+			 * the runs are deleted, as if it had been cancelled just before.
+			 */
+			Thread.sleep(10 * n);
+			extractor.getRuns().delete();
+			extractor.cancel();
+			extractor.await();
+			assertNull(extractor.getError());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyRuns() throws IOException {
+		StringExtractor.extract(new ByteArrayDataProvider(new byte[1]), 0, new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+	}
+
+	private static List<String> scan(byte[] content, int minLength) {
+		List<String> found = new ArrayList<>();
+		for (int i = 0; i < content.length;) {
+			if (!isPrintable(content[i])) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < content.length && isPrintable(content[i])) {
+				i++;
+			}
+			if (i - start >= minLength) {
+				found.add(start + ":" + (i - start) + ":false");
+			}
+		}
+		// UTF-16LE at even and at odd offsets
+		for (int parity = 0; parity < 2; parity++) {
+			for (int i = parity; i < content.length;) {
+				if (!isUtf16(content, i)) {
+					i += 2;
+					continue;
+				}
+				int start = i;
+				while (isUtf16(content, i)) {
+					i += 2;
+				}
+				if ((i - start) / 2 >= minLength) {
+					found.add(start + ":" + (i - start) + ":true");
+				}
+			}
+		}
+		Collections.sort(found);
+		return found;
+	}
+
+	private static boolean isUtf16(byte[] content, int i) {
+		return i + 1 < content.length && isPrintable(content[i]) && content[i + 1] == 0;
+	}
+
+	private static boolean isPrintable(byte b) {
+		return b >= 0x20 && b < 0x7F || b == '\t';
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.github.musikk.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link SummaryPyramid} sums the right nodes for ranges that do
+ * not line up with the levels, for leaf counts that are not powers of two and
+ * while only some leaves are known, and that the leaf summaries of
+ * {@link OverviewBar} count zero, ASCII and high bytes and bound the entropy.
+ */
+public class SummaryPyramidTest {
+
+	@Test
+	public void sumEqualsTheSumOfTheLeaves() {
+		Random random = new Random(1);
+		for (int leafCount : new int[] { 1, 2, 3, 5, 17, 64, 1000, 65536 }) {
+			SummaryPyramid pyramid = new SummaryPyramid(leafCount);
+			assertEquals(leafCount, pyramid.getLeafCount());
+
+			// half of the leaves, in any order, as while summarizing
+			double[][] leaves = new double[leafCount][SummaryPyramid.FIELDS];
+			List<Integer> order = new ArrayList<>();
+			for (int leaf = 0; leaf < leafCount; leaf++) {
+				order.add(leaf);
+			}
+			Collections.shuffle(order, random);
+			for (int leaf : order.subList(0, leafCount / 2 + 1)) {
+				for (int f = 0; f < SummaryPyramid.FIELDS; f++) {
+					// integers, so the sums are exact
+					leaves[leaf][f] = random.nextInt(100);
+				}
+				pyramid.add(leaf, leaves[leaf]);
+			}
+
+			double[] summary = new double[SummaryPyramid.FIELDS];
+			for (int n = 0; n < 500; n++) {
+				int from = random.nextInt(leafCount);
+				int to = from + 1 + random.nextInt(leafCount - from);
+				pyramid.sum(from, to, summary);
+				for (int f = 0; f < SummaryPyramid.FIELDS; f++) {
+					double expected = 0;
+					for (int leaf = from; leaf < to; leaf++) {
+						expected += leaves[leaf][f];
+					}
+					assertEquals(from + ".." + to + " field " + f, expected, summary[f], 0);
+				}
+			}
+			// an empty range
+			pyramid.sum(0, 0, summary);
+			assertEquals(0, summary[SummaryPyramid.BYTES], 0);
+		}
+	}
+
+	@Test
+	public void summarizeCountsTheBytes() {
+		Random random = new Random(2);
+		for (int n = 0; n < 100; n++) {
+			byte[] buffer = new byte[1 + random.nextInt(5000)];
+			random.nextBytes(buffer);
+			int length = random.nextInt(buffer.length + 1);
+			if (n % 4 == 0) {
+				for (int i = 0; i < length; i++) {
+					buffer[i] = (byte) (i % 3);
+				}
+			}
+
+			long zero = 0;
+			long ascii = 0;
+			long high = 0;
+			for (int i = 0; i < length; i++) {
+				int b = buffer[i] & 0xFF;
+				if (b == 0) {
+					zero++;
+				}
+				if (b >= 0x20 && b < 0x7F || b == '\t' || b == '\n' || b == '\r') {
+					ascii++;
+				} else if (b >= 0x80) {
+					high++;
+				}
+			}
+
+			double[] summary = OverviewBar.summarize(buffer, length);
+			assertEquals(1, summary[SummaryPyramid.LEAVES], 0);
+			assertEquals(length, summary[SummaryPyramid.BYTES], 0);
+			assertEquals(zero, summary[SummaryPyramid.ZERO], 0);
+			assertEquals(ascii, summary[SummaryPyramid.ASCII], 0);
+			assertEquals(high, summary[SummaryPyramid.HIGH], 0);
+			double entropy = summary[SummaryPyramid.ENTROPY];
+			assertTrue(entropy + " of " + length, entropy >= 0 && entropy <= length + 1e-9);
+			if (n % 4 == 0 && length > 0) {
+				// at most three values, so at most log2(3) of 8 bits
+				assertTrue(entropy <= length * Math.log(3) / Math.log(2) / 8 + 1e-9);
+			}
+		}
+	}
+
+}